@@ -1,53 +1,296 @@
 package Cache;
 
-import java.time.LocalDateTime;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a cache entry that stores file content along with its last access time.
  * <p>
  * Each cache entry contains the content as a byte array and a timestamp indicating when
- * the content was last accessed. The timestamp is updated every time the content is retrieved
- * via the {@link #getContent()} method.
+ * the content was last accessed. The timestamp is a {@link System#nanoTime()} reading, so that it is
+ * monotonic and costs no allocation, and is updated every time the content is retrieved via the
+ * {@link #getContent()} or {@link #contentBuffer()} method.
+ * </p>
+ * <p>
+ * The entry also carries the validators used to answer conditional requests: a strong entity tag
+ * computed once from the content when the entry is created, and the modification time of the file
+ * the content was read from.
+ * </p>
+ * <p>
+ * When the {@link CacheManager} stores contents off-heap, the cached entry is a copy whose content
+ * lives in native memory from a {@link SlabAllocator} instead of a byte array. Such an entry is
+ * reference counted like a {@link MappedEntry}: the cache holds one reference while the entry is
+ * cached, and each request holds one from {@link #retain()} until its {@link #release()}. Its chunk
+ * is freed as soon as the last reference is released, so an evicted entry is never freed under a
+ * request that is still sending it. Both methods do nothing for an entry held on the heap.
  * </p>
  */
 public class CacheEntry {
 
-    /** The content of the file in bytes. */
+    /** The content of the file in bytes, or {@code null} if it is held off-heap. */
     private final byte[] content;
-    /** The timestamp representing the last time the entry was accessed. */
-    private LocalDateTime lastUseTime;
+    /** The content held off-heap, or {@code null} if it is held on the heap. */
+    private final ByteBuffer offHeapContent;
+    /** The native memory holding the off-heap content, or {@code null}. */
+    private final SlabAllocator.Chunk chunk;
+    /** The allocator the chunk is given back to, or {@code null}. */
+    private final SlabAllocator allocator;
+    /** Number of references held by the cache and by requests on an off-heap entry; freed at zero. */
+    private final AtomicInteger references = new AtomicInteger(1);
+    /** Strong entity tag of the content, quoted. */
+    private final String eTag;
+    /** Modification time of the source file, in milliseconds, or {@code -1} if unknown. */
+    private final long lastModified;
+    /** The serialized {@code 200 OK} response for the content, once prepared. */
+    private volatile PreparedResponse preparedResponse;
+    /** Minimum time between two writes of the last use time, in nanoseconds: 1 millisecond. */
+    private static final long TOUCH_INTERVAL_NANOS = 1_000_000;
+
+    /** The last time the entry was accessed, in {@link System#nanoTime()} units. */
+    private volatile long lastUseNanos;
 
     /**
-     * Constructs a new {@code CacheEntry} with the specified content.
+     * Constructs a new {@code CacheEntry} with the specified content and an unknown modification time.
      * The last use time is initialized to the current time.
      *
      * @param content the byte array representing the content to be cached.
      */
     public CacheEntry(byte[] content) {
+        this(content, -1);
+    }
+
+    /**
+     * Constructs a new {@code CacheEntry} with the specified content, computing its entity tag.
+     * The last use time is initialized to the current time.
+     *
+     * @param content      the byte array representing the content to be cached.
+     * @param lastModified the modification time of the source file, in milliseconds, or {@code -1} if unknown
+     */
+    public CacheEntry(byte[] content, long lastModified) {
+        this(content, lastModified, computeETag(content));
+    }
+
+    /**
+     * Constructs a new {@code CacheEntry} with the specified content and entity tag, for content derived
+     * from another entry (such as a compressed variant) whose tag is derived from that entry's tag.
+     * The last use time is initialized to the current time.
+     *
+     * @param content      the byte array representing the content to be cached.
+     * @param lastModified the modification time of the source file, in milliseconds, or {@code -1} if unknown
+     * @param eTag         the quoted entity tag of the content
+     */
+    public CacheEntry(byte[] content, long lastModified, String eTag) {
         this.content = content;
-        this.lastUseTime = LocalDateTime.now();
+        this.offHeapContent = null;
+        this.chunk = null;
+        this.allocator = null;
+        this.lastModified = lastModified;
+        this.eTag = eTag;
+        this.lastUseNanos = System.nanoTime();
+    }
+
+    /**
+     * Constructs an off-heap copy of an entry, holding the cache's reference.
+     *
+     * @param source    the entry to copy, held on the heap
+     * @param allocator the allocator of the native memory
+     * @throws OutOfMemoryError if the direct memory limit of the JVM is reached
+     */
+    private CacheEntry(CacheEntry source, SlabAllocator allocator) {
+        this.content = null;
+        this.allocator = allocator;
+        this.chunk = allocator.allocate(source.content.length);
+        this.offHeapContent = chunk.buffer().put(source.content).flip().asReadOnlyBuffer();
+        this.lastModified = source.lastModified;
+        this.eTag = source.eTag;
+        this.lastUseNanos = source.lastUseNanos;
+    }
+
+    /**
+     * Copies this entry's content into native memory.
+     *
+     * @param allocator the allocator of the native memory
+     * @return the off-heap copy, holding one reference for the cache
+     * @throws OutOfMemoryError if the direct memory limit of the JVM is reached
+     */
+    CacheEntry copyOffHeap(SlabAllocator allocator) {
+        return new CacheEntry(this, allocator);
+    }
+
+    /**
+     * Computes a strong entity tag from content: the first 64 bits of its SHA-256 digest.
+     *
+     * @param content the content
+     * @return the quoted entity tag
+     */
+    public static String computeETag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder tag = new StringBuilder("\"");
+            for (int i = 0; i < 8; i++) {
+                tag.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return tag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Derives the entity tag of an encoded variant (e.g. gzip-compressed) from the tag of the content.
+     *
+     * @param eTag   the quoted entity tag of the unencoded content
+     * @param coding the content coding token
+     * @return the quoted entity tag of the variant
+     */
+    public static String variantETag(String eTag, String coding) {
+        return eTag.substring(0, eTag.length() - 1) + "-" + coding + "\"";
+    }
+
+    /**
+     * Computes an entity tag for a file that is not cached, from its size and modification time.
+     *
+     * @param size         the file size, in bytes
+     * @param lastModified the file modification time, in milliseconds
+     * @return the quoted entity tag
+     */
+    public static String fileETag(long size, long lastModified) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
     }
 
     /**
      * returns the cached content.
      * <p>
+     * The content of an off-heap entry is copied onto the heap, which the caller must hold a reference
+     * for; prefer {@link #contentBuffer()} to send it.
+     * </p>
+     * <p>
      * This method also updates the last use time to the current time to reflect that the
-     * entry has been accessed.
+     * entry has been accessed. The time is only written when it moved by a millisecond or more, so that
+     * concurrent hits on the same entry do not keep invalidating each other's cached copy of it.
      * </p>
      *
      * @return the byte array containing the cached content.
      */
     public byte[] getContent() {
-        this.lastUseTime = LocalDateTime.now();
-        return content;
+        touch();
+        if (content != null) return content;
+        ByteBuffer view = offHeapContent.duplicate();
+        byte[] copy = new byte[view.remaining()];
+        view.get(copy);
+        return copy;
+    }
+
+    /**
+     * Returns a read-only view of the content, positioned at its start, without copying it.
+     * For an off-heap entry, the view is only valid while the caller holds a reference.
+     * This method also updates the last use time.
+     *
+     * @return a view of the content; a direct buffer for an off-heap entry
+     */
+    public ByteBuffer contentBuffer() {
+        touch();
+        return content != null ? ByteBuffer.wrap(content).asReadOnlyBuffer() : offHeapContent.duplicate();
+    }
+
+    /**
+     * Returns the size of the content, without copying it.
+     *
+     * @return the size, in bytes
+     */
+    public int size() {
+        return content != null ? content.length : offHeapContent.remaining();
+    }
+
+    /**
+     * Tells whether the content is held in native memory.
+     *
+     * @return {@code true} for an off-heap entry
+     */
+    public boolean isOffHeap() {
+        return content == null;
+    }
+
+    /**
+     * Takes a reference on an off-heap entry for a request; an entry held on the heap needs none.
+     *
+     * @return {@code true} if the reference was taken (always, on the heap), {@code false} if the
+     *         entry has already been freed
+     */
+    public boolean retain() {
+        if (content != null) return true;
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) return false;
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * Drops a reference on an off-heap entry, freeing its native memory when it was the last one.
+     * Does nothing for an entry held on the heap.
+     */
+    public void release() {
+        if (content == null && references.decrementAndGet() == 0) {
+            allocator.free(chunk);
+        }
+    }
+
+    /**
+     * Returns the strong entity tag of the content.
+     *
+     * @return the quoted entity tag
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the modification time of the file the content was read from.
+     *
+     * @return the modification time in milliseconds, or {@code -1} if unknown
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the serialized response for the content, if one has been prepared.
+     *
+     * @return the prepared response, or {@code null}
+     */
+    public PreparedResponse getPreparedResponse() {
+        return preparedResponse;
+    }
+
+    /**
+     * Stores the serialized response for the content, so that later hits can send it as is.
+     *
+     * @param preparedResponse the prepared response
+     */
+    public void setPreparedResponse(PreparedResponse preparedResponse) {
+        this.preparedResponse = preparedResponse;
     }
 
     /**
      * Returns the last time this cache entry was accessed.
      *
-     * @return a {@link LocalDateTime} object representing the last access time.
+     * @return the last access time, in {@link System#nanoTime()} units
+     */
+    public long getLastUseNanos() {
+        return lastUseNanos;
+    }
+
+    /**
+     * Updates the last use time to the current time, unless it was updated less than a millisecond ago.
      */
-    public LocalDateTime getLastUseTime() {
-        return lastUseTime;
+    void touch() {
+        long now = System.nanoTime();
+        if (now - lastUseNanos >= TOUCH_INTERVAL_NANOS) {
+            lastUseNanos = now;
+        }
     }
 }
\ No newline at end of file
@@ -6,92 +6,200 @@ import logging.LogType;
 import logging.LoggingTask;
 
 import java.time.Duration;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
 
 /**
- * Manages a thread-safe in-memory cache using a reader-writer pattern.
+ * Manages a thread-safe in-memory cache.
  * <p>
- * This cache manager supports concurrent reads and exclusive writes,
+ * This cache manager supports concurrent reads and writes,
  * along with automatic expiration of cache entries based on their last access time.
- * A background thread continuously monitors and removes expired entries.
+ * <p>
+ * An entry not used within the expiration time is treated as absent as soon as it is looked up,
+ * and removed by a background thread within about a second of its expiry. Expirations are scheduled
+ * in a hierarchical {@link TimerWheel} when entries are written, so the thread only visits the
+ * entries coming due instead of scanning the whole cache. Access times are monotonic
+ * {@link System#nanoTime()} readings. An expiration time of zero keeps entries until they are
+ * evicted or invalidated.
+ * <p>
+ * Entries whose file changed are removed through {@link #invalidate(String)} and
+ * {@link #invalidateIf(BiPredicate)}, called as changes to the document root are detected.
+ * <p>
+ * Reads never wait for a lock: a hit is a {@link ConcurrentHashMap#get}, and the lookup is recorded
+ * for the eviction policy in a striped, lossy {@link ReadBuffer} that is drained into the policy by
+ * the thread holding the write lock (on the next write, when a stripe fills up and the lock is free,
+ * or on the next tick of the background thread). Readers still write some shared state, kept off the
+ * hot cache lines as far as possible: the hit and miss counters are striped {@link LongAdder}s, and
+ * a hit refreshes the entry's access time at most once a millisecond. Entries are immutable apart from
+ * their access time and prepared response, and are published atomically by the map on write, so a
+ * reader sees either the previous entry or the complete new one. Expired entries are removed only if
+ * they have not been replaced in the meantime.
+ * <p>
+ * The total size of the cached contents is bounded by a budget of bytes. Which entries stay
+ * within it is decided by a {@link TinyLfuPolicy} (W-TinyLFU), which weighs entries by their
+ * content length and only admits a new entry if it is requested more often than those it would
+ * evict. Hit ratio and evictions are reported by {@link #getStats()}.
+ * <p>
+ * Contents may be stored off-heap ({@link #setOffHeap(boolean)}): the index stays on the heap, but
+ * each written entry is copied into native memory from a {@link SlabAllocator}, so that a large
+ * working set neither lengthens garbage collection nor fills the heap with large arrays. An off-heap
+ * entry is reference counted (see {@link CacheEntry#retain()}); the cache drops its reference when the
+ * entry is evicted, expires or is replaced, and its memory goes back to the allocator once no request
+ * holds it anymore.
  */
 public class CacheManager extends Thread implements LogProducer {
-    /** Duration after which cache entries expire (default: 30 seconds). */
-    private static Duration expirationTime = Duration.ofSeconds(30);
+    /** Time after which unused cache entries expire, in nanoseconds (default: 30 seconds). */
+    private volatile long expirationNanos = Duration.ofSeconds(30).toNanos();
 
-    /** The main cache structure mapping file paths to their cached content entries. */
-    private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    /** Expiration time standing for "never": about 146 years, short enough not to overflow deadlines. */
+    private static final long NEVER_EXPIRES_NANOS = 1L << 62;
 
-    /** Semaphore for exclusive write access. */
-    private final Semaphore writeLock = new Semaphore(1, true);
-    /** Lock to protect readerCount updates. */
-    private final Lock readLock = new ReentrantLock(true);
+    /** Default budget of the cached contents: 64 MiB. */
+    public static final long DEFAULT_MAXIMUM_BYTES = 64L * 1024 * 1024;
 
-    /** Number of readers currently accessing the cache. */
-    private int readerCount = 0;
+    /** The main cache structure mapping file paths to their cached content entries. */
+    private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    /** Admission and eviction policy keeping the cache within its budget. */
+    private final TinyLfuPolicy policy = new TinyLfuPolicy(DEFAULT_MAXIMUM_BYTES);
+    /** Guards writes, removals, the policy (statistics included) and the timing wheel. */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Lookups not yet applied to the policy, drained under {@code writeLock}. */
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    /** Number of lookups that found an entry. */
+    private final LongAdder hitCount = new LongAdder();
+    /** Number of lookups that found none. */
+    private final LongAdder missCount = new LongAdder();
+    /** Allocator of the off-heap contents. */
+    private final SlabAllocator allocator = new SlabAllocator();
+    /** Whether written contents are copied off-heap. */
+    private volatile boolean offHeap;
+    /** Expiration schedule of the cached entries, guarded by {@code writeLock}. */
+    private final TimerWheel timerWheel = new TimerWheel(System.nanoTime());
 
     /**
-     * Starts a background thread to monitor and remove expired cache entries.
-     * The thread checks all entries and removes any that are older than {@code expirationTime}.
+     * Starts a background thread to remove expired cache entries.
+     * Once a second, the thread applies the buffered lookups to the policy, advances the timing wheel
+     * and removes the entries it reports as unused for longer than the expiration time.
      */
     @Override
     public void run() {
         while (true) {
-            for (String path : cache.keySet()) {
-                CacheEntry entry = cache.get(path);
-                if(entry.getLastUseTime().plus(expirationTime).isBefore(LocalDateTime.now())){
-                    removeFromCache(path);
-                }
-            }
             try {
-                TimeUnit.SECONDS.sleep(5);
+                TimeUnit.SECONDS.sleep(1);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
+            List<Map.Entry<String, CacheEntry>> expired = new ArrayList<>();
+            writeLock.lock();
+            try {
+                drainReadBuffer();
+                timerWheel.advance(System.nanoTime(), expirationNanos, expired);
+            } finally {
+                writeLock.unlock();
+            }
+            for (Map.Entry<String, CacheEntry> cached : expired) {
+                removeFromCache(cached.getKey(), cached.getValue());
+            }
         }
     }
 
-
     /**
      * Reads file content from the cache in a thread-safe manner.
      * If the entry is not present or expired, returns {@code null}.
+     * Off-heap content is copied onto the heap.
      *
      * @param path the file path or identifier
      * @return the cached content, or null if not present or expired
      */
     public byte[] readFromCache(String path) {
+        CacheEntry entry = readEntryFromCache(path);
+        if (entry == null || !entry.retain()) return null;
         try {
-            readLock.lock();
-            readerCount++;
-            if (readerCount == 1) {
-                writeLock.acquire();
-            }
-            readLock.unlock();
+            return entry.getContent();
+        } finally {
+            entry.release();
+        }
+    }
 
-            CacheEntry entry = cache.get(path);
+    /**
+     * Reads a cache entry, with its content and validators, in a thread-safe manner, without locking.
+     * If the entry is not present or expired, returns {@code null}; a hit counts as a use of the entry.
+     * An off-heap entry must be {@linkplain CacheEntry#retain() retained} before its content is read,
+     * as it may be evicted and freed at any time.
+     *
+     * @param path the file path or identifier
+     * @return the cache entry, or null if not present or expired
+     */
+    public CacheEntry readEntryFromCache(String path) {
+        CacheEntry entry = unexpired(cache.get(path));
+        if (entry != null) entry.touch();
+        recordAccess(path);
+        (entry == null ? missCount : hitCount).increment();
+        return entry;
+    }
 
-            return (entry == null) ? null : entry.getContent();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return null;
+    /**
+     * Records a lookup in the read buffer. If the stripe of the calling thread is full, the buffer is
+     * drained first, unless another thread holds the write lock, in which case the lookup is dropped.
+     *
+     * @param path the file path or identifier looked up
+     */
+    private void recordAccess(String path) {
+        if (readBuffer.offer(path) || !writeLock.tryLock()) return;
+        try {
+            drainReadBuffer();
         } finally {
-            try {
-                readLock.lock();
-                readerCount--;
-                if (readerCount == 0) {
-                    writeLock.release();
-                }
-                readLock.unlock();
-            } catch (Exception e) {
-                Thread.currentThread().interrupt();
-            }
+            writeLock.unlock();
         }
+        readBuffer.offer(path);
+    }
+
+    /**
+     * Applies the buffered lookups to the policy. Called with the write lock held.
+     */
+    private void drainReadBuffer() {
+        readBuffer.drain(policy::recordAccess);
+    }
+
+    /**
+     * Reads a cache entry without counting the lookup as a request, for a second check of a
+     * lookup that was already counted.
+     *
+     * @param path the file path or identifier
+     * @return the cache entry, or null if not present or expired
+     */
+    public CacheEntry peekEntry(String path) {
+        return unexpired(cache.get(path));
+    }
+
+    /**
+     * Tells whether an entry is cached, without reading it, so that it can be asked from threads
+     * that must not block (an event loop). The entry may still expire right after.
+     *
+     * @param path the file path or identifier
+     * @return {@code true} if the entry is present
+     */
+    public boolean contains(String path) {
+        return unexpired(cache.get(path)) != null;
+    }
+
+    /**
+     * Filters out an entry not used within the expiration time, which the background thread has
+     * yet to remove.
+     *
+     * @param entry the entry found in the map, or {@code null}
+     * @return the entry, or {@code null} if absent or expired
+     */
+    private CacheEntry unexpired(CacheEntry entry) {
+        if (entry == null || System.nanoTime() - entry.getLastUseNanos() < expirationNanos) return entry;
+        return null;
     }
 
     /**
@@ -101,40 +209,171 @@ public class CacheManager extends Thread implements LogProducer {
      * @param content the file content to cache
      */
     public void writeToCache(String path, byte[] content) {
+        writeToCache(path, content, -1);
+    }
+
+    /**
+     * Writes file content, along with the modification time of the file, to the cache in a thread-safe manner.
+     *
+     * @param path         the file path
+     * @param content      the file content to cache
+     * @param lastModified the modification time of the file, in milliseconds
+     * @return the new cache entry
+     */
+    public CacheEntry writeToCache(String path, byte[] content, long lastModified) {
+        return writeToCache(path, new CacheEntry(content, lastModified));
+    }
+
+    /**
+     * Writes a prepared cache entry to the cache in a thread-safe manner.
+     * <p>
+     * When contents are stored off-heap, the cache holds an off-heap copy of the entry, and the given
+     * entry is returned so that the caller can use its content without taking a reference. If native
+     * memory is exhausted, the entry is cached on the heap instead.
+     * </p>
+     *
+     * @param path  the file path, or the key of a variant of the file
+     * @param entry the entry to cache
+     * @return the entry
+     */
+    public CacheEntry writeToCache(String path, CacheEntry entry) {
+        CacheEntry stored = entry;
+        if (offHeap && !entry.isOffHeap() && entry.size() > 0) {
+            try {
+                stored = entry.copyOffHeap(allocator);
+            } catch (OutOfMemoryError e) {
+                logMessage(new LoggingTask(LogType.Warning, LogLocation.ConsoleErr, "Cache off-heap memory exhausted, cached on heap: " + path));
+            }
+        }
+        writeLock.lock();
         try {
-            writeLock.acquire();
-            cache.put(path, new CacheEntry(content));
-            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache entry created: " + path ));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            drainReadBuffer();
+            CacheEntry previous = cache.put(path, stored);
+            if (previous != null) previous.release();
+            timerWheel.schedule(path, stored, stored.getLastUseNanos() + expirationNanos);
+            for (String evicted : policy.onWrite(path, stored.size())) {
+                timerWheel.remove(evicted);
+                CacheEntry removed = cache.remove(evicted);
+                if (removed != null) removed.release();
+                logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache evicted: " + evicted));
+            }
         } finally {
-            writeLock.release();
+            writeLock.unlock();
         }
+        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache entry created: " + path ));
+        return entry;
     }
 
     /**
-     * Clears an {@link CacheEntry} from cache in a thread-safe manner.
+     * Clears an {@link CacheEntry} from cache in a thread-safe manner, unless it has been replaced.
      *
-     * @param path   the file path
+     * @param path  the file path
+     * @param entry the expired entry
+     */
+    private void removeFromCache(String path, CacheEntry entry) {
+        writeLock.lock();
+        try {
+            if (!cache.remove(path, entry)) return;
+            policy.onRemove(path);
+        } finally {
+            writeLock.unlock();
+        }
+        entry.release();
+        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache expired: " + path ));
+    }
+
+    /**
+     * Removes an entry whose file changed or disappeared, so that the next request reads the file again.
+     *
+     * @param path the file path, or the key of a variant of the file
+     */
+    public void invalidate(String path) {
+        CacheEntry entry = cache.get(path);
+        if (entry != null) {
+            invalidate(path, entry);
+        }
+    }
+
+    /**
+     * Removes every entry found stale. The whole cache is visited, so this is meant for rare events
+     * (a directory moved, changes missed) and for periodic checks, not for single file changes.
+     *
+     * @param stale tells, from its key and entry, whether an entry must be removed
+     */
+    public void invalidateIf(BiPredicate<String, CacheEntry> stale) {
+        for (Map.Entry<String, CacheEntry> cached : cache.entrySet()) {
+            if (stale.test(cached.getKey(), cached.getValue())) {
+                invalidate(cached.getKey(), cached.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes an invalidated entry, unless it has been replaced, and cancels its expiration.
+     *
+     * @param path  the file path
+     * @param entry the stale entry
      */
-    private void removeFromCache(String path) {
+    private void invalidate(String path, CacheEntry entry) {
+        writeLock.lock();
         try {
-            writeLock.acquire();
-            cache.remove(path);
-            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache expired: " + path ));
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            if (!cache.remove(path, entry)) return;
+            policy.onRemove(path);
+            timerWheel.remove(path);
         } finally {
-            writeLock.release();
+            writeLock.unlock();
         }
+        entry.release();
+        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache invalidated: " + path ));
     }
 
     /**
-     * Updates the expiration time for cache entries.
+     * Updates the expiration time for cache entries. Entries already scheduled are checked against
+     * the new time when they next come due.
      *
-     * @param expirationTime a {@link Duration} specifying how long entries remain valid
+     * @param expirationTime a {@link Duration} specifying how long unused entries remain valid,
+     *                       or {@link Duration#ZERO} to keep them until evicted or invalidated
      */
     public void setExpirationTime(Duration expirationTime) {
-        this.expirationTime = expirationTime;
+        this.expirationNanos = expirationTime.isZero() || expirationTime.isNegative()
+                ? NEVER_EXPIRES_NANOS : Math.min(NEVER_EXPIRES_NANOS, expirationTime.toNanos());
+    }
+
+    /**
+     * Updates the budget of the cached contents. Entries over a smaller budget are evicted on the next write.
+     *
+     * @param maximumBytes the maximum total size of the cached contents, in bytes
+     */
+    public void setMaximumBytes(long maximumBytes) {
+        writeLock.lock();
+        try {
+            policy.setMaximum(maximumBytes);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Selects where the contents written from now on are stored. Entries already cached stay where they are.
+     *
+     * @param offHeap {@code true} to store contents in native memory, {@code false} on the heap
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns the hit ratio, evictions and size of the cache.
+     *
+     * @return a snapshot of the cache statistics
+     */
+    public CacheStats getStats() {
+        writeLock.lock();
+        try {
+            return new CacheStats(hitCount.sum(), missCount.sum(), policy.evictionCount(), policy.evictedBytes(),
+                    policy.weightedSize(), policy.maximum(), allocator.reservedBytes());
+        } finally {
+            writeLock.unlock();
+        }
     }
-}
\ No newline at end of file
+}
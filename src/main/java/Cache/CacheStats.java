@@ -0,0 +1,26 @@
+package Cache;
+
+/**
+ * A snapshot of the effectiveness of the {@link CacheManager}, for tuning its byte budget.
+ *
+ * @param hitCount      the number of lookups that found an entry
+ * @param missCount     the number of lookups that found none
+ * @param evictionCount the number of entries evicted to stay within the budget (expired entries excluded)
+ * @param evictedBytes  the total size of the evicted entries, in bytes
+ * @param weightedSize  the total size of the cached entries, in bytes
+ * @param maximumBytes  the budget, in bytes
+ * @param offHeapBytes  the native memory reserved for off-heap contents, in bytes
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount, long evictedBytes,
+                         long weightedSize, long maximumBytes, long offHeapBytes) {
+
+    /**
+     * Returns the share of lookups that found an entry.
+     *
+     * @return the hit ratio, from 0 to 1 (1 if there was no lookup)
+     */
+    public double hitRatio() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
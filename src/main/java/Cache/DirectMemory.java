@@ -0,0 +1,51 @@
+package Cache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees direct and mapped buffers eagerly, rather than waiting for the garbage collector to find
+ * them unreachable. Used by the {@link MappedFileCache} to unmap files and by the {@link SlabAllocator}
+ * to give slabs back to the operating system.
+ */
+final class DirectMemory {
+    /** {@code sun.misc.Unsafe.invokeCleaner}, used to free eagerly; {@code null} if unavailable. */
+    private static final Method INVOKE_CLEANER;
+    /** The {@code sun.misc.Unsafe} instance the cleaner is invoked on. */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            //Not available: buffers are released by the garbage collector instead
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private DirectMemory() {
+    }
+
+    /**
+     * Frees the memory of a direct or mapped buffer. The buffer, and every view of it, must not be
+     * used afterwards.
+     *
+     * @param buffer the buffer returned by {@link ByteBuffer#allocateDirect(int)} or a map call (not a view of it)
+     */
+    static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Exception e) {
+            //Left to the garbage collector
+        }
+    }
+}
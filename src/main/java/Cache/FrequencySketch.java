@@ -0,0 +1,145 @@
+package Cache;
+
+/**
+ * An approximate, aging count of how often each key was requested, used by {@link TinyLfuPolicy}
+ * to decide whether a new entry is worth more than the one it would evict.
+ * <p>
+ * Counts are kept in a count-min sketch of 4-bit counters (four rows, sixteen counters per
+ * {@code long}); the frequency of a key is the smallest of its four counters. A doorkeeper Bloom
+ * filter sits in front of the sketch: the first request for a key only sets its doorkeeper bits,
+ * so keys requested once (one-hit wonders, such as a crawler walking the document root) never
+ * reach the counters. Once the number of additions reaches ten times the table size, every counter
+ * is halved and the doorkeeper cleared, so that old popularity fades.
+ * <p>
+ * Updates are not synchronized themselves: the sketch is only incremented by the thread draining
+ * the cache's {@link ReadBuffer} under the write lock, so that cache hits never write to its table.
+ */
+final class FrequencySketch {
+    /** Mask clearing the bit shifted into each counter when all counters are halved. */
+    private static final long RESET_MASK = 0x7777777777777777L;
+    /** Seeds of the four hash functions of the sketch. */
+    private static final int[] SEEDS = {0x97cb3127, 0xb0e22877, 0x62d1a3c5, 0x2f9b6ae5};
+
+    /** The counters: sixteen 4-bit counters per {@code long}. */
+    private final long[] table;
+    /** The doorkeeper Bloom filter bits. */
+    private final long[] doorkeeper;
+    /** Number of additions after which the counters are halved. */
+    private final int sampleSize;
+    /** Number of additions since the last halving (approximate). */
+    private int additions;
+
+    /**
+     * Creates a sketch for about the given number of distinct keys.
+     *
+     * @param expectedKeys the expected number of keys in the cache
+     */
+    FrequencySketch(int expectedKeys) {
+        int size = Integer.highestOneBit(Math.max(64, Math.min(expectedKeys, 1 << 24)) - 1) << 1;
+        this.table = new long[size];
+        this.doorkeeper = new long[size];
+        this.sampleSize = 10 * size;
+    }
+
+    /**
+     * Returns the estimated number of recent requests for a key.
+     *
+     * @param key the cache key
+     * @return the estimated frequency, from 0 to 16
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counterHash = rehash(hash, i);
+            long word = table[counterHash & (table.length - 1)];
+            frequency = Math.min(frequency, (int) ((word >>> offset(counterHash)) & 0xF));
+        }
+        return frequency + (inDoorkeeper(hash) ? 1 : 0);
+    }
+
+    /**
+     * Records a request for a key.
+     *
+     * @param key the cache key
+     */
+    void increment(String key) {
+        int hash = spread(key.hashCode());
+        if (!addToDoorkeeper(hash)) return; //First request: only remembered by the doorkeeper
+
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counterHash = rehash(hash, i);
+            int index = counterHash & (table.length - 1);
+            int offset = offset(counterHash);
+            if (((table[index] >>> offset) & 0xF) < 15) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves every counter and clears the doorkeeper.
+     */
+    private void reset() {
+        additions >>>= 1;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+            doorkeeper[i] = 0L;
+        }
+    }
+
+    /**
+     * Sets the doorkeeper bits of a key.
+     *
+     * @param hash the spread hash of the key
+     * @return {@code true} if the key was already in the doorkeeper
+     */
+    private boolean addToDoorkeeper(int hash) {
+        boolean present = true;
+        for (int i = 0; i < 2; i++) {
+            int bit = rehash(hash, i + 2) & (doorkeeper.length * 64 - 1);
+            long mask = 1L << (bit & 63);
+            if ((doorkeeper[bit >>> 6] & mask) == 0) {
+                doorkeeper[bit >>> 6] |= mask;
+                present = false;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Tells whether the doorkeeper has seen a key.
+     *
+     * @param hash the spread hash of the key
+     * @return {@code true} if both doorkeeper bits of the key are set
+     */
+    private boolean inDoorkeeper(int hash) {
+        for (int i = 0; i < 2; i++) {
+            int bit = rehash(hash, i + 2) & (doorkeeper.length * 64 - 1);
+            if ((doorkeeper[bit >>> 6] & (1L << (bit & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Returns the bit offset, within a table word, of the counter selected by a hash. */
+    private static int offset(int counterHash) {
+        return (counterHash >>> 28) << 2;
+    }
+
+    /** Derives the hash of one of the four rows from the hash of a key. */
+    private static int rehash(int hash, int row) {
+        int h = (hash + SEEDS[row]) * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /** Spreads the bits of a {@link String#hashCode()}. */
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,102 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a file mapped into memory by the {@link MappedFileCache}, shared by every request serving it.
+ * <p>
+ * The entry is reference counted: the cache holds one reference while the entry is cached, and each
+ * request holds one from {@link #retain()} until its {@link #release()}. The mapping is unmapped as
+ * soon as the last reference is released, so an evicted file is never unmapped under a request that
+ * is still sending it.
+ * </p>
+ */
+public class MappedEntry {
+    /** The read-only mapping of the whole file. */
+    private final MappedByteBuffer buffer;
+    /** Last modification time of the file when it was mapped, in milliseconds. */
+    private final long lastModified;
+    /** Number of references held by the cache and by requests; the mapping is released at zero. */
+    private final AtomicInteger references = new AtomicInteger(1);
+    /** The timestamp representing the last time the entry was accessed. */
+    private volatile LocalDateTime lastUseTime;
+
+    /**
+     * Constructs a new {@code MappedEntry} holding the cache's reference.
+     *
+     * @param buffer       the read-only mapping of the file
+     * @param lastModified last modification time of the file, in milliseconds
+     */
+    public MappedEntry(MappedByteBuffer buffer, long lastModified) {
+        this.buffer = buffer;
+        this.lastModified = lastModified;
+        this.lastUseTime = LocalDateTime.now();
+    }
+
+    /**
+     * Takes a reference on the mapping for a request.
+     * <p>
+     * This method also updates the last use time.
+     * </p>
+     *
+     * @return {@code true} if the reference was taken, {@code false} if the entry has already been released
+     */
+    public boolean retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) return false;
+        } while (!references.compareAndSet(count, count + 1));
+        lastUseTime = LocalDateTime.now();
+        return true;
+    }
+
+    /**
+     * Drops a reference, unmapping the file when it was the last one.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Returns an independent view of the whole mapping, positioned at its start.
+     * Only valid while the caller holds a reference.
+     *
+     * @return a read-only view sharing the mapped memory
+     */
+    public ByteBuffer slice() {
+        return buffer.duplicate();
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     *
+     * @return the size, in bytes
+     */
+    public int size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Returns the last modification time of the file when it was mapped.
+     *
+     * @return the modification time, in milliseconds
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the last time this entry was accessed.
+     *
+     * @return a {@link LocalDateTime} object representing the last access time.
+     */
+    public LocalDateTime getLastUseTime() {
+        return lastUseTime;
+    }
+}
@@ -0,0 +1,147 @@
+package Cache;
+
+import logging.LogLocation;
+import logging.LogProducer;
+import logging.LogType;
+import logging.LoggingTask;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manages the memory-mapped tier of the file cache.
+ * <p>
+ * Medium-sized files are mapped with {@link FileChannel#map} instead of being copied into a
+ * {@code byte[]}: their content stays in the operating system's page cache and every request
+ * serving the same file shares one mapping. Entries are reference counted (see {@link MappedEntry}),
+ * so evicting a file only unmaps it once the requests still sending it are done.
+ * <p>
+ * A background thread removes entries that have not been used within the expiration time and
+ * entries whose file was modified or deleted since it was mapped.
+ */
+public class MappedFileCache extends Thread implements LogProducer {
+    /** Duration after which unused mappings are released (default: 30 seconds). */
+    private volatile Duration expirationTime = Duration.ofSeconds(30);
+
+    /** The mapped files, by path. */
+    private final ConcurrentHashMap<String, MappedEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a background thread to release expired or outdated mappings.
+     * The thread checks all entries every 5 seconds.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            for (String path : cache.keySet()) {
+                MappedEntry entry = cache.get(path);
+                if (entry == null) continue;
+                boolean expired = !expirationTime.isZero() && entry.getLastUseTime().plus(expirationTime).isBefore(LocalDateTime.now());
+                if (expired || isOutdated(path, entry)) {
+                    evict(path, entry);
+                }
+            }
+            try {
+                TimeUnit.SECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the mapping of a file, mapping it on first use, with a reference taken for the caller.
+     * The caller must {@link MappedEntry#release() release} the entry once it is done with it.
+     *
+     * @param path the file path
+     * @return the retained entry, or {@code null} if the file cannot be mapped
+     */
+    public MappedEntry acquire(String path) {
+        while (true) {
+            MappedEntry entry = cache.computeIfAbsent(path, this::map);
+            if (entry == null) return null;
+            if (entry.retain()) return entry;
+            cache.remove(path, entry); //Released concurrently: map again
+        }
+    }
+
+    /**
+     * Removes a file from the cache; its mapping is released once no request uses it anymore.
+     *
+     * @param path the file path
+     */
+    public void invalidate(String path) {
+        MappedEntry entry = cache.get(path);
+        if (entry != null) {
+            evict(path, entry);
+        }
+    }
+
+    /**
+     * Updates the expiration time for unused mappings.
+     *
+     * @param expirationTime a {@link Duration} specifying how long unused mappings are kept,
+     *                       or {@link Duration#ZERO} to keep them until their file changes
+     */
+    public void setExpirationTime(Duration expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * Maps a whole file read-only.
+     *
+     * @param path the file path
+     * @return the new entry, or {@code null} if the file cannot be mapped
+     */
+    private MappedEntry map(String path) {
+        Path file = Paths.get(path);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Mapped file: " + path));
+            return new MappedEntry(buffer, lastModified);
+        } catch (IOException | IllegalArgumentException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error mapping file: " + e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether the file behind an entry changed or disappeared since it was mapped.
+     *
+     * @param path  the file path
+     * @param entry the entry mapping it
+     * @return {@code true} if the mapping no longer reflects the file
+     */
+    private boolean isOutdated(String path, MappedEntry entry) {
+        try {
+            Path file = Paths.get(path);
+            return Files.getLastModifiedTime(file).toMillis() != entry.getLastModified() || Files.size(file) != entry.size();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Removes an entry and drops the cache's reference to it.
+     *
+     * @param path  the file path
+     * @param entry the entry expected under that path
+     */
+    private void evict(String path, MappedEntry entry) {
+        if (cache.remove(path, entry)) {
+            entry.release();
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Mapping released: " + path));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package Cache;
+
+/**
+ * Singleton class that provides a single shared instance of {@link MappedFileCache}, using the Singleton Pattern.
+ * <p>
+ * All components serving memory-mapped files should do so via {@code MappedFileCacheSingleton.getInstance()},
+ * so that each file is mapped only once.
+ */
+public class MappedFileCacheSingleton {
+    /** The single instance of the mapped file cache used throughout the application. */
+    private static final MappedFileCache instance = new MappedFileCache();
+
+    /**
+     * Private constructor to prevent instantiation.
+     * This class is intended to be used via {@link #getInstance()} only.
+     */
+    private MappedFileCacheSingleton() {
+    }
+
+    /**
+     * Returns the shared instance of {@link MappedFileCache}.
+     *
+     * @return the singleton {@code MappedFileCache} instance
+     */
+    public static MappedFileCache getInstance() {
+        return instance;
+    }
+}
@@ -0,0 +1,36 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The head of a {@code 200 OK} response for a cached file, serialized once into a read-only buffer.
+ * <p>
+ * The buffer holds the status line and every header that does not change between requests. The
+ * per-request headers ({@code Date} and {@code Connection}), the empty line ending the headers and
+ * the body (the content of the {@link CacheEntry}, not a copy of it) are sent in buffers of their own
+ * after {@link #head()}, so a hit is a single gathering write with nothing to encode. Only the head
+ * is held on top of the content, a few hundred bytes per entry.
+ *
+ * @param buffer the status line and fixed headers, each ending with CRLF, read-only
+ */
+public record PreparedResponse(ByteBuffer buffer) {
+    /**
+     * Serializes the head of a response.
+     *
+     * @param head the status line and fixed headers, each ending with CRLF
+     * @return the prepared response
+     */
+    public static PreparedResponse of(String head) {
+        return new PreparedResponse(ByteBuffer.wrap(head.getBytes(StandardCharsets.ISO_8859_1)).asReadOnlyBuffer());
+    }
+
+    /**
+     * Returns a new view of the status line and fixed headers.
+     *
+     * @return a read-only buffer positioned at the start of the response
+     */
+    public ByteBuffer head() {
+        return buffer.duplicate();
+    }
+}
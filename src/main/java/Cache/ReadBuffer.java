@@ -0,0 +1,80 @@
+package Cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Records the keys looked up in the cache, so that their effect on the eviction policy (frequency
+ * counts and recency flags) is applied in batches by the thread holding the write lock, instead of
+ * by every reader on shared state.
+ * <p>
+ * The buffer is striped: each thread records into one of several small ring buffers, chosen by the
+ * thread's identity, so that concurrent readers rarely touch the same memory. It is also lossy: a
+ * lookup recorded into a full stripe, or racing another thread for the same slot, is dropped. Losing
+ * a few lookups only makes the policy's picture of popularity slightly less precise, whereas waiting
+ * for room would make hits wait for writes.
+ * <p>
+ * Any thread may {@link #offer(String)}; {@link #drain(Consumer)} must be called by one thread at a
+ * time, which the {@link CacheManager} ensures with its write lock.
+ */
+final class ReadBuffer {
+    /** Number of slots of each stripe (a power of two). */
+    private static final int STRIPE_SIZE = 16;
+    /** Number of stripes (a power of two): four per processor, at most 64. */
+    private static final int STRIPES = Math.min(64, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors() - 1) << 1);
+    /** Spacing of the counters of consecutive stripes, in {@code long}s, so that they sit on different cache lines. */
+    private static final int PADDING = 8;
+
+    /** The recorded keys, {@value #STRIPE_SIZE} slots per stripe. */
+    private final AtomicReferenceArray<String> slots = new AtomicReferenceArray<>(STRIPES * STRIPE_SIZE);
+    /** Number of keys written into each stripe, since the buffer was created. */
+    private final AtomicLongArray writeCounts = new AtomicLongArray(STRIPES * PADDING);
+    /** Number of keys drained from each stripe, since the buffer was created. */
+    private final AtomicLongArray readCounts = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * Records a lookup, without locking. The lookup is dropped if another thread takes the slot first.
+     *
+     * @param key the cache key looked up
+     * @return {@code false} if the stripe of the calling thread is full and should be drained
+     */
+    boolean offer(String key) {
+        int stripe = stripe();
+        int counter = stripe * PADDING;
+        long tail = writeCounts.get(counter);
+        if (tail - readCounts.get(counter) >= STRIPE_SIZE) return false;
+        if (writeCounts.compareAndSet(counter, tail, tail + 1)) {
+            slots.lazySet(stripe * STRIPE_SIZE + (int) (tail & (STRIPE_SIZE - 1)), key);
+        }
+        return true;
+    }
+
+    /**
+     * Hands every recorded key to the consumer, in the order recorded within each stripe, and frees
+     * their slots. A key whose slot was claimed but not yet written is left for the next drain.
+     *
+     * @param consumer applies a lookup to the eviction policy
+     */
+    void drain(Consumer<String> consumer) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            int counter = stripe * PADDING;
+            long head = readCounts.get(counter);
+            long tail = writeCounts.get(counter);
+            for (; head < tail; head++) {
+                int slot = stripe * STRIPE_SIZE + (int) (head & (STRIPE_SIZE - 1));
+                String key = slots.get(slot);
+                if (key == null) break;
+                slots.lazySet(slot, null);
+                consumer.accept(key);
+            }
+            readCounts.lazySet(counter, head);
+        }
+    }
+
+    /** Returns the stripe of the calling thread. */
+    private static int stripe() {
+        int hash = System.identityHashCode(Thread.currentThread());
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
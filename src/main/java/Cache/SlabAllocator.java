@@ -0,0 +1,158 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocates the native memory holding off-heap cache contents.
+ * <p>
+ * Memory is reserved from the operating system in direct {@link ByteBuffer} slabs of
+ * {@value #SLAB_SIZE} bytes, each cut into chunks of one power-of-two size class (from
+ * {@value #MIN_CHUNK} bytes to a whole slab). A content is stored in a chunk of the smallest class
+ * that fits it, so at most half of a chunk is wasted; content larger than a slab gets a direct buffer
+ * of its own. Freed chunks go back to the free list of their slab, and a slab whose chunks are all
+ * free is given back to the operating system at once, unless it is the last slab of its class.
+ * <p>
+ * Allocation and freeing are synchronized on the allocator; they happen on cache writes and
+ * evictions only, never on hits.
+ */
+final class SlabAllocator {
+    /** Size of a slab, and largest content stored in a slab chunk: 1 MiB. */
+    static final int SLAB_SIZE = 1 << 20;
+    /** Size of the smallest chunks. */
+    static final int MIN_CHUNK = 256;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CHUNK);
+    private static final int MAX_SHIFT = Integer.numberOfTrailingZeros(SLAB_SIZE);
+
+    /** Slabs of each size class that have a free chunk, the most recently freed into first. */
+    private final List<ArrayDeque<Slab>> partialSlabs = new ArrayList<>();
+    /** Number of slabs of each size class, free or not. */
+    private final int[] slabCounts = new int[MAX_SHIFT - MIN_SHIFT + 1];
+    /** Native memory currently reserved, in bytes. */
+    private long reservedBytes;
+
+    SlabAllocator() {
+        for (int i = 0; i < slabCounts.length; i++) {
+            partialSlabs.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Allocates native memory for a content.
+     *
+     * @param size the size of the content, in bytes
+     * @return the allocated chunk, at least {@code size} bytes long
+     * @throws OutOfMemoryError if the direct memory limit of the JVM is reached
+     */
+    synchronized Chunk allocate(int size) {
+        if (size > SLAB_SIZE) {
+            ByteBuffer dedicated = ByteBuffer.allocateDirect(size);
+            reservedBytes += size;
+            return new Chunk(null, dedicated);
+        }
+        int sizeClass = sizeClass(size);
+        ArrayDeque<Slab> partial = partialSlabs.get(sizeClass);
+        Slab slab = partial.peekFirst();
+        if (slab == null) {
+            slab = new Slab(sizeClass, ByteBuffer.allocateDirect(SLAB_SIZE));
+            reservedBytes += SLAB_SIZE;
+            slabCounts[sizeClass]++;
+            partial.addFirst(slab);
+        }
+        ByteBuffer chunk = slab.freeChunks.pop();
+        slab.used++;
+        if (slab.freeChunks.isEmpty()) {
+            partial.removeFirst();
+        }
+        return new Chunk(slab, chunk);
+    }
+
+    /**
+     * Gives a chunk back. Its memory must not be read afterwards.
+     *
+     * @param chunk a chunk returned by {@link #allocate(int)}, freed only once
+     */
+    synchronized void free(Chunk chunk) {
+        Slab slab = chunk.slab;
+        if (slab == null) {
+            reservedBytes -= chunk.buffer.capacity();
+            DirectMemory.free(chunk.buffer);
+            return;
+        }
+        ArrayDeque<Slab> partial = partialSlabs.get(slab.sizeClass);
+        if (slab.freeChunks.isEmpty()) {
+            partial.addFirst(slab);
+        }
+        slab.freeChunks.push(chunk.buffer);
+        slab.used--;
+        if (slab.used == 0 && slabCounts[slab.sizeClass] > 1) {
+            partial.remove(slab);
+            slabCounts[slab.sizeClass]--;
+            reservedBytes -= SLAB_SIZE;
+            DirectMemory.free(slab.memory);
+        }
+    }
+
+    /**
+     * Returns the native memory currently reserved, used or not.
+     *
+     * @return the reserved memory, in bytes
+     */
+    synchronized long reservedBytes() {
+        return reservedBytes;
+    }
+
+    /** Returns the index of the smallest size class holding {@code size} bytes. */
+    private static int sizeClass(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(MIN_CHUNK, size) - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    /** A slab cut into chunks of one size class. */
+    private static final class Slab {
+        /** The size class of the chunks. */
+        final int sizeClass;
+        /** The direct buffer reserved for the slab. */
+        final ByteBuffer memory;
+        /** The chunks not allocated. */
+        final ArrayDeque<ByteBuffer> freeChunks = new ArrayDeque<>();
+        /** Number of chunks allocated. */
+        int used;
+
+        Slab(int sizeClass, ByteBuffer memory) {
+            this.sizeClass = sizeClass;
+            this.memory = memory;
+            int chunkSize = 1 << (sizeClass + MIN_SHIFT);
+            for (int offset = 0; offset < SLAB_SIZE; offset += chunkSize) {
+                freeChunks.push(memory.slice(offset, chunkSize));
+            }
+        }
+    }
+
+    /**
+     * A piece of native memory handed out by the allocator.
+     */
+    static final class Chunk {
+        /** The slab the chunk was cut from, or {@code null} for a dedicated buffer. */
+        private final Slab slab;
+        /** The memory of the chunk. */
+        private final ByteBuffer buffer;
+
+        private Chunk(Slab slab, ByteBuffer buffer) {
+            this.slab = slab;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Returns a view of the memory of the chunk, positioned at its start.
+         *
+         * @return a writable view of the chunk
+         */
+        ByteBuffer buffer() {
+            return buffer.duplicate().clear();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package Cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schedules the expiration of cache entries in a hierarchical timing wheel, so that expiring them
+ * costs time in proportion to the entries coming due rather than to the size of the cache.
+ * <p>
+ * The wheel has four levels of 64 buckets, each bucket spanning about 1 second, 1 minute, 1 hour
+ * and 3 days respectively (powers of two of nanoseconds). An entry is linked, in constant time, into
+ * the bucket of the finest level whose span covers the time left until its deadline. As time
+ * advances, the buckets passed over are emptied: an entry whose deadline has been reached is
+ * expired, and any other is linked again into a finer bucket, either because it was scheduled on a
+ * coarser level or because it was used since it was scheduled.
+ * <p>
+ * Deadlines are computed from the monotonic {@link System#nanoTime()} clock: the last use of the
+ * entry (see {@link CacheEntry#getLastUseNanos()}) plus the expiration time. Uses of an entry do not
+ * touch the wheel, which keeps hits free of locking; the wheel only learns of them when the entry
+ * comes due. The wheel is not thread-safe: the {@link CacheManager} guards it with its write lock.
+ */
+final class TimerWheel {
+    /** Number of buckets per level. */
+    private static final int BUCKETS = 64;
+    /** Base-2 logarithm of the span of a bucket, in nanoseconds, for each level (~1.07 s, ~1.1 min, ~1.2 h, ~3.3 days). */
+    private static final int[] SHIFTS = {30, 36, 42, 48};
+
+    /** Sentinels of the circular lists of timers in each bucket, by level. */
+    private final Timer[][] wheel = new Timer[SHIFTS.length][BUCKETS];
+    /** Timer of every scheduled key. */
+    private final Map<String, Timer> timers = new HashMap<>();
+    /** Origin of the wheel's time, so that it stays positive whatever the value of {@link System#nanoTime()}. */
+    private final long origin;
+    /** The time the wheel was last advanced to, relative to {@link #origin}. */
+    private long currentTime;
+
+    /**
+     * Creates an empty wheel starting at the given time.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    TimerWheel(long now) {
+        this.origin = now;
+        for (Timer[] level : wheel) {
+            for (int i = 0; i < BUCKETS; i++) {
+                level[i] = new Timer(null, null, 0);
+            }
+        }
+    }
+
+    /**
+     * Schedules the expiration of an entry, replacing any timer of the same key.
+     *
+     * @param key      the cache key
+     * @param entry    the cached entry
+     * @param deadline the {@link System#nanoTime()} at which the entry expires unless used
+     */
+    void schedule(String key, CacheEntry entry, long deadline) {
+        remove(key);
+        Timer timer = new Timer(key, entry, deadline - origin);
+        timers.put(key, timer);
+        link(timer);
+    }
+
+    /**
+     * Cancels the timer of a key removed from the cache, if it has one.
+     *
+     * @param key the cache key
+     */
+    void remove(String key) {
+        Timer timer = timers.remove(key);
+        if (timer != null) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * Advances the wheel to the given time, collecting the entries that were not used within the
+     * expiration time. Entries used since they were scheduled are scheduled again from their last use.
+     *
+     * @param now             the current {@link System#nanoTime()}
+     * @param expirationNanos the expiration time, in nanoseconds
+     * @param expired         collects the keys and entries that expired, no longer scheduled
+     */
+    void advance(long now, long expirationNanos, List<Map.Entry<String, CacheEntry>> expired) {
+        long previousTime = currentTime;
+        currentTime = now - origin;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previousTime >>> SHIFTS[level];
+            long delta = (currentTime >>> SHIFTS[level]) - previousTicks;
+            if (delta <= 0) break;
+            //The bucket of the previous tick is visited again, as it may have been filled since
+            int steps = (int) Math.min(delta + 1, BUCKETS);
+            for (int i = 0; i < steps; i++) {
+                expireBucket(wheel[level][(int) ((previousTicks + i) & (BUCKETS - 1))], expirationNanos, expired);
+            }
+        }
+    }
+
+    /**
+     * Empties a bucket, expiring the timers that are due and linking the others again.
+     */
+    private void expireBucket(Timer sentinel, long expirationNanos, List<Map.Entry<String, CacheEntry>> expired) {
+        Timer timer = sentinel.next;
+        sentinel.next = sentinel;
+        sentinel.previous = sentinel;
+        while (timer != sentinel) {
+            Timer next = timer.next;
+            timer.previous = null;
+            timer.next = null;
+            timer.deadline = timer.entry.getLastUseNanos() - origin + expirationNanos;
+            if (timer.deadline - currentTime <= 0) {
+                timers.remove(timer.key);
+                expired.add(Map.entry(timer.key, timer.entry));
+            } else {
+                link(timer);
+            }
+            timer = next;
+        }
+    }
+
+    /**
+     * Links a timer into the bucket of the finest level spanning the time left until its deadline.
+     */
+    private void link(Timer timer) {
+        long remaining = timer.deadline - currentTime;
+        int level = 0;
+        while (level < SHIFTS.length - 1 && remaining >= 1L << SHIFTS[level + 1]) {
+            level++;
+        }
+        //A timer already due goes into the current bucket, visited on the next advance
+        long time = Math.max(timer.deadline, currentTime);
+        Timer sentinel = wheel[level][(int) ((time >>> SHIFTS[level]) & (BUCKETS - 1))];
+        timer.previous = sentinel.previous;
+        timer.next = sentinel;
+        sentinel.previous.next = timer;
+        sentinel.previous = timer;
+    }
+
+    /**
+     * Unlinks a timer from its bucket.
+     */
+    private static void unlink(Timer timer) {
+        if (timer.next == null) return;
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+    }
+
+    /** The expiration timer of one cache entry, linked into a bucket; a bucket's sentinel holds no entry. */
+    private static final class Timer {
+        /** The cache key. */
+        final String key;
+        /** The cached entry. */
+        final CacheEntry entry;
+        /** The time the entry expires unless used, relative to the wheel's origin. */
+        long deadline;
+        /** The previous timer in the bucket. */
+        Timer previous;
+        /** The next timer in the bucket. */
+        Timer next;
+
+        Timer(String key, CacheEntry entry, long deadline) {
+            this.key = key;
+            this.entry = entry;
+            this.deadline = deadline;
+            this.previous = this;
+            this.next = this;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package Cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Decides which cache entries to keep within a budget of bytes, with the W-TinyLFU policy.
+ * <p>
+ * New entries enter a small LRU window (1% of the budget). Entries pushed out of the window are
+ * candidates for the main region, a segmented LRU split into a probation segment and a protected
+ * segment (80% of the main region) holding entries hit again while in probation. A candidate is
+ * only admitted if the {@link FrequencySketch} estimates it was requested more often than the
+ * probation entry it would evict; otherwise the candidate itself is evicted. A burst of files
+ * requested once therefore cycles through the window without flushing the frequently used ones.
+ * <p>
+ * Entries are weighed by their size in bytes, so one large candidate may have to beat several
+ * victims. Requests are recorded in batches, as the {@link CacheManager} drains its {@link ReadBuffer}
+ * under its write lock: a hit only sets the entry's accessed flag, and the flag is acted on (moving
+ * the entry to the tail of its segment, or promoting it to the protected segment) when eviction next
+ * reaches the entry.
+ * <p>
+ * The policy is not thread-safe: every method, including the statistics, is called with the
+ * {@link CacheManager}'s write lock held.
+ */
+final class TinyLfuPolicy {
+    /** Estimated average size of a cached file, used to size the frequency sketch. */
+    private static final int AVERAGE_ENTRY_BYTES = 4096;
+
+    /** Node of every tracked key. */
+    private final HashMap<String, Node> nodes = new HashMap<>();
+    /** The admission window, oldest first. */
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>();
+    /** The probation segment of the main region, oldest first. */
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>();
+    /** The protected segment of the main region, oldest first. */
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>();
+
+    /** The request frequency estimates. */
+    private FrequencySketch sketch;
+    /** The total budget, in bytes. */
+    private long maximumBytes;
+    /** The budget of the window, in bytes. */
+    private long windowMaximum;
+    /** The budget of the protected segment, in bytes. */
+    private long protectedMaximum;
+    /** Bytes held by the window. */
+    private long windowBytes;
+    /** Bytes held by the probation segment. */
+    private long probationBytes;
+    /** Bytes held by the protected segment. */
+    private long protectedBytes;
+    /** Number of entries evicted to stay within the budget. */
+    private long evictionCount;
+    /** Bytes of the entries evicted to stay within the budget. */
+    private long evictedBytes;
+
+    /**
+     * Creates a policy for the given budget.
+     *
+     * @param maximumBytes the maximum total size of the cached entries, in bytes
+     */
+    TinyLfuPolicy(long maximumBytes) {
+        setMaximum(maximumBytes);
+    }
+
+    /**
+     * Changes the budget. Entries over the new budget are evicted on the next write.
+     * The frequency history is reset, as the sketch is sized from the budget.
+     *
+     * @param maximumBytes the maximum total size of the cached entries, in bytes
+     */
+    void setMaximum(long maximumBytes) {
+        this.maximumBytes = Math.max(0, maximumBytes);
+        this.windowMaximum = Math.max(1, this.maximumBytes / 100);
+        this.protectedMaximum = (this.maximumBytes - windowMaximum) * 8 / 10;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, this.maximumBytes / AVERAGE_ENTRY_BYTES));
+    }
+
+    /**
+     * Records a request for a key, hit or miss, as buffered requests are drained.
+     *
+     * @param key the cache key
+     */
+    void recordAccess(String key) {
+        sketch.increment(key);
+        Node node = nodes.get(key);
+        if (node != null) {
+            node.accessed = true;
+        }
+    }
+
+    /**
+     * Tracks a written entry and evicts what no longer fits in the budget.
+     * A rewritten key starts over in the window.
+     *
+     * @param key    the cache key
+     * @param weight the size of the entry, in bytes
+     * @return the keys to remove from the cache, possibly including {@code key} itself
+     */
+    List<String> onWrite(String key, long weight) {
+        List<String> evicted = new ArrayList<>();
+        onRemove(key);
+        if (weight > maximumBytes) {
+            evicted.add(key);
+            return evicted;
+        }
+        Node node = new Node(key, weight);
+        nodes.put(key, node);
+        window.put(key, node);
+        windowBytes += weight;
+        evictFromWindow(evicted);
+        return evicted;
+    }
+
+    /**
+     * Stops tracking a key removed from the cache (expired, or replaced).
+     *
+     * @param key the cache key
+     */
+    void onRemove(String key) {
+        Node node = nodes.remove(key);
+        if (node == null) return;
+        if (window.remove(key) != null) {
+            windowBytes -= node.weight;
+        } else if (probation.remove(key) != null) {
+            probationBytes -= node.weight;
+        } else if (protectedSegment.remove(key) != null) {
+            protectedBytes -= node.weight;
+        }
+    }
+
+    /**
+     * Moves the oldest window entries out of the window until it fits its budget, each
+     * competing for a place in the main region.
+     *
+     * @param evicted collects the evicted keys
+     */
+    private void evictFromWindow(List<String> evicted) {
+        while (windowBytes > windowMaximum && !window.isEmpty()) {
+            Node candidate = first(window);
+            window.remove(candidate.key);
+            if (candidate.accessed && !window.isEmpty()) {
+                //Second chance: hit while in the window
+                candidate.accessed = false;
+                window.put(candidate.key, candidate);
+                continue;
+            }
+            windowBytes -= candidate.weight;
+            admit(candidate, evicted);
+        }
+    }
+
+    /**
+     * Admits a candidate to the probation segment if it is requested more often than each entry it
+     * has to evict to fit; evicts the candidate otherwise.
+     *
+     * @param candidate the entry leaving the window
+     * @param evicted   collects the evicted keys
+     */
+    private void admit(Node candidate, List<String> evicted) {
+        long mainMaximum = maximumBytes - windowMaximum;
+        int candidateFrequency = sketch.frequency(candidate.key);
+        while (probationBytes + protectedBytes + candidate.weight > mainMaximum) {
+            Node victim = probationVictim();
+            if (victim == null || candidateFrequency <= sketch.frequency(victim.key)) {
+                evict(candidate, evicted);
+                return;
+            }
+            probation.remove(victim.key);
+            probationBytes -= victim.weight;
+            evict(victim, evicted);
+        }
+        probation.put(candidate.key, candidate);
+        probationBytes += candidate.weight;
+    }
+
+    /**
+     * Finds the oldest probation entry not hit since it was last examined. Hit entries met on the
+     * way are promoted to the protected segment; when probation is empty, the oldest protected
+     * entries are demoted to it.
+     *
+     * @return the victim, still in the probation segment, or {@code null} if the main region is empty
+     */
+    private Node probationVictim() {
+        while (true) {
+            if (probation.isEmpty()) {
+                if (protectedSegment.isEmpty()) return null;
+                Node oldest = first(protectedSegment);
+                protectedSegment.remove(oldest.key);
+                if (oldest.accessed) {
+                    oldest.accessed = false;
+                    protectedSegment.put(oldest.key, oldest);
+                } else {
+                    protectedBytes -= oldest.weight;
+                    probation.put(oldest.key, oldest);
+                    probationBytes += oldest.weight;
+                }
+                continue;
+            }
+            Node oldest = first(probation);
+            if (!oldest.accessed) return oldest;
+
+            oldest.accessed = false;
+            probation.remove(oldest.key);
+            probationBytes -= oldest.weight;
+            protectedSegment.put(oldest.key, oldest);
+            protectedBytes += oldest.weight;
+            while (protectedBytes > protectedMaximum && protectedSegment.size() > 1) {
+                Node demoted = first(protectedSegment);
+                protectedSegment.remove(demoted.key);
+                protectedBytes -= demoted.weight;
+                probation.put(demoted.key, demoted);
+                probationBytes += demoted.weight;
+            }
+        }
+    }
+
+    /**
+     * Drops a node that left its segment and counts the eviction.
+     *
+     * @param node    the evicted node
+     * @param evicted collects the evicted keys
+     */
+    private void evict(Node node, List<String> evicted) {
+        nodes.remove(node.key);
+        evicted.add(node.key);
+        evictionCount++;
+        evictedBytes += node.weight;
+    }
+
+    /**
+     * Returns the total size of the tracked entries.
+     *
+     * @return the weighted size, in bytes
+     */
+    long weightedSize() {
+        return windowBytes + probationBytes + protectedBytes;
+    }
+
+    /**
+     * Returns the budget.
+     *
+     * @return the maximum total size of the cached entries, in bytes
+     */
+    long maximum() {
+        return maximumBytes;
+    }
+
+    /**
+     * Returns the number of entries evicted to stay within the budget.
+     *
+     * @return the eviction count
+     */
+    long evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the total size of the entries evicted to stay within the budget.
+     *
+     * @return the evicted bytes
+     */
+    long evictedBytes() {
+        return evictedBytes;
+    }
+
+    private static Node first(LinkedHashMap<String, Node> segment) {
+        Iterator<Node> iterator = segment.values().iterator();
+        return iterator.next();
+    }
+
+    /** The policy state of one cache key. */
+    private static final class Node {
+        /** The cache key. */
+        final String key;
+        /** The size of the entry, in bytes. */
+        final long weight;
+        /** Whether the entry was hit since eviction last examined it. */
+        boolean accessed;
+
+        Node(String key, long weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+}
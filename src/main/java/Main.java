@@ -1,12 +1,23 @@
 import Cache.CacheManagerSingleton;
+import Cache.MappedFileCacheSingleton;
+import config.CacheStorage;
 import config.ServerConfig;
 import core.MainHTTPServerThread;
 import logging.Logger;
+import utils.CacheInvalidator;
+import utils.DocumentRootWatcher;
+import utils.FileService;
+import utils.PrecompressedIndex;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Entry point of the web server application.
  * <p>
  * Initializes server configuration, logging system, cache management,
+ * the index of precompressed files and the invalidation of changed cached files (both kept up to
+ * date by a document root watcher, with polling as a fallback for the cache),
  * and launches the main HTTP server thread.
  */
 public class Main {
@@ -27,13 +38,33 @@ public class Main {
         logger2.start();
 
         CacheManagerSingleton.getInstance().setExpirationTime(config.getCacheExpirationTime());
+        CacheManagerSingleton.getInstance().setMaximumBytes(config.getCacheMaxBytes());
+        CacheManagerSingleton.getInstance().setOffHeap(config.getCacheStorage() == CacheStorage.OffHeap);
         CacheManagerSingleton.getInstance().start();
 
+        MappedFileCacheSingleton.getInstance().setExpirationTime(config.getCacheExpirationTime());
+        MappedFileCacheSingleton.getInstance().start();
+
         if (config.getRoot() == null) {
             //Failed to load config
             System.exit(1);
         }
 
+        Path documentRoot = Path.of(config.getDocumentRoot());
+        DocumentRootWatcher watcher = new DocumentRootWatcher(documentRoot);
+        PrecompressedIndex precompressedIndex = new PrecompressedIndex(documentRoot);
+        watcher.addListener(precompressedIndex);
+        precompressedIndex.scan();
+        FileService.setPrecompressedIndex(precompressedIndex);
+        Duration pollInterval = config.getCachePollInterval();
+        if (!watcher.isWatching() && pollInterval.isZero()) {
+            pollInterval = Duration.ofSeconds(5); //No watcher: polling is the only way to learn of changes
+        }
+        CacheInvalidator cacheInvalidator = new CacheInvalidator(config, CacheManagerSingleton.getInstance(), pollInterval);
+        watcher.addListener(cacheInvalidator);
+        watcher.start();
+        cacheInvalidator.start();
+
         MainHTTPServerThread s = new MainHTTPServerThread(config);
         s.start();
         try {
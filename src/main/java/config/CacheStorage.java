@@ -0,0 +1,13 @@
+package config;
+
+/**
+ * Represents where the file cache stores the contents of cached files.
+ * <p>
+ * Selected through the {@code server.cache.storage} configuration key.
+ */
+public enum CacheStorage {
+    /** Contents held in {@code byte[]} arrays on the Java heap. */
+    Heap,
+    /** Contents held in native memory slabs, outside of the garbage-collected heap; the index stays on the heap. */
+    OffHeap
+}
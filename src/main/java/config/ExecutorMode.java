@@ -0,0 +1,15 @@
+package config;
+
+/**
+ * Represents the kind of threads that run connection and request tasks.
+ * <p>
+ * Selected through the {@code server.executor.mode} configuration key.
+ */
+public enum ExecutorMode {
+    /** An elastic pool of platform worker threads sharing one queue, sized up to {@code server.maximum.requests}. */
+    Platform,
+    /** One virtual thread per task (requires a Java 21+ runtime). */
+    Virtual,
+    /** A work-stealing pool of {@code server.maximum.requests} platform threads, each with its own task deque. */
+    WorkStealing
+}
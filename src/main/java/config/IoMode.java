@@ -0,0 +1,13 @@
+package config;
+
+/**
+ * Represents the I/O model used by {@link core.MainHTTPServerThread} to serve client connections.
+ * <p>
+ * Selected through the {@code server.io.mode} configuration key.
+ */
+public enum IoMode {
+    /** Each connection is handed to a pool worker that blocks on socket reads and writes. */
+    Blocking,
+    /** Selector-based event loops read requests and only hand complete ones to the pool. */
+    Nio
+}
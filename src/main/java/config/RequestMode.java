@@ -0,0 +1,16 @@
+package config;
+
+/**
+ * Represents how {@link core.RequestHandler} schedules the work of a single request.
+ * <p>
+ * Selected through the {@code server.request.mode} configuration key.
+ */
+public enum RequestMode {
+    /**
+     * Validation and header building run inline on the connection thread; a cache hit is answered
+     * without any hand-off and only a cache-miss disk read is passed to the I/O executor.
+     */
+    Staged,
+    /** File reading, validation and header building are started as three threads and joined (parbegin/parend). */
+    ParBegin
+}
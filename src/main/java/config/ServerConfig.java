@@ -139,7 +139,8 @@ public class ServerConfig implements LogProducer {
     }
 
     /**
-     * Returns the maximum number of concurrent requests the server should handle.
+     * Returns the maximum number of concurrent requests the server should handle, which is the
+     * maximum number of worker threads a platform thread pool grows to under load.
      * If the configuration is invalid or missing, defaults to 5.
      *
      * @return the maximum number of requests
@@ -188,7 +189,8 @@ public class ServerConfig implements LogProducer {
     }
 
     /**
-     * Returns the configured cache expiration duration.
+     * Returns the configured cache expiration duration. Zero keeps cached files until they are evicted
+     * or changed on disk (see {@link #getCachePollInterval()}).
      * If the configuration is invalid or missing, defaults to 30 seconds.
      *
      * @return the cache expiration time as a {@link Duration}
@@ -201,4 +203,420 @@ public class ServerConfig implements LogProducer {
             return Duration.ofSeconds(30); //Default of 30 secs in case of corrupt conf  file
         }
     }
+
+    /**
+     * Returns the budget, in bytes, of the file contents held in the cache. Past it, the least
+     * valuable entries are evicted. If the configuration is invalid or missing, defaults to 64 MiB.
+     *
+     * @return the maximum total size of the cached contents, in bytes
+     */
+    public long getCacheMaxBytes() {
+        try {
+            return Math.max(0, Long.parseLong(properties.getProperty("server.cache.maxBytes")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server cache max bytes is corrupt."));
+            return 64L * 1024 * 1024; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns where the file cache stores the contents of cached files.
+     * If the configuration is invalid or missing, defaults to {@link CacheStorage#Heap}.
+     *
+     * @return the configured {@link CacheStorage}
+     */
+    public CacheStorage getCacheStorage() {
+        try {
+            String storage = properties.getProperty("server.cache.storage");
+            if (storage == null) throw new NoSuchFieldException();
+            for (CacheStorage cacheStorage : CacheStorage.values()) {
+                if (cacheStorage.name().equalsIgnoreCase(storage.trim())) return cacheStorage;
+            }
+            throw new IllegalArgumentException(storage);
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server cache storage is corrupt."));
+            return CacheStorage.Heap;
+        }
+    }
+
+    /**
+     * Returns how often cached files are checked against the disk, for file systems that do not
+     * report changes to the document root watcher (network shares, some container mounts).
+     * Zero disables the checks, leaving changes to the watcher.
+     * If the configuration is invalid or missing, defaults to 5 seconds.
+     *
+     * @return the poll interval as a {@link Duration}
+     */
+    public Duration getCachePollInterval() {
+        try {
+            return Duration.ofSeconds(Math.max(0, Integer.parseInt(properties.getProperty("server.cache.pollInterval"))));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server cache poll interval is corrupt."));
+            return Duration.ofSeconds(5); //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the I/O model the server should use to accept and read connections.
+     * If the configuration is invalid or missing, defaults to {@link IoMode#Blocking}.
+     *
+     * @return the configured {@link IoMode}
+     */
+    public IoMode getIoMode() {
+        try {
+            String mode = properties.getProperty("server.io.mode");
+            if (mode == null) throw new NoSuchFieldException();
+            for (IoMode ioMode : IoMode.values()) {
+                if (ioMode.name().equalsIgnoreCase(mode.trim())) return ioMode;
+            }
+            throw new IllegalArgumentException(mode);
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server io mode is corrupt."));
+            return IoMode.Blocking;
+        }
+    }
+
+    /**
+     * Returns the number of selector event-loop threads used when running in {@link IoMode#Nio}.
+     * If the configuration is invalid or missing, defaults to 2.
+     *
+     * @return the number of event-loop threads (at least 1)
+     */
+    public int getEventLoopThreads() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.io.eventLoops")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server event loops is corrupt."));
+            return 2; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the number of threads accepting connections. With more than one, each acceptor gets its
+     * own listening socket bound with {@code SO_REUSEPORT} where the platform supports it, so that the
+     * kernel spreads new connections across them. If the configuration is invalid or missing, defaults to 1.
+     *
+     * @return the number of acceptor threads (at least 1)
+     */
+    public int getAcceptorThreads() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.io.acceptors")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server acceptors is corrupt."));
+            return 1; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns how long an idle persistent (keep-alive) connection is kept open while waiting
+     * for the next request.
+     * If the configuration is invalid or missing, defaults to 5 seconds.
+     *
+     * @return the keep-alive idle timeout as a {@link Duration}
+     */
+    public Duration getKeepAliveTimeout() {
+        try {
+            return Duration.ofSeconds(Integer.parseInt(properties.getProperty("server.keepAlive.timeout")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server keep-alive timeout is corrupt."));
+            return Duration.ofSeconds(5); //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum number of requests served over a single persistent connection
+     * before the server closes it.
+     * If the configuration is invalid or missing, defaults to 100.
+     *
+     * @return the maximum number of requests per connection (at least 1)
+     */
+    public int getKeepAliveMaxRequests() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.keepAlive.maxRequests")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server keep-alive max requests is corrupt."));
+            return 100; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum number of pipelined requests processed concurrently on a single connection
+     * before the server stops reading ahead and waits for their responses to be written.
+     * If the configuration is invalid or missing, defaults to 8.
+     *
+     * @return the pipeline depth (at least 1)
+     */
+    public int getPipelineDepth() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.pipeline.depth")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server pipeline depth is corrupt."));
+            return 8; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum number of threads rendering the pipelined requests of blocking connections,
+     * and their requests that had to be loaded from disk. These threads are budgeted apart from the
+     * {@link #getMaxRequests()} connection threads, which wait for them.
+     * If the configuration is invalid or missing, defaults to 4.
+     *
+     * @return the maximum number of pipeline threads (at least 1)
+     */
+    public int getPipelineThreads() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.pipeline.threads")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server pipeline threads is corrupt."));
+            return 4; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the kind of threads used to run connection and request tasks.
+     * If the configuration is invalid or missing, defaults to {@link ExecutorMode#Platform}.
+     *
+     * @return the configured {@link ExecutorMode}
+     */
+    public ExecutorMode getExecutorMode() {
+        try {
+            String mode = properties.getProperty("server.executor.mode");
+            if (mode == null) throw new NoSuchFieldException();
+            for (ExecutorMode executorMode : ExecutorMode.values()) {
+                if (executorMode.name().equalsIgnoreCase(mode.trim())) return executorMode;
+            }
+            throw new IllegalArgumentException(mode);
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server executor mode is corrupt."));
+            return ExecutorMode.Platform;
+        }
+    }
+
+    /**
+     * Returns the number of worker threads a platform thread pool starts with and keeps when idle.
+     * The pool grows from there up to {@link #getMaxRequests()} threads when tasks queue up.
+     * If the configuration is invalid or missing, defaults to 2.
+     *
+     * @return the number of core worker threads (at least 1)
+     */
+    public int getPoolCoreThreads() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.pool.coreThreads")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server pool core threads is corrupt."));
+            return 2; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns how long a worker thread above the core size may stay idle before it is retired.
+     * If the configuration is invalid or missing, defaults to 60 seconds.
+     *
+     * @return the idle keep-alive of extra worker threads as a {@link Duration}
+     */
+    public Duration getPoolKeepAlive() {
+        try {
+            return Duration.ofSeconds(Math.max(1, Integer.parseInt(properties.getProperty("server.pool.keepAlive"))));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server pool keep-alive is corrupt."));
+            return Duration.ofSeconds(60); //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum number of tasks waiting for a worker thread of a platform thread pool.
+     * Connections and requests arriving while the queue is full are answered with
+     * {@code 503 Service Unavailable}. If the configuration is invalid or missing, defaults to 1024.
+     *
+     * @return the task queue capacity (at least 1)
+     */
+    public int getQueueCapacity() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.queue.capacity")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server queue capacity is corrupt."));
+            return 1024; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the target queueing delay of a platform thread pool, in milliseconds. Once tasks keep
+     * waiting longer than this, those that did are answered with {@code 503 Service Unavailable}
+     * instead of being served late. Zero disables the check.
+     * If the configuration is invalid or missing, defaults to 100 milliseconds.
+     *
+     * @return the target queueing delay as a {@link Duration}
+     */
+    public Duration getQueueTargetDelay() {
+        try {
+            return Duration.ofMillis(Math.max(0, Integer.parseInt(properties.getProperty("server.queue.targetDelay"))));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server queue target delay is corrupt."));
+            return Duration.ofMillis(100); //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns how the work of a single request is scheduled.
+     * If the configuration is invalid or missing, defaults to {@link RequestMode#Staged}.
+     *
+     * @return the configured {@link RequestMode}
+     */
+    public RequestMode getRequestMode() {
+        try {
+            String mode = properties.getProperty("server.request.mode");
+            if (mode == null) throw new NoSuchFieldException();
+            for (RequestMode requestMode : RequestMode.values()) {
+                if (requestMode.name().equalsIgnoreCase(mode.trim())) return requestMode;
+            }
+            throw new IllegalArgumentException(mode);
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server request mode is corrupt."));
+            return RequestMode.Staged;
+        }
+    }
+
+    /**
+     * Returns the number of threads dedicated to reading files from disk on a cache miss.
+     * If the configuration is invalid or missing, defaults to 4.
+     *
+     * @return the number of I/O threads (at least 1)
+     */
+    public int getIoThreads() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.io.threads")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server io threads is corrupt."));
+            return 4; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum number of requests waiting for an I/O thread to load their file from disk.
+     * Requests arriving while the I/O queue is full are answered with {@code 503 Service Unavailable},
+     * independently of the queue of requests served from memory.
+     * If the configuration is invalid or missing, defaults to 256.
+     *
+     * @return the I/O queue capacity (at least 1)
+     */
+    public int getIoQueueCapacity() {
+        try {
+            return Math.max(1, Integer.parseInt(properties.getProperty("server.io.queueCapacity")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server io queue capacity is corrupt."));
+            return 256; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the target queueing delay of the I/O threads, in milliseconds, past which waiting
+     * requests are shed like with {@link #getQueueTargetDelay()}. Zero disables the check.
+     * If the configuration is invalid or missing, defaults to 500 milliseconds.
+     *
+     * @return the target I/O queueing delay as a {@link Duration}
+     */
+    public Duration getIoQueueTargetDelay() {
+        try {
+            return Duration.ofMillis(Math.max(0, Integer.parseInt(properties.getProperty("server.io.queueTargetDelay"))));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server io queue target delay is corrupt."));
+            return Duration.ofMillis(500); //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum size, in bytes, of an HTTP request line (method, target and version).
+     * Longer request lines are rejected without being buffered further.
+     * If the configuration is invalid or missing, defaults to 8192.
+     *
+     * @return the maximum request line size (at least 64)
+     */
+    public int getMaxRequestLineSize() {
+        try {
+            return Math.max(64, Integer.parseInt(properties.getProperty("server.http.maxRequestLine")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server max request line size is corrupt."));
+            return 8192; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the maximum size, in bytes, of a complete HTTP request header block
+     * (request line, header fields and the terminating empty line). This is also the size of the
+     * per-connection read buffer. If the configuration is invalid or missing, defaults to 8192.
+     *
+     * @return the maximum header block size (at least 256)
+     */
+    public int getMaxHeaderSize() {
+        try {
+            return Math.max(256, Integer.parseInt(properties.getProperty("server.http.maxHeaderSize")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server max header size is corrupt."));
+            return 8192; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the file size, in bytes, from which a file is sent straight from disk with
+     * {@code transferTo} instead of being read into memory and cached.
+     * If the configuration is invalid or missing, defaults to 1 MiB.
+     *
+     * @return the transfer threshold (at least 1)
+     */
+    public long getTransferThreshold() {
+        try {
+            return Math.max(1, Long.parseLong(properties.getProperty("server.transfer.threshold")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server transfer threshold is corrupt."));
+            return 1048576; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the file size, in bytes, from which a file is memory-mapped and shared between requests
+     * instead of being copied into the in-memory cache. Files at or above
+     * {@link #getTransferThreshold()} are streamed instead. If the configuration is invalid or
+     * missing, defaults to 64 KiB.
+     *
+     * @return the mapping threshold (at least 1)
+     */
+    public long getMmapThreshold() {
+        try {
+            return Math.max(1, Long.parseLong(properties.getProperty("server.mmap.threshold")));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server mmap threshold is corrupt."));
+            return 65536; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns the size, in bytes, from which cached text-like files are sent compressed to clients
+     * accepting it. Smaller files are not worth the encoding overhead. A negative value disables
+     * compression. If the configuration is invalid or missing, defaults to 256 bytes.
+     *
+     * @return the compression threshold, negative if compression is disabled
+     */
+    public int getCompressionMinSize() {
+        try {
+            return Integer.parseInt(properties.getProperty("server.compression.minSize"));
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server compression min size is corrupt."));
+            return 256; //Default in case of corrupt conf
+        }
+    }
+
+    /**
+     * Returns whether complete {@code 200 OK} responses (status line, headers and body) of cached files
+     * are kept serialized next to the cached content, so that a hit is sent with a single write.
+     * If the configuration is invalid or missing, defaults to {@code true}.
+     *
+     * @return {@code true} if serialized responses are cached
+     */
+    public boolean isPreparedResponseCacheEnabled() {
+        String value = properties.getProperty("server.cache.preparedResponses");
+        if ("true".equalsIgnoreCase(value)) return true;
+        if ("false".equalsIgnoreCase(value)) return false;
+        logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server config: Server prepared responses flag is corrupt."));
+        return true; //Default in case of corrupt conf
+    }
 }
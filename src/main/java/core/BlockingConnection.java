@@ -0,0 +1,256 @@
+package core;
+
+import config.ServerConfig;
+import logging.*;
+import utils.HttpRequest;
+import utils.HttpRequestParser;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves a single client connection over a blocking {@link Socket}.
+ * <p>
+ * The connection is persistent (HTTP/1.1 keep-alive) and supports request pipelining:
+ * when a client sends several requests without waiting for the responses, the requests already
+ * sitting in the input buffer are read ahead and processed concurrently on the pipeline executor,
+ * while their responses are written back strictly in request order.
+ * </p>
+ * <p>
+ * A request that arrives on its own and is served from memory is processed directly on the calling
+ * thread, so non-pipelining clients pay no extra hand-off. A request that needs a disk read goes
+ * through the lanes like a pipelined one, its file being loaded on the I/O lane, where cold reads
+ * are bounded and shed under overload, and the response rendered on the fast lane.
+ * </p>
+ * <p>
+ * Requests are read as raw bytes into a reusable buffer and parsed in place by an
+ * {@link HttpRequestParser}; a malformed or oversized request is answered with an error
+ * response and the connection is closed.
+ * </p>
+ * <p>
+ * A persistent connection waiting for its next request holds a worker of the connection executor without using
+ * it. It checks the executor every {@value #IDLE_CHECK_MILLIS} ms while it waits, and gives the worker
+ * up by closing the connection as soon as other connections are queued for one, as a client may close
+ * an idle persistent connection at any time. Idle clients thus never keep new ones waiting past the
+ * executor's target delay, where they would be shed with {@code 503 Service Unavailable}.
+ * </p>
+ * <p>
+ * Large file bodies are transferred with {@code transferTo} to the socket's channel (a kernel-side
+ * copy when the socket was accepted from a channel), after the buffered headers have been flushed.
+ * </p>
+ */
+class BlockingConnection implements LogProducer {
+    /** How often a connection waiting for a request checks whether other connections wait for a worker, in milliseconds. */
+    private static final int IDLE_CHECK_MILLIS = 25;
+
+    /** The socket connected to the client. */
+    private final Socket socket;
+    /** Configuration for the server (document root, defaults, etc.). */
+    private final ServerConfig serverConfig;
+    /** Parser extracting requests from the read buffer. */
+    private final HttpRequestParser parser;
+    /** The executor running this connection, whose queued connections an idle connection gives way to. */
+    private final TaskExecutor connectionExecutor;
+    /** The lanes processing pipelined requests, and requests needing a disk read, concurrently. */
+    private final RequestLanes pipelineLanes;
+    /** How long the connection waits for the next request. */
+    private final Duration keepAliveTimeout;
+    /** Maximum number of requests served on this connection. */
+    private final int maxRequests;
+    /** Maximum number of requests in flight before responses are flushed. */
+    private final int pipelineDepth;
+    /** Origin IP address of the client. */
+    private final String origin;
+
+    /**
+     * Constructs the connection.
+     *
+     * @param socket           the socket connected to the client
+     * @param serverConfig     the server configuration
+     * @param parser           the parser extracting requests from the read buffer
+     * @param connectionExecutor the executor running the connection
+     * @param pipelineExecutor the executor processing pipelined requests
+     * @param ioExecutor       the executor loading the files of requests not served from memory,
+     *                         or {@code null} to process them all on {@code pipelineExecutor}
+     * @param keepAliveTimeout how long an idle connection waits for its next request
+     * @param maxRequests      maximum number of requests served on the connection
+     * @param pipelineDepth    maximum number of pipelined requests in flight
+     */
+    BlockingConnection(Socket socket, ServerConfig serverConfig, HttpRequestParser parser, TaskExecutor connectionExecutor,
+                       Executor pipelineExecutor, Executor ioExecutor, Duration keepAliveTimeout, int maxRequests, int pipelineDepth) {
+        this.socket = socket;
+        this.serverConfig = serverConfig;
+        this.parser = parser;
+        this.connectionExecutor = connectionExecutor;
+        this.pipelineLanes = new RequestLanes(pipelineExecutor, ioExecutor);
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxRequests = maxRequests;
+        this.pipelineDepth = pipelineDepth;
+        this.origin = socket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Serves requests until the connection is closed by either side, times out, reaches its request
+     * limit, or gives its worker up to queued connections while idle. The socket is always closed on return.
+     */
+    void serve() {
+        try (Socket s = socket;
+             InputStream in = s.getInputStream();
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+
+            s.setSoTimeout(keepAliveTimeout.isZero() ? IDLE_CHECK_MILLIS : (int) Math.min(keepAliveTimeout.toMillis(), IDLE_CHECK_MILLIS));
+            WritableByteChannel channel = s.getChannel() != null ? s.getChannel() : Channels.newChannel(s.getOutputStream());
+            ByteBuffer buffer = ByteBuffer.allocate(parser.getMaxHeaderSize()).flip();
+            Deque<CompletableFuture<BufferedResponse>> pending = new ArrayDeque<>();
+            int served = 0;
+            boolean open = true;
+
+            while (open) {
+                HttpRequest request = new HttpRequest();
+                HttpRequestParser.Status status = readRequest(in, buffer, request, served > 0);
+                if (status == null) break; //Client closed the connection
+
+                served++;
+                if (status != HttpRequestParser.Status.Complete) {
+                    logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Rejected request (" + status + ") from " + origin));
+                    if (writeResponses(pending, out, channel)) {
+                        new RequestHandler(out, serverConfig, origin).rejectRequest(status);
+                    }
+                    break;
+                }
+                boolean allowKeepAlive = served < maxRequests;
+                boolean moreBuffered = buffer.hasRemaining() || in.available() > 0;
+
+                if (pending.isEmpty() && !moreBuffered && pipelineLanes.servesFromMemory(serverConfig, request)) {
+                    //Not pipelined and cached: answer directly on this thread
+                    open = new RequestHandler(out, channel, serverConfig, origin).handleRequest(request, allowKeepAlive);
+                    continue;
+                }
+
+                pending.add(renderAsync(request, allowKeepAlive));
+
+                boolean readAhead = allowKeepAlive
+                        && pending.size() < pipelineDepth
+                        && request.isKeepAlive()
+                        && (buffer.hasRemaining() || in.available() > 0);
+                if (!readAhead) {
+                    open = writeResponses(pending, out, channel);
+                }
+            }
+            writeResponses(pending, out, channel);
+        } catch (SocketTimeoutException e) {
+            //Idle keep-alive connection timed out
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error handling client request: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Parses the next request, reading from the socket into the buffer until a complete header
+     * block is available.
+     *
+     * @param in      the client input stream
+     * @param buffer  the read buffer, in read mode, possibly holding bytes of the next request
+     * @param request the request to fill in
+     * @param reused  whether a request was already served on the connection, so that it may give its
+     *                worker up while waiting for this one
+     * @return the parse outcome (never {@link HttpRequestParser.Status#Incomplete}), or {@code null}
+     *         if the client closed the connection before sending a complete request, or the idle
+     *         connection gave its worker up
+     * @throws IOException if reading from the client fails or times out
+     */
+    private HttpRequestParser.Status readRequest(InputStream in, ByteBuffer buffer, HttpRequest request, boolean reused) throws IOException {
+        HttpRequestParser.Status status;
+        while ((status = parser.parse(buffer, request)) == HttpRequestParser.Status.Incomplete) {
+            boolean idle = reused && !buffer.hasRemaining();
+            buffer.compact();
+            int read = read(in, buffer, idle);
+            if (read > 0) buffer.position(buffer.position() + read);
+            buffer.flip();
+            if (read < 0) return null;
+        }
+        return status;
+    }
+
+    /**
+     * Reads from the socket into the buffer, waiting at most the keep-alive timeout for data (forever
+     * if it is zero). The socket timeout only bounds each wait for {@value #IDLE_CHECK_MILLIS} ms, so
+     * that an idle connection notices connections queued for a worker and gives its own up.
+     *
+     * @param in     the client input stream
+     * @param buffer the read buffer, in write mode
+     * @param idle   whether the connection is idle between requests, no part of the next one received yet
+     * @return the number of bytes read, or {@code -1} if the client closed the connection or the idle
+     *         connection gave its worker up
+     * @throws IOException if reading from the client fails or no data arrives within the keep-alive timeout
+     */
+    private int read(InputStream in, ByteBuffer buffer, boolean idle) throws IOException {
+        long start = System.nanoTime();
+        while (true) {
+            if (idle && connectionExecutor.hasQueuedTasks()) return -1;
+            try {
+                return in.read(buffer.array(), buffer.position(), buffer.remaining());
+            } catch (SocketTimeoutException e) {
+                if (!keepAliveTimeout.isZero() && System.nanoTime() - start >= keepAliveTimeout.toNanos()) throw e;
+            }
+        }
+    }
+
+    /**
+     * Renders a request on the pipeline lanes (see {@link RequestLanes}). If a lane sheds the task under
+     * overload, the request is answered with {@code 503 Service Unavailable}, which closes the connection.
+     *
+     * @param request        the parsed HTTP request
+     * @param allowKeepAlive whether the connection may be kept open after this request
+     * @return the future response
+     */
+    private CompletableFuture<BufferedResponse> renderAsync(HttpRequest request, boolean allowKeepAlive) {
+        CompletableFuture<BufferedResponse> response = new CompletableFuture<>();
+        pipelineLanes.dispatch(serverConfig, request, () -> {
+            try {
+                response.complete(BufferedResponse.render(request, allowKeepAlive, serverConfig, origin));
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }, () -> response.complete(BufferedResponse.unavailable(serverConfig, origin)));
+        return response;
+    }
+
+    /**
+     * Waits for the pending responses and writes them in request order.
+     * <p>
+     * If a response closes the connection, or writing fails, the responses queued behind it are discarded.
+     *
+     * @param pending the responses in request order
+     * @param out     the client output stream
+     * @param channel the client channel, receiving file bodies
+     * @return {@code true} if the connection stays open
+     * @throws IOException if writing to the client fails
+     */
+    private boolean writeResponses(Deque<CompletableFuture<BufferedResponse>> pending, OutputStream out,
+                                   WritableByteChannel channel) throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                BufferedResponse response = pending.poll().join();
+                response.writeTo(out, channel);
+                if (!response.keepAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            pending.forEach(future -> future.thenAccept(BufferedResponse::release));
+            pending.clear();
+            out.flush();
+        }
+    }
+}
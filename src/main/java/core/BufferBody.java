@@ -0,0 +1,45 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response body held in a {@link ByteBuffer}, such as cached content or multipart boundaries.
+ */
+class BufferBody implements ResponseBody {
+    /** The bytes left to send. */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a body sending the remaining bytes of a buffer.
+     *
+     * @param buffer the content, positioned at its first byte
+     */
+    BufferBody(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public long remaining() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (target.write(buffer) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        int start = buffer.position() + (int) offset;
+        return new BufferBody(buffer.duplicate().position(start).limit(start + (int) length));
+    }
+
+    @Override
+    public void close() {
+    }
+}
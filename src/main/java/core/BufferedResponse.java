@@ -0,0 +1,101 @@
+package core;
+
+import config.ServerConfig;
+import utils.HttpRequest;
+import utils.HttpRequestParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A fully serialized HTTP response, produced ahead of the moment it can be written.
+ * <p>
+ * Pipelined requests on one connection are processed concurrently, but their responses must be
+ * written back in request order; each response is therefore rendered into memory first and kept
+ * together with the keep-alive decision made by the {@link RequestHandler}.
+ * <p>
+ * Bodies of mapped and large files are not rendered: the response then only holds the status line
+ * and headers, and the body follows as a {@link ResponseBody} written straight to the socket.
+ * A response that is never written must be {@linkplain #release() released}.
+ *
+ * @param bytes     the serialized status line, headers and (unless {@code body} is set) body;
+ *                  empty if no response is to be sent
+ * @param keepAlive whether the connection may be reused after this response
+ * @param body      the body to send after {@code bytes}, or {@code null}
+ */
+record BufferedResponse(byte[] bytes, boolean keepAlive, ResponseBody body) {
+
+    /**
+     * Processes an already-read request and captures its response in memory.
+     *
+     * @param request        the parsed HTTP request
+     * @param allowKeepAlive whether the connection may be kept open after this request
+     * @param serverConfig   the server configuration
+     * @param origin         the IP address of the client
+     * @return the rendered response
+     */
+    static BufferedResponse render(HttpRequest request, boolean allowKeepAlive, ServerConfig serverConfig, String origin) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        RequestHandler handler = new RequestHandler(buffer, serverConfig, origin);
+        boolean keepAlive = handler.handleRequest(request, allowKeepAlive);
+        return new BufferedResponse(buffer.toByteArray(), keepAlive, handler.takeDeferredBody());
+    }
+
+    /**
+     * Captures in memory the error response to a request that could not be parsed.
+     *
+     * @param status       the parse outcome that caused the rejection
+     * @param serverConfig the server configuration
+     * @param origin       the IP address of the client
+     * @return the rendered response, which always closes the connection
+     */
+    static BufferedResponse reject(HttpRequestParser.Status status, ServerConfig serverConfig, String origin) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new RequestHandler(buffer, serverConfig, origin).rejectRequest(status);
+        return new BufferedResponse(buffer.toByteArray(), false, null);
+    }
+
+    /**
+     * Captures in memory the {@code 503 Service Unavailable} response to a request shed by an overloaded pool.
+     *
+     * @param serverConfig the server configuration
+     * @param origin       the IP address of the client
+     * @return the rendered response, which always closes the connection
+     */
+    static BufferedResponse unavailable(ServerConfig serverConfig, String origin) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new RequestHandler(buffer, serverConfig, origin).rejectOverloaded();
+        return new BufferedResponse(buffer.toByteArray(), false, null);
+    }
+
+    /**
+     * Writes the response to a blocking connection and releases its body.
+     *
+     * @param out     the client output stream
+     * @param channel the channel of the same connection, receiving the file body
+     * @throws IOException if writing to the client fails
+     */
+    void writeTo(OutputStream out, WritableByteChannel channel) throws IOException {
+        out.write(bytes);
+        if (body == null) return;
+        try {
+            out.flush();
+            while (!body.transferTo(channel)) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            body.close();
+        }
+    }
+
+    /**
+     * Releases the file body of a response that will not be written.
+     */
+    void release() {
+        if (body != null) {
+            body.close();
+        }
+    }
+}
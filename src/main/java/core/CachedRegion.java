@@ -0,0 +1,65 @@
+package core;
+
+import Cache.CacheEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response body written from a cache entry held off-heap by the {@link Cache.CacheManager}.
+ * <p>
+ * Each region writes from its own view of the entry's native memory, so the content is handed to the
+ * socket without being copied onto the Java heap, and holds a reference on the {@link CacheEntry}
+ * until it is closed.
+ */
+class CachedRegion implements ResponseBody {
+    /** The retained entry. */
+    private final CacheEntry entry;
+    /** This response's view of the content. */
+    private final ByteBuffer view;
+    /** Whether the reference on the entry has been released (always set for slices, which hold none). */
+    private boolean closed;
+
+    /**
+     * Constructs a region over a retained entry; the region takes over the caller's reference.
+     *
+     * @param entry the entry, retained for this response
+     */
+    CachedRegion(CacheEntry entry) {
+        this(entry, entry.contentBuffer(), false);
+    }
+
+    private CachedRegion(CacheEntry entry, ByteBuffer view, boolean closed) {
+        this.entry = entry;
+        this.view = view;
+        this.closed = closed;
+    }
+
+    @Override
+    public long remaining() {
+        return view.remaining();
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (view.hasRemaining()) {
+            if (target.write(view) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        int start = view.position() + (int) offset;
+        return new CachedRegion(entry, view.duplicate().position(start).limit(start + (int) length), true);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            entry.release();
+        }
+    }
+}
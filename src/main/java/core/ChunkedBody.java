@@ -0,0 +1,166 @@
+package core;
+
+import utils.ContentEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A response body of unknown length, streamed with the {@code chunked} transfer coding.
+ * <p>
+ * The source is read in fixed-size buffers, optionally compressed on the way, and each piece is
+ * framed as a chunk as soon as it is ready. The first bytes go out before the end of the source has
+ * even been read, and the memory held does not depend on the size of the source. This is what
+ * allows files too large for the in-memory cache to be compressed on the fly.
+ */
+class ChunkedBody implements ResponseBody {
+    /** Number of source bytes read at a time. */
+    static final int CHUNK_SIZE = 16384;
+    /** Line terminator closing the chunk size line and the chunk data. */
+    private static final byte[] CRLF = {'\r', '\n'};
+    /** The zero-length chunk ending the body (no trailer fields). */
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    /** The source being streamed. */
+    private final ReadableByteChannel source;
+    /** Buffer receiving the source bytes. */
+    private final ByteBuffer input = ByteBuffer.allocate(CHUNK_SIZE);
+    /** Encoded bytes waiting to be framed as the next chunk. */
+    private final ChunkBuffer pending = new ChunkBuffer();
+    /** Stream encoding the source into {@link #pending}; {@code pending} itself when not compressing. */
+    private final OutputStream encoder;
+    /** The framed chunk being written. */
+    private ByteBuffer frame = ByteBuffer.allocate(0);
+    /** Whether the last chunk has been framed. */
+    private boolean finished;
+
+    /**
+     * Opens a file to stream, compressed with the given coding.
+     *
+     * @param path     the file to send
+     * @param encoding the content coding to apply, or {@code null} to send the file as is
+     * @return the body streaming the file
+     * @throws IOException if the file cannot be opened
+     */
+    static ChunkedBody open(Path path, ContentEncoding encoding) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ChunkedBody(file, encoding);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Constructs a body streaming a source, which it closes once closed itself.
+     *
+     * @param source   the source to stream
+     * @param encoding the content coding to apply, or {@code null} to send the source as is
+     * @throws IOException if the coding cannot be set up
+     */
+    ChunkedBody(ReadableByteChannel source, ContentEncoding encoding) throws IOException {
+        this.source = source;
+        this.encoder = encoding == null ? pending : encoding.encoder(pending);
+    }
+
+    /**
+     * Returns {@code -1}: the length is not known before the body has been streamed.
+     *
+     * @return always {@code -1}
+     */
+    @Override
+    public long remaining() {
+        return -1;
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (true) {
+            while (frame.hasRemaining()) {
+                if (target.write(frame) == 0) return false;
+            }
+            if (finished) return true;
+            nextFrame();
+        }
+    }
+
+    /**
+     * Reads the source until some encoded bytes are available, and frames them as the next chunk,
+     * followed by the last chunk once the source is exhausted.
+     *
+     * @throws IOException if reading or encoding fails
+     */
+    private void nextFrame() throws IOException {
+        while (pending.size() == 0 && !finished) {
+            input.clear();
+            int read = source.read(input);
+            if (read < 0) {
+                encoder.close(); //Flushes the encoder and writes its trailer
+                finished = true;
+            } else {
+                encoder.write(input.array(), 0, read);
+            }
+        }
+
+        int length = pending.size();
+        byte[] size = Integer.toHexString(length).getBytes(StandardCharsets.US_ASCII);
+        int capacity = size.length + length + 2 * CRLF.length + LAST_CHUNK.length;
+        if (frame.capacity() < capacity) {
+            frame = ByteBuffer.allocate(Math.max(capacity, CHUNK_SIZE + 64));
+        }
+        frame.clear();
+        if (length > 0) {
+            frame.put(size).put(CRLF).put(pending.array(), 0, length).put(CRLF);
+        }
+        if (finished) {
+            frame.put(LAST_CHUNK);
+        }
+        frame.flip();
+        pending.reset();
+    }
+
+    /**
+     * Always throws: a stream cannot be sliced, so range requests are served from the unencoded file.
+     */
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        throw new UnsupportedOperationException("Chunked bodies cannot be sliced");
+    }
+
+    @Override
+    public void close() {
+        try {
+            encoder.close(); //Releases the native deflater
+        } catch (IOException e) {
+            //Nothing left to send
+        }
+        NioEventLoop.closeQuietly(source);
+    }
+
+    /**
+     * A byte array stream giving direct access to its buffer, so chunks are framed without a copy.
+     */
+    private static class ChunkBuffer extends ByteArrayOutputStream {
+        ChunkBuffer() {
+            super(CHUNK_SIZE + 64);
+        }
+
+        /**
+         * Returns the internal buffer, valid up to {@link #size()}.
+         *
+         * @return the buffer
+         */
+        byte[] array() {
+            return buf;
+        }
+    }
+}
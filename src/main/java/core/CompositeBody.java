@@ -0,0 +1,61 @@
+package core;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * A response body made of several parts sent one after the other, such as the parts of a
+ * {@code multipart/byteranges} response.
+ * <p>
+ * The parts are usually {@linkplain ResponseBody#slice(long, long) slices} of a single underlying
+ * body, which the composite owns and closes once it is closed itself.
+ */
+class CompositeBody implements ResponseBody {
+    /** The parts, in sending order. */
+    private final List<ResponseBody> parts;
+    /** The body the parts were sliced from. */
+    private final ResponseBody owner;
+    /** Index of the part being sent. */
+    private int current = 0;
+
+    /**
+     * Constructs a composite body.
+     *
+     * @param parts the parts, in sending order
+     * @param owner the body the parts depend on, closed with this composite
+     */
+    CompositeBody(List<ResponseBody> parts, ResponseBody owner) {
+        this.parts = parts;
+        this.owner = owner;
+    }
+
+    @Override
+    public long remaining() {
+        long remaining = 0;
+        for (int i = current; i < parts.size(); i++) {
+            remaining += parts.get(i).remaining();
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (current < parts.size()) {
+            if (!parts.get(current).transferTo(target)) return false;
+            current++;
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        throw new UnsupportedOperationException("Composite bodies cannot be sliced");
+    }
+
+    @Override
+    public void close() {
+        parts.forEach(ResponseBody::close);
+        owner.close();
+    }
+}
@@ -0,0 +1,83 @@
+package core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A response body that is sent straight from a file with {@link FileChannel#transferTo}.
+ * <p>
+ * When the target is a socket channel the kernel copies the bytes from the page cache to the
+ * socket (sendfile), so the body never passes through the Java heap. The region remembers how
+ * far it got, which lets a non-blocking writer resume a partial transfer on the next writable event.
+ */
+class FileRegion implements ResponseBody {
+    /** The open file. */
+    private final FileChannel file;
+    /** Position of the next byte to transfer. */
+    private long position;
+    /** Position just past the last byte to transfer. */
+    private final long end;
+    /** Whether closing this region closes the file (false for slices). */
+    private final boolean owner;
+
+    /**
+     * Opens a file and covers its whole current content.
+     *
+     * @param path the file to send
+     * @return the region covering the file
+     * @throws IOException if the file cannot be opened
+     */
+    static FileRegion open(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new FileRegion(file, 0, file.size(), true);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private FileRegion(FileChannel file, long position, long end, boolean owner) {
+        this.file = file;
+        this.position = position;
+        this.end = end;
+        this.owner = owner;
+    }
+
+    @Override
+    public long remaining() {
+        return end - position;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if the transfer fails or the file was truncated while being sent
+     */
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (position < end) {
+            long transferred = file.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                if (position >= file.size()) throw new EOFException("File truncated while being sent");
+                return false;
+            }
+            position += transferred;
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        return new FileRegion(file, position + offset, position + offset + length, false);
+    }
+
+    @Override
+    public void close() {
+        if (owner) NioEventLoop.closeQuietly(file);
+    }
+}
@@ -0,0 +1,61 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response, or part of one, made of several buffers written with a single gathering write.
+ * <p>
+ * Used for prepared responses, whose fixed part is shared between requests and whose per-request
+ * headers sit in a buffer of their own: a socket channel sends them all with one system call.
+ * Targets that cannot gather are written one buffer after the other.
+ */
+class GatheringBody implements ResponseBody {
+    /** The buffers, in sending order. */
+    private final ByteBuffer[] buffers;
+
+    /**
+     * Constructs a body sending the remaining bytes of the given buffers.
+     *
+     * @param buffers the buffers, in sending order
+     */
+    GatheringBody(ByteBuffer... buffers) {
+        this.buffers = buffers;
+    }
+
+    @Override
+    public long remaining() {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        if (target instanceof GatheringByteChannel gathering) {
+            while (remaining() > 0) {
+                if (gathering.write(buffers) == 0) return false;
+            }
+            return true;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                if (target.write(buffer) == 0) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        throw new UnsupportedOperationException("Gathering bodies cannot be sliced");
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -1,11 +1,20 @@
 package core;
 
+import config.ExecutorMode;
+import config.IoMode;
 import config.ServerConfig;
 import logging.*;
+import utils.HttpRequestParser;
 
 import java.io.*;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A simple multithreaded HTTP server that listens on a specified port and serves files from a configured root directory.
@@ -13,12 +22,37 @@ import java.net.Socket;
  * It uses a {@link ThreadPool} to manage concurrent client connections and delegates request handling
  * to {@link RequestHandler}. Configuration settings such as port number and document root are loaded
  * via {@link ServerConfig}.
+ * <p>
+ * Depending on {@link ServerConfig#getIoMode()}, connections are either served by blocking pool
+ * workers or multiplexed over a group of {@link NioEventLoop}s. The workers themselves are platform
+ * threads of a {@link ThreadPool} or virtual threads, according to {@link ServerConfig#getExecutorMode()}.
+ * Disk reads on a cache miss run on a separate, fixed-size I/O pool (see {@link RequestLanes}). In
+ * blocking mode, pipelined requests and requests loaded from disk are rendered on a pipeline pool of
+ * {@link ServerConfig#getPipelineThreads()} threads, budgeted apart from the connection workers.
+ * <p>
+ * Connections are accepted by {@link ServerConfig#getAcceptorThreads()} threads (or listening event
+ * loops). Where {@code SO_REUSEPORT} is available, each of them has its own listening socket bound to
+ * the same port and the kernel balances new connections between them; elsewhere they share one socket.
  */
 public class MainHTTPServerThread extends Thread implements LogProducer {
     /** Configuration for the server (port, root directory, etc.). */
     private final ServerConfig serverConfig;
-    /** Pool of worker threads used to handle incoming client requests concurrently. */
-    private final ThreadPool threadPool;
+    /** Executor used to handle incoming client requests concurrently. */
+    private final TaskExecutor threadPool;
+    /** Executor processing pipelined requests of blocking connections concurrently; {@code null} in NIO mode. */
+    private final TaskExecutor pipelinePool;
+    /** Dedicated pool loading files from disk: the I/O lane of requests not served from memory. */
+    private final TaskExecutor ioPool;
+    /** Parser shared by the blocking connections. */
+    private final HttpRequestParser requestParser;
+    /** How long an idle keep-alive connection waits for its next request. */
+    private final Duration keepAliveTimeout;
+    /** Maximum number of requests served on a single connection. */
+    private final int keepAliveMaxRequests;
+    /** Maximum number of pipelined requests in flight on a single connection. */
+    private final int pipelineDepth;
+    /** The listening channels, once bound. */
+    private final List<Closeable> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructs the HTTP server thread using the specified server configuration.
@@ -27,51 +61,244 @@ public class MainHTTPServerThread extends Thread implements LogProducer {
      */
     public MainHTTPServerThread(ServerConfig config) {
         this.serverConfig = config;
-        this.threadPool = new ThreadPool(config.getMaxRequests());
+        this.threadPool = createExecutor(config.getExecutorMode(), config.getMaxRequests());
+        this.pipelinePool = config.getIoMode() == IoMode.Blocking
+                ? createExecutor(config.getExecutorMode(), config.getPipelineThreads()) : null;
+        this.ioPool = new ThreadPool(config.getIoThreads(), config.getIoQueueCapacity(), config.getIoQueueTargetDelay());
+        this.requestParser = new HttpRequestParser(config.getMaxRequestLineSize(), config.getMaxHeaderSize());
+        this.keepAliveTimeout = config.getKeepAliveTimeout();
+        this.keepAliveMaxRequests = config.getKeepAliveMaxRequests();
+        this.pipelineDepth = config.getPipelineDepth();
+    }
+
+    /**
+     * Creates the executor matching the configured mode.
+     * <p>
+     * If virtual threads are requested but the runtime does not provide them, a warning is logged
+     * and a {@link ThreadPool} of platform threads is used instead. A platform thread pool grows from
+     * {@link ServerConfig#getPoolCoreThreads()} to {@code poolSize} threads under load, has a bounded
+     * queue and sheds the tasks it cannot serve in time, as configured by {@link ServerConfig#getQueueCapacity()}
+     * and {@link ServerConfig#getQueueTargetDelay()}.
+     *
+     * @param mode     the configured executor mode
+     * @param poolSize the maximum number of worker threads for {@link ExecutorMode#Platform} and {@link ExecutorMode#WorkStealing}
+     * @return a started executor
+     */
+    private TaskExecutor createExecutor(ExecutorMode mode, int poolSize) {
+        if (mode == ExecutorMode.WorkStealing) {
+            return new WorkStealingExecutor(poolSize, serverConfig.getQueueCapacity(), serverConfig.getQueueTargetDelay());
+        }
+        if (mode == ExecutorMode.Virtual) {
+            if (VirtualThreadExecutor.isSupported()) {
+                return new VirtualThreadExecutor();
+            }
+            logMessage(new LoggingTask(LogType.Warning, LogLocation.ConsoleErr, "Virtual threads require Java 21 or newer, falling back to platform threads."));
+        }
+        return new ThreadPool(Math.min(serverConfig.getPoolCoreThreads(), poolSize), poolSize,
+                serverConfig.getQueueCapacity(), serverConfig.getQueueTargetDelay(), serverConfig.getPoolKeepAlive());
     }
 
     /**
      * Starts the HTTP server.
      * <p>
-     * Opens a {@link ServerSocket} on the configured port and listens for incoming client connections.
-     * Each new connection is passed to the {@link #handleClient(Socket)} method via a thread in the thread pool.
+     * Runs the blocking accept loop or the selector event loops, according to the configured {@link IoMode}.
      */
     @Override
     public void run() {
         logMessage(new LoggingTask(LogType.Info,LogLocation.ConsoleOut,"MainHTTPServerThread has started!"));
 
-        try (ServerSocket serverSocket = new ServerSocket(serverConfig.getPort())) {
-            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Server started on port: " + serverConfig.getPort()));
+        if (serverConfig.getIoMode() == IoMode.Nio) {
+            runEventLoops();
+        } else {
+            runBlocking();
+        }
+    }
+
+    /**
+     * Serves connections using blocking sockets.
+     * <p>
+     * Opens the blocking listening channels (see {@link #openListeners(int)}) and runs one accept loop
+     * per acceptor thread, this thread being the first. Acceptors share the channels round-robin,
+     * so without {@code SO_REUSEPORT} they all accept from the single shared channel.
+     * Each new connection is passed to the {@link #handleClient(Socket)} method via a thread in the thread pool.
+     * Accepting through a channel gives every socket a {@link java.nio.channels.SocketChannel}, which
+     * large file bodies are transferred to without passing through the heap.
+     */
+    private void runBlocking() {
+        int acceptors = serverConfig.getAcceptorThreads();
+        try {
+            List<ServerSocketChannel> channels = openListeners(acceptors);
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Server started on port: " + serverConfig.getPort()
+                    + " (" + acceptors + " acceptors, " + channels.size() + " listening sockets)"));
             logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Server root: " + serverConfig.getDocumentRoot()));
 
-            while (true) {
-                Socket clientSocket = serverSocket.accept();
-                logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "New client connected: " + clientSocket.getInetAddress()));
+            for (int i = 1; i < acceptors; i++) {
+                ServerSocketChannel channel = channels.get(i % channels.size());
+                new Thread(() -> acceptLoop(channel), "acceptor-" + i).start();
+            }
+            acceptLoop(channels.get(0));
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server error: " + e.getMessage()));
+        } finally {
+            closeListeners();
+        }
+    }
 
-                threadPool.execute(() -> handleClient(clientSocket));
+    /**
+     * Accepts connections from a blocking channel until the server is interrupted or the channel closed.
+     * Nothing is logged per connection, to keep the accept path short under connection storms.
+     *
+     * @param serverChannel the bound, blocking channel to accept from
+     */
+    private void acceptLoop(ServerSocketChannel serverChannel) {
+        try {
+            while (!isInterrupted()) {
+                Socket clientSocket = serverChannel.accept().socket();
+                threadPool.execute(RejectableTask.of(() -> handleClient(clientSocket), () -> rejectClient(clientSocket)));
+            }
+        } catch (IOException e) {
+            if (!isInterrupted()) {
+                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server error: " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Opens and binds the listening channels on the configured port.
+     * <p>
+     * With several acceptors on a platform supporting {@code SO_REUSEPORT}, one channel is bound per
+     * acceptor and the kernel load-balances incoming connections between them. Otherwise a single
+     * channel is shared by all the acceptors.
+     *
+     * @param acceptors the number of acceptors
+     * @return the bound channels, in blocking mode
+     * @throws IOException if a channel cannot be opened or bound
+     */
+    private List<ServerSocketChannel> openListeners(int acceptors) throws IOException {
+        ServerSocketChannel first = ServerSocketChannel.open();
+        listeners.add(first);
+        boolean shard = acceptors > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        if (acceptors > 1 && !shard) {
+            logMessage(new LoggingTask(LogType.Warning, LogLocation.ConsoleOut, "SO_REUSEPORT is not supported, acceptors share one listening socket."));
+        }
+
+        List<ServerSocketChannel> channels = new ArrayList<>();
+        channels.add(first);
+        for (int i = 1; shard && i < acceptors; i++) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            listeners.add(channel);
+            channels.add(channel);
+        }
+        for (ServerSocketChannel channel : channels) {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (shard) channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            channel.bind(new InetSocketAddress(serverConfig.getPort()));
+        }
+        return channels;
+    }
+
+    /**
+     * Closes every listening channel, releasing the port.
+     */
+    private void closeListeners() {
+        for (Closeable channel : listeners) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Serves connections using non-blocking channels.
+     * <p>
+     * Opens the non-blocking listening channels (see {@link #openListeners(int)}) and starts
+     * {@link ServerConfig#getEventLoopThreads()} event loops. With one channel per acceptor, the first
+     * loops each listen on their own channel and spread the connections they accept over their share
+     * of the group; with a single channel, the first loop accepts for the whole group. The thread pool
+     * only ever receives complete requests.
+     */
+    private void runEventLoops() {
+        try {
+            NioEventLoop[] loops = new NioEventLoop[serverConfig.getEventLoopThreads()];
+            List<ServerSocketChannel> channels = openListeners(Math.min(serverConfig.getAcceptorThreads(), loops.length));
+            for (ServerSocketChannel channel : channels) {
+                channel.configureBlocking(false);
+            }
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Server started on port: " + serverConfig.getPort()
+                    + " (nio, " + channels.size() + " listening sockets)"));
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Server root: " + serverConfig.getDocumentRoot()));
+
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new NioEventLoop(serverConfig, threadPool, ioPool);
+            }
+            for (int i = 0; i < channels.size(); i++) {
+                List<NioEventLoop> share = new ArrayList<>();
+                for (int j = i; j < loops.length; j += channels.size()) {
+                    share.add(loops[j]);
+                }
+                loops[i].listen(channels.get(i), share.toArray(new NioEventLoop[0]));
+            }
+            for (NioEventLoop loop : loops) {
+                loop.start();
+            }
+
+            try {
+                for (NioEventLoop loop : loops) {
+                    loop.join();
+                }
+            } catch (InterruptedException e) {
+                for (NioEventLoop loop : loops) {
+                    loop.interrupt();
+                }
             }
         } catch (IOException e) {
             logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server error: " + e.getMessage()));
+        } finally {
+            closeListeners();
         }
     }
 
+    /**
+     * Interrupts the server thread and closes the listening sockets, so that the threads blocked
+     * in {@code accept()} return and the port is released immediately. The worker, pipeline and
+     * I/O pools are shut down, interrupting the requests in progress.
+     */
+    @Override
+    public void interrupt() {
+        super.interrupt();
+        closeListeners();
+        threadPool.shutdown();
+        if (pipelinePool != null) pipelinePool.shutdown();
+        ioPool.shutdown();
+    }
+
     /**
      * Handles an individual client connection.
      * <p>
-     * Wraps the socket's input and output streams in a {@link BufferedReader} and {@link OutputStream},
-     * then creates a {@link RequestHandler} to process the client's HTTP request.
+     * Serves the connection through a {@link BlockingConnection}, which processes requests for as
+     * long as the connection is kept alive, reading pipelined requests ahead and answering them
+     * in order. The socket read timeout enforces the keep-alive idle timeout, and the connection is
+     * closed after {@link ServerConfig#getKeepAliveMaxRequests()} requests.
      *
      * @param clientSocket the socket connected to the client
      */
     private void handleClient(Socket clientSocket) {
-        try (Socket socket = clientSocket;
-             BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             OutputStream clientOutput = socket.getOutputStream()) {
+        new BlockingConnection(clientSocket, serverConfig, requestParser, threadPool, pipelinePool, ioPool, keepAliveTimeout, keepAliveMaxRequests, pipelineDepth).serve();
+    }
 
-            RequestHandler requestHandler = new RequestHandler(br, clientOutput, serverConfig, clientSocket.getInetAddress().getHostAddress());
-            requestHandler.processRequest();
+    /**
+     * Turns away a client connection the thread pool has no room or time for, with a
+     * {@code 503 Service Unavailable} written without reading the request, and closes it.
+     *
+     * @param clientSocket the socket connected to the client
+     */
+    private void rejectClient(Socket clientSocket) {
+        try (Socket s = clientSocket) {
+            new RequestHandler(s.getOutputStream(), serverConfig, s.getInetAddress().getHostAddress()).rejectOverloaded();
+            s.shutdownOutput();
         } catch (IOException e) {
-            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error handling client request: " + e.getMessage()));
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error rejecting client: " + e.getMessage()));
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package core;
+
+import Cache.MappedEntry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response body written from a memory-mapped file shared through the {@link Cache.MappedFileCache}.
+ * <p>
+ * Each region writes from its own view of the shared mapping, so no bytes are copied onto the Java
+ * heap, and holds a reference on the {@link MappedEntry} until it is closed.
+ */
+class MappedRegion implements ResponseBody {
+    /** The retained mapping. */
+    private final MappedEntry entry;
+    /** This response's view of the mapping. */
+    private final ByteBuffer view;
+    /** Whether the reference on the mapping has been released (always set for slices, which hold none). */
+    private boolean closed;
+
+    /**
+     * Constructs a region over a retained mapping; the region takes over the caller's reference.
+     *
+     * @param entry the mapping, retained for this response
+     */
+    MappedRegion(MappedEntry entry) {
+        this(entry, entry.slice(), false);
+    }
+
+    private MappedRegion(MappedEntry entry, ByteBuffer view, boolean closed) {
+        this.entry = entry;
+        this.view = view;
+        this.closed = closed;
+    }
+
+    @Override
+    public long remaining() {
+        return view.remaining();
+    }
+
+    @Override
+    public boolean transferTo(WritableByteChannel target) throws IOException {
+        while (view.hasRemaining()) {
+            if (target.write(view) == 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public ResponseBody slice(long offset, long length) {
+        int start = view.position() + (int) offset;
+        return new MappedRegion(entry, view.duplicate().position(start).limit(start + (int) length), true);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            entry.release();
+        }
+    }
+}
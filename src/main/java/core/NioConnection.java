@@ -0,0 +1,307 @@
+package core;
+
+import config.ServerConfig;
+import logging.*;
+import utils.HttpRequest;
+import utils.HttpRequestParser;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-connection state of a client served by a {@link NioEventLoop}.
+ * <p>
+ * Bytes are read without blocking into a fixed-size buffer, which the {@link HttpRequestParser}
+ * scans in place until a complete header block has arrived. Each parsed request is then processed
+ * by a {@link RequestHandler} on the worker pool, and the serialized response is written back by the event loop as the
+ * socket becomes writable.
+ * </p>
+ * <p>
+ * Connections are persistent and pipelined: every complete request found in the buffer is
+ * dispatched immediately (up to the pipeline depth), so pipelined requests are processed
+ * concurrently. Each request receives a sequence number and responses are only written once all
+ * earlier responses have been, preserving request order on the socket. The connection closes after
+ * a response that does not keep it alive, after a malformed or oversized request has been answered,
+ * when the per-connection request limit is reached, or when it stays idle past the keep-alive timeout.
+ * </p>
+ * <p>
+ * Bodies of mapped and large files are queued as {@link ResponseBody} parts and written straight
+ * to the channel, resuming on the next writable event whenever the socket buffer is full.
+ * </p>
+ * <p>
+ * All methods except {@link #respond(int, BufferedResponse)} run on the owning event-loop thread.
+ * </p>
+ */
+class NioConnection implements LogProducer {
+    /** A part of a response waiting to be written to the channel. */
+    private interface PendingWrite {
+        /**
+         * Writes as much as the channel accepts.
+         *
+         * @param channel the non-blocking client channel
+         * @return {@code true} once everything has been written
+         * @throws IOException if writing fails
+         */
+        boolean writeTo(SocketChannel channel) throws IOException;
+
+        /** Releases resources held by a part that will not be (fully) written. */
+        default void release() {
+        }
+    }
+
+    /** The non-blocking client channel. */
+    private final SocketChannel channel;
+    /** Selection key of the channel in the owning loop's selector. */
+    private final SelectionKey key;
+    /** The loop owning this connection. */
+    private final NioEventLoop loop;
+    /** Configuration for the server (document root, defaults, etc.). */
+    private final ServerConfig serverConfig;
+    /** The lanes processing complete requests. */
+    private final RequestLanes lanes;
+    /** Origin IP address of the client. */
+    private final String origin;
+    /** Parser extracting requests from the read buffer. */
+    private final HttpRequestParser parser;
+    /** Buffer accumulating the bytes of the requests being read, sized to the maximum header block. */
+    private final ByteBuffer readBuffer;
+    /** Response parts waiting to be written to the channel. */
+    private final Deque<PendingWrite> writeQueue = new ArrayDeque<>();
+    /** Responses that completed ahead of an earlier request, keyed by sequence number. */
+    private final Map<Integer, BufferedResponse> completed = new HashMap<>();
+    /** Maximum number of requests served on this connection. */
+    private final int maxRequests;
+    /** Maximum number of requests processed concurrently on this connection. */
+    private final int pipelineDepth;
+    /** Number of requests dispatched on this connection so far (the next sequence number). */
+    private int requestsServed = 0;
+    /** Sequence number of the next response to be written. */
+    private int nextToWrite = 0;
+    /** Whether no further request will be read, because a response is going to close the connection. */
+    private boolean closing = false;
+    /** Whether the connection must be closed once the queued responses are written. */
+    private boolean closeAfterWrite = false;
+    /** {@link System#nanoTime()} of the last read or write on this connection. */
+    private long lastActivity = System.nanoTime();
+
+    /**
+     * Constructs the state for a newly registered connection.
+     *
+     * @param channel       the client channel
+     * @param key           the channel's selection key
+     * @param loop          the owning event loop
+     * @param serverConfig  the server configuration
+     * @param lanes         the lanes processing complete requests
+     * @param parser        the parser extracting requests from the read buffer
+     * @param maxRequests   maximum number of requests served on this connection
+     * @param pipelineDepth maximum number of requests processed concurrently
+     * @throws IOException if the remote address cannot be resolved
+     */
+    NioConnection(SocketChannel channel, SelectionKey key, NioEventLoop loop, ServerConfig serverConfig,
+                  RequestLanes lanes, HttpRequestParser parser, int maxRequests, int pipelineDepth) throws IOException {
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.serverConfig = serverConfig;
+        this.lanes = lanes;
+        this.parser = parser;
+        this.readBuffer = ByteBuffer.allocate(parser.getMaxHeaderSize());
+        this.maxRequests = maxRequests;
+        this.pipelineDepth = pipelineDepth;
+        this.origin = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+    }
+
+    /**
+     * Reads the available bytes and dispatches every request whose header block is complete.
+     */
+    void onReadable() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        lastActivity = System.nanoTime();
+        dispatchRequests();
+    }
+
+    /**
+     * Dispatches the complete requests in the read buffer to the worker pool, as long as the
+     * pipeline has room, and updates the selector interest accordingly.
+     * <p>
+     * Bytes following the last complete header block (the start of a next request) are kept in
+     * the buffer. Reading stops while the pipeline is full or once a request will close the connection.
+     * A malformed or oversized request is answered with an error response that closes the connection,
+     * and so is a request the worker pool sheds under overload ({@code 503 Service Unavailable}).
+     */
+    private void dispatchRequests() {
+        readBuffer.flip();
+        try {
+            while (!closing && inFlight() < pipelineDepth) {
+                HttpRequest request = new HttpRequest();
+                HttpRequestParser.Status status = parser.parse(readBuffer, request);
+                if (status == HttpRequestParser.Status.Incomplete) break;
+
+                int sequence = requestsServed++;
+                if (status != HttpRequestParser.Status.Complete) {
+                    logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Rejected request (" + status + ") from " + origin));
+                    closing = true;
+                    Runnable reject = () -> respond(sequence, BufferedResponse.reject(status, serverConfig, origin));
+                    lanes.fastLane().execute(RejectableTask.of(reject, reject)); //Never block the loop: render here if the pool is full
+                    break;
+                }
+
+                boolean allowKeepAlive = requestsServed < maxRequests;
+                closing = !allowKeepAlive || !request.isKeepAlive();
+                lanes.dispatch(serverConfig, request,
+                        () -> respond(sequence, BufferedResponse.render(request, allowKeepAlive, serverConfig, origin)),
+                        () -> respond(sequence, BufferedResponse.unavailable(serverConfig, origin)));
+            }
+        } finally {
+            readBuffer.compact();
+        }
+        updateInterest();
+    }
+
+    /**
+     * Hands a response rendered on a worker thread back to the loop.
+     *
+     * @param sequence the position of the request on this connection
+     * @param response the rendered response
+     */
+    private void respond(int sequence, BufferedResponse response) {
+        loop.execute(() -> onResponse(sequence, response));
+    }
+
+    /**
+     * Records a completed response and queues every response that is now next in request order.
+     *
+     * @param sequence the position of the request on this connection
+     * @param response the rendered response
+     */
+    private void onResponse(int sequence, BufferedResponse response) {
+        if (!key.isValid()) {
+            response.release();
+            return;
+        }
+        completed.put(sequence, response);
+
+        BufferedResponse next;
+        while (!closeAfterWrite && (next = completed.remove(nextToWrite)) != null) {
+            nextToWrite++;
+            if (next.bytes().length > 0) {
+                ByteBuffer bytes = ByteBuffer.wrap(next.bytes());
+                writeQueue.add(channel -> {
+                    channel.write(bytes);
+                    return !bytes.hasRemaining();
+                });
+            }
+            if (next.body() != null) {
+                ResponseBody body = next.body();
+                writeQueue.add(new PendingWrite() {
+                    @Override
+                    public boolean writeTo(SocketChannel channel) throws IOException {
+                        if (!body.transferTo(channel)) return false;
+                        body.close();
+                        return true;
+                    }
+
+                    @Override
+                    public void release() {
+                        body.close();
+                    }
+                });
+            }
+            if (!next.keepAlive()) {
+                closeAfterWrite = true;
+                closing = true;
+                completed.values().forEach(BufferedResponse::release);
+                completed.clear();
+            }
+        }
+        onWritable();
+    }
+
+    /**
+     * Writes as much of the queued responses as the socket accepts.
+     * <p>
+     * If the socket buffer fills up, write interest is registered and writing resumes on the
+     * next writable event. Once everything has been written the connection is either closed or
+     * goes back to reading (and dispatching) the next requests.
+     */
+    void onWritable() {
+        try {
+            while (!writeQueue.isEmpty()) {
+                boolean written = writeQueue.peek().writeTo(channel);
+                lastActivity = System.nanoTime();
+                if (!written) {
+                    updateInterest();
+                    return;
+                }
+                writeQueue.poll();
+            }
+            if (closeAfterWrite) {
+                close();
+                return;
+            }
+            dispatchRequests();
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error writing response: " + e.getMessage()));
+            close();
+        }
+    }
+
+    /**
+     * Closes the connection if it has been waiting for a request longer than the idle timeout.
+     *
+     * @param now          the current {@link System#nanoTime()}
+     * @param timeoutNanos the keep-alive idle timeout, in nanoseconds
+     */
+    void closeIfIdle(long now, long timeoutNanos) {
+        if (inFlight() == 0 && writeQueue.isEmpty() && now - lastActivity > timeoutNanos) {
+            close();
+        }
+    }
+
+    /**
+     * Returns the number of dispatched requests whose response has not been queued for writing yet.
+     *
+     * @return the number of requests in flight
+     */
+    private int inFlight() {
+        return requestsServed - nextToWrite;
+    }
+
+    /**
+     * Sets the selector interest: write while responses are queued, read while the pipeline has room.
+     */
+    private void updateInterest() {
+        if (!key.isValid()) return;
+        int ops = 0;
+        if (!writeQueue.isEmpty()) ops |= SelectionKey.OP_WRITE;
+        if (!closing && inFlight() < pipelineDepth) ops |= SelectionKey.OP_READ;
+        key.interestOps(ops);
+    }
+
+    /**
+     * Cancels the selection key, closes the channel and releases the responses that were not written.
+     */
+    private void close() {
+        key.cancel();
+        NioEventLoop.closeQuietly(channel);
+        writeQueue.forEach(PendingWrite::release);
+        writeQueue.clear();
+        completed.values().forEach(BufferedResponse::release);
+        completed.clear();
+    }
+}
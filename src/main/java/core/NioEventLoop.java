@@ -0,0 +1,222 @@
+package core;
+
+import config.ServerConfig;
+import logging.*;
+import utils.HttpRequestParser;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector-based event loop that multiplexes many client connections on a single thread.
+ * <p>
+ * Each loop owns one {@link Selector}. Connections registered with the loop are read
+ * without blocking by {@link NioConnection}; only once a full request header block has arrived and been parsed
+ * is the request handed to the worker {@link TaskExecutor}. Idle or slow clients therefore cost
+ * one selection key instead of a parked worker thread.
+ * </p>
+ * <p>
+ * One loop of a group may additionally listen on the server channel, distributing accepted
+ * connections round-robin across every loop of the group. All selector operations coming from
+ * other threads are queued through {@link #execute(Runnable)} and run on the loop thread.
+ * </p>
+ */
+public class NioEventLoop extends Thread implements LogProducer {
+    /** Maximum time, in milliseconds, a single {@code select} call may block. */
+    private static final long SELECT_TIMEOUT_MS = 1000;
+    /** Minimum interval, in nanoseconds, between two sweeps for idle connections. */
+    private static final long IDLE_SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    /** Selector multiplexing every channel owned by this loop. */
+    private final Selector selector;
+    /** Configuration for the server (document root, defaults, etc.). */
+    private final ServerConfig serverConfig;
+    /** The lanes processing complete requests: the worker pool, and the I/O pool loading missing files. */
+    private final RequestLanes lanes;
+    /** Parser shared by the connections of this loop. */
+    private final HttpRequestParser parser;
+    /** Tasks submitted from other threads, run on the loop thread before each select. */
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    /** Loops that accepted connections are distributed to (only used by the listening loop). */
+    private NioEventLoop[] group;
+    /** Index of the loop receiving the next accepted connection. */
+    private int nextLoop = 0;
+    /** Keep-alive idle timeout, in nanoseconds. */
+    private final long keepAliveTimeoutNanos;
+    /** Maximum number of requests served on a single connection. */
+    private final int keepAliveMaxRequests;
+    /** Maximum number of pipelined requests processed concurrently on a single connection. */
+    private final int pipelineDepth;
+    /** {@link System#nanoTime()} of the last idle-connection sweep. */
+    private long lastIdleSweep = System.nanoTime();
+
+    /**
+     * Constructs a new event loop with its own {@link Selector}.
+     *
+     * @param config     the server configuration
+     * @param workerPool the pool that will process complete requests
+     * @param ioPool     the pool loading the files of requests not served from memory, or {@code null}
+     *                   to process every request on {@code workerPool}
+     * @throws IOException if the selector cannot be opened
+     */
+    public NioEventLoop(ServerConfig config, TaskExecutor workerPool, TaskExecutor ioPool) throws IOException {
+        super("nio-event-loop");
+        this.selector = Selector.open();
+        this.serverConfig = config;
+        this.lanes = new RequestLanes(workerPool, ioPool);
+        this.parser = new HttpRequestParser(config.getMaxRequestLineSize(), config.getMaxHeaderSize());
+        this.keepAliveTimeoutNanos = config.getKeepAliveTimeout().toNanos();
+        this.keepAliveMaxRequests = config.getKeepAliveMaxRequests();
+        this.pipelineDepth = config.getPipelineDepth();
+    }
+
+    /**
+     * Makes this loop accept connections from the given server channel.
+     * <p>
+     * Accepted connections are registered round-robin with the loops of {@code group}.
+     *
+     * @param serverChannel a bound, non-blocking server channel
+     * @param group         the loops accepted connections are distributed to
+     */
+    public void listen(ServerSocketChannel serverChannel, NioEventLoop[] group) {
+        this.group = group;
+        execute(() -> {
+            try {
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Server channel closed before registration."));
+            }
+        });
+    }
+
+    /**
+     * Registers an accepted client channel with this loop.
+     *
+     * @param channel the client channel to serve
+     */
+    public void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new NioConnection(channel, key, this, serverConfig, lanes, parser, keepAliveMaxRequests, pipelineDepth));
+            } catch (IOException e) {
+                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Failed to register client: " + e.getMessage()));
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    /**
+     * Schedules a task to run on the loop thread and wakes the selector.
+     *
+     * @param task the task to run
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the event loop until the thread is interrupted.
+     * <p>
+     * Each iteration waits for ready channels, runs the tasks queued by other threads and then
+     * dispatches accept, read and write readiness to the corresponding handlers. About once per
+     * second, connections idle past the keep-alive timeout are closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!isInterrupted()) {
+                selector.select(SELECT_TIMEOUT_MS);
+                runPendingTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        if (key.isReadable()) connection.onReadable();
+                        if (key.isValid() && key.isWritable()) connection.onWritable();
+                    }
+                }
+                closeIdleConnections();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Event loop error: " + e.getMessage()));
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    /**
+     * Runs every task queued through {@link #execute(Runnable)}.
+     */
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Event loop task error: " + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Closes the connections that have been idle longer than the keep-alive timeout.
+     * Runs at most once per {@link #IDLE_SWEEP_INTERVAL_NANOS}.
+     */
+    private void closeIdleConnections() {
+        long now = System.nanoTime();
+        if (now - lastIdleSweep < IDLE_SWEEP_INTERVAL_NANOS) return;
+        lastIdleSweep = now;
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof NioConnection connection) {
+                connection.closeIfIdle(now, keepAliveTimeoutNanos);
+            }
+        }
+    }
+
+    /**
+     * Accepts every pending connection on the server channel and distributes them across the group.
+     * Nothing is logged per connection, to keep the accept path short under connection storms.
+     *
+     * @param serverChannel the listening channel
+     */
+    private void accept(ServerSocketChannel serverChannel) {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                group[nextLoop].register(channel);
+                nextLoop = (nextLoop + 1) % group.length;
+            }
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Accept error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Closes a resource, ignoring any error.
+     *
+     * @param closeable the resource to close
+     */
+    static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
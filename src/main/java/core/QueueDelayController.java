@@ -0,0 +1,51 @@
+package core;
+
+import java.time.Duration;
+
+/**
+ * Decides whether a task that waited in a queue is still worth running, following the CoDel
+ * (Controlled Delay) approach adapted to request queues.
+ * <p>
+ * The time a task spent queued (its sojourn time) is compared with a target delay. A queue that
+ * regularly drains below the target is only absorbing a burst, and tasks are shed only once they
+ * have waited a full interval. A queue whose sojourn time has stayed above the target for a whole
+ * interval is a standing queue: the pool is overloaded, and any task that waited longer than the
+ * target is shed, so that admitted tasks keep a short wait instead of everybody timing out.
+ * The interval is ten times the target.
+ */
+final class QueueDelayController {
+    /** Sojourn time above which a task counts as delayed, in nanoseconds. */
+    private final long target;
+    /** How long the sojourn time must stay above target before the queue counts as standing, in nanoseconds. */
+    private final long interval;
+    /** Last time a dequeued task had waited less than the target, in {@link System#nanoTime()} units. */
+    private volatile long lastBelowTarget;
+
+    /**
+     * Creates a controller for the given target delay.
+     *
+     * @param targetDelay the acceptable queueing delay (must be positive)
+     */
+    QueueDelayController(Duration targetDelay) {
+        this.target = targetDelay.toNanos();
+        this.interval = target * 10;
+        this.lastBelowTarget = System.nanoTime();
+    }
+
+    /**
+     * Records the sojourn time of a dequeued task and tells whether it should be shed.
+     *
+     * @param enqueuedAt the time the task was queued, in {@link System#nanoTime()} units
+     * @param now        the current time, in {@link System#nanoTime()} units
+     * @return {@code true} if the task waited too long and should be rejected instead of run
+     */
+    boolean shouldShed(long enqueuedAt, long now) {
+        long sojourn = now - enqueuedAt;
+        if (sojourn < target) {
+            lastBelowTarget = now;
+            return false;
+        }
+        boolean standing = now - lastBelowTarget > interval;
+        return sojourn > (standing ? target : interval);
+    }
+}
@@ -0,0 +1,38 @@
+package core;
+
+/**
+ * A task that can be turned away by an overloaded executor instead of waiting for a worker.
+ * <p>
+ * A {@link ThreadPool} with a bounded queue calls {@link #reject()} in place of {@link #run()} when
+ * its queue is full, or when the task has waited in the queue longer than the pool's target delay
+ * allows. The rejection runs on the submitting thread or on a worker, and should only send a short
+ * answer (typically a {@code 503 Service Unavailable}) and release what the task holds.
+ */
+public interface RejectableTask extends Runnable {
+
+    /**
+     * Called instead of {@link #run()} when the task is shed.
+     */
+    void reject();
+
+    /**
+     * Combines a task and its rejection handler.
+     *
+     * @param task     the work to run when the task is admitted
+     * @param onReject the action to run when the task is shed
+     * @return the rejectable task
+     */
+    static RejectableTask of(Runnable task, Runnable onReject) {
+        return new RejectableTask() {
+            @Override
+            public void run() {
+                task.run();
+            }
+
+            @Override
+            public void reject() {
+                onReject.run();
+            }
+        };
+    }
+}
@@ -1,5 +1,10 @@
 package core;
 
+import Cache.CacheEntry;
+import Cache.MappedEntry;
+import Cache.MappedFileCacheSingleton;
+import Cache.PreparedResponse;
+import config.RequestMode;
 import config.ServerConfig;
 import logging.*;
 import utils.*;
@@ -7,28 +12,91 @@ import utils.*;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handles a single HTTP request from a connected client.
  * <p>
  * This class reads an incoming HTTP request, validates it, attempts to serve the requested
  * file from the server's root, and writes the corresponding HTTP response back to the client.
- * It supports a parbegin-parend approach by launching three concurrent tasks:
+ * Each request goes through three tasks:
  * <ul>
  *     <li>Reading the requested file (with locking and caching)</li>
  *     <li>Validating the HTTP request</li>
  *     <li>Generating HTTP headers</li>
  * </ul>
+ * By default they run as stages on the calling thread, with only cache-missing file reads handed
+ * to the I/O executor; the original parbegin-parend approach, launching them as three concurrent
+ * threads, is kept as {@link RequestMode#ParBegin}.
+ * <p>
+ * Responses are framed with {@code Content-Length} so that the same handler can be called
+ * repeatedly on a persistent (HTTP/1.1 keep-alive) connection.
+ * <p>
+ * Files are served from one of three tiers, by size:
+ * <ul>
+ *     <li>below {@link ServerConfig#getMmapThreshold()}: read into a {@code byte[]} and cached, or, with
+ *     off-heap cache storage, sent as a {@link CachedRegion} of the cached native memory</li>
+ *     <li>below {@link ServerConfig#getTransferThreshold()}: a {@link MappedRegion} of a mapping shared
+ *     through the {@link Cache.MappedFileCache}</li>
+ *     <li>above: a {@link FileRegion} sent with {@code transferTo}</li>
+ * </ul>
+ * Bodies of the last two tiers, and off-heap cached contents, are written straight to the client
+ * channel, or handed back to the caller through {@link #takeDeferredBody()} when the handler has no channel. {@code Range} requests
+ * are served as slices of the same bodies, whatever the tier.
+ * <p>
+ * Responses for files carry an {@code ETag} and a {@code Last-Modified} header, so that clients can
+ * revalidate with {@code If-None-Match} or {@code If-Modified-Since} and get a bodiless
+ * {@code 304 Not Modified}. Cached files are tagged with a hash of their content; files of the other
+ * two tiers, which are never read whole, with their size and modification time. {@code HEAD} requests
+ * get the same response as {@code GET}, without the body.
+ * <p>
+ * The {@code Content-Type} is derived from the file extension through {@link MimeTypes}. Cached
+ * text-like files are sent gzip- or deflate-compressed to clients accepting it (see
+ * {@link ContentEncoding#negotiate(String)}); the compressed variant is made once and cached next to
+ * the file by {@link FileService#readVariant(ServerConfig, String, CacheEntry, ContentEncoding)}.
+ * A precompressed {@code .gz} sidecar found next to the file (see {@link PrecompressedIndex}) is
+ * served instead, through the same tiers, to clients accepting gzip. Text-like files too large for the
+ * cache are compressed while they are streamed to HTTP/1.1 clients, as a {@link ChunkedBody}.
+ * <p>
+ * The status line and fixed headers of the first {@code 200 OK} response for a cached file are also
+ * stored serialized in its cache entry (see {@link PreparedResponse}); later hits send them, followed
+ * by the entry's own content, through {@link #sendPreparedResponse(PreparedResponse, byte[], boolean)}
+ * without building any header. Off-heap entries are not prepared, as they are sent from native memory.
  */
 public class RequestHandler implements LogProducer {
+    /** The {@code Connection} header of a persistent connection, ending the headers of a prepared response. */
+    private static final byte[] KEEP_ALIVE = "Connection: keep-alive\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    /** The {@code Connection} header of a connection closed after the response, ending the headers of a prepared response. */
+    private static final byte[] CLOSE = "Connection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    /** The status line of a {@code 200 OK} response. */
+    private static final byte[] OK = "HTTP/1.1 200 OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    /** The empty line ending the headers. */
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    /** Delay, in seconds, after which a client turned away by an overloaded server may retry. */
+    private static final int RETRY_AFTER_SECONDS = 1;
     /** Input stream to read the client's HTTP request. */
     private final BufferedReader in;
     /** Output stream to send the HTTP response. */
     private final OutputStream out;
+    /** Channel receiving file bodies sent with {@code transferTo}, or {@code null} to defer them. */
+    private final WritableByteChannel channel;
     /** Server configuration object providing paths, defaults, etc. */
     private final ServerConfig config;
     /** Origin IP address of the client. */
     private final String origin;
+    /** Body left for the caller to send, when there is no channel. */
+    private ResponseBody deferredBody;
+    /** Whether the current request is a {@code HEAD} request, whose response has no body. */
+    private boolean headOnly;
 
      /**
      * Constructs a {@code RequestHandler}.
@@ -39,77 +107,470 @@ public class RequestHandler implements LogProducer {
      * @param clientAddress  the IP address of the connected client
      */
     public RequestHandler(BufferedReader br, OutputStream clientOutput, ServerConfig serverConfig, String clientAddress) {
+        this(br, clientOutput, Channels.newChannel(clientOutput), serverConfig, clientAddress);
+    }
+
+    /**
+     * Constructs a {@code RequestHandler} for requests that have already been read from the
+     * connection (for example by a {@link NioConnection} or a pipelining {@link BlockingConnection}).
+     * Such a handler is driven through {@link #handleRequest(HttpRequest, boolean)}; the body of a
+     * large file is not written but left for the caller in {@link #takeDeferredBody()}.
+     *
+     * @param clientOutput   output stream to send the HTTP response
+     * @param serverConfig   configuration of the server
+     * @param clientAddress  the IP address of the connected client
+     */
+    public RequestHandler(OutputStream clientOutput, ServerConfig serverConfig, String clientAddress) {
+        this(null, clientOutput, null, serverConfig, clientAddress);
+    }
+
+    /**
+     * Constructs a {@code RequestHandler} for requests that have already been read, sending the body
+     * of large files through {@code clientChannel} instead of leaving it to the caller.
+     *
+     * @param clientOutput   output stream to send the HTTP response
+     * @param clientChannel  blocking channel of the same connection, receiving large file bodies
+     * @param serverConfig   configuration of the server
+     * @param clientAddress  the IP address of the connected client
+     */
+    public RequestHandler(OutputStream clientOutput, WritableByteChannel clientChannel, ServerConfig serverConfig, String clientAddress) {
+        this(null, clientOutput, clientChannel, serverConfig, clientAddress);
+    }
+
+    private RequestHandler(BufferedReader br, OutputStream clientOutput, WritableByteChannel clientChannel,
+                           ServerConfig serverConfig, String clientAddress) {
         this.in = br;
         this.out = clientOutput;
+        this.channel = clientChannel;
         this.config = serverConfig;
         this.origin = clientAddress;
     }
 
     /**
-     * Processes the client's HTTP request and sends the appropriate HTTP response.
+     * Processes the client's HTTP request and sends the appropriate HTTP response,
+     * allowing the connection to be kept alive.
+     *
+     * @return {@code true} if the connection may be reused for another request
+     * @see #processRequest(boolean)
+     */
+    public boolean processRequest() {
+        return processRequest(true);
+    }
+
+    /**
+     * Reads the client's HTTP request and sends the appropriate HTTP response.
+     *
+     * @param allowKeepAlive whether the caller is willing to serve another request on this connection
+     * @return {@code true} if the connection may be reused for another request
+     * @see #handleRequest(String, boolean)
+     */
+    public boolean processRequest(boolean allowKeepAlive) {
+        try {
+            String request = readHttpRequest(in);
+            if (request.isEmpty()) {
+                return false; //Client closed the connection
+            }
+            return handleRequest(request, allowKeepAlive);
+        } catch (SocketTimeoutException e) {
+            return false; //Idle keep-alive connection timed out
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Parses an HTTP request that has already been read as text and sends the appropriate HTTP response.
      * <p>
-     * It performs the following in parallel:
+     * A request that cannot be parsed is answered through {@link #rejectRequest(HttpRequestParser.Status)}.
+     *
+     * @param request        the raw HTTP request header block
+     * @param allowKeepAlive whether the caller is willing to serve another request on this connection
+     * @return {@code true} if the connection may be reused for another request
+     * @see #handleRequest(HttpRequest, boolean)
+     */
+    public boolean handleRequest(String request, boolean allowKeepAlive) {
+        String block = request.endsWith("\r\n\r\n") ? request
+                : request.endsWith("\r\n") ? request + "\r\n" : request + "\r\n\r\n";
+        HttpRequest parsed = new HttpRequest();
+        HttpRequestParser.Status status = new HttpRequestParser(config.getMaxRequestLineSize(), config.getMaxHeaderSize())
+                .parse(ByteBuffer.wrap(block.getBytes(StandardCharsets.ISO_8859_1)), parsed);
+        if (status != HttpRequestParser.Status.Complete) {
+            return rejectRequest(status);
+        }
+        return handleRequest(parsed, allowKeepAlive);
+    }
+
+    /**
+     * Processes an HTTP request that has already been parsed and sends the appropriate HTTP response.
+     * <p>
+     * It performs the following steps:
      * <ul>
      *     <li>Reads the file (with semaphore + cache logic)</li>
      *     <li>Validates the HTTP request format</li>
      *     <li>Builds the HTTP response headers</li>
      * </ul>
-     * After synchronization (join), it determines the validity and serves a 200, 400, or 404 response.
+     * In {@link RequestMode#Staged} mode (the default), validation and header building run inline and
+     * the file is read through {@link FileService#read(ServerConfig, String)}, from the cache once the
+     * request lanes have loaded it (see {@link RequestLanes}). In {@link RequestMode#ParBegin} mode, each step
+     * runs on its own newly started thread and the results are joined.
+     * In staged mode, a file at or above the mapping threshold is not read at all but sent with
+     * {@link #sendBodyResponse(String, ResponseBody, HeaderBlock)}, and {@code Range} requests are answered
+     * with {@link #sendRangeResponse(ResponseBody, List, String, String)}. Conditional requests whose
+     * validators still match are answered before any of the file is read or opened, where the tier allows.
+     * It then determines the validity and serves a 200, 206, 304, 400, 404, or 416 response.
+     * <p>
+     * The response carries a {@code Connection} header telling the client whether the connection
+     * stays open. It is kept alive only if {@code allowKeepAlive} is set, the request was valid and
+     * the client asked for it (HTTP/1.1 without {@code Connection: close}, or HTTP/1.0 with
+     * {@code Connection: keep-alive}).
+     *
+     * @param request        the parsed HTTP request
+     * @param allowKeepAlive whether the caller is willing to serve another request on this connection
+     * @return {@code true} if the connection may be reused for another request
      */
-    public void processRequest() {
+    public boolean handleRequest(HttpRequest request, boolean allowKeepAlive) {
         try {
-            String request = readHttpRequest();
-            String route = parseRoute(request);
-            if (route == null) {
-                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Invalid request received."));
-                return;
-            }
+            String route = request.getPath();
+            headOnly = request.getMethod() == HttpMethod.Head;
 
-            //ParBegin
-            FileService fileService = new FileService(config, route);
-            RequestValidator requestValidator = new RequestValidator(request);
-            HeaderBuilder headerBuilder = new HeaderBuilder();
+            boolean isValid;
+            String baseHeader = ""; //Standard headers built by a HeaderBuilder thread, in ParBegin mode
+            String headerType = null; //Content type of the standard headers written as bytes, in staged mode
+            String contentType = "text/html";
+            Selection selection;
 
-            fileService.start();
-            requestValidator.start();
-            headerBuilder.start();
+            if (config.getRequestMode() == RequestMode.ParBegin) {
+                //ParBegin
+                FileService fileService = new FileService(config, route);
+                RequestValidator requestValidator = new RequestValidator(request.toString());
+                HeaderBuilder headerBuilder = new HeaderBuilder();
 
-            //ParEnd
-            fileService.join();
-            requestValidator.join();
-            headerBuilder.join();
+                fileService.start();
+                requestValidator.start();
+                headerBuilder.start();
 
+                //ParEnd
+                fileService.join();
+                requestValidator.join();
+                headerBuilder.join();
 
-            byte[] content = fileService.getContent();
-            boolean isValid = requestValidator.getIsValidRequest();
-            String header = headerBuilder.getHeader();
+                selection = new Selection();
+                selection.content = fileService.getContent();
+                isValid = requestValidator.getIsValidRequest();
+                baseHeader = headerBuilder.getHeader();
+            } else {
+                isValid = RequestValidator.isValid(request);
+                contentType = MimeTypes.of(FileService.resolvePath(config, route));
+                selection = isValid ? selectBody(request, route, contentType) : new Selection();
+                if (selection.prepared != null) {
+                    return sendPreparedHit(request, selection.prepared, selection.content, allowKeepAlive);
+                }
+                headerType = selection.eTag != null ? contentType : "text/html";
+            }
+
+            String fileHeader = selection.fileHeader + validatorHeaders(selection);
+            String rangeHeader = selection.eTag != null && isIfRangeSatisfied(request, selection.eTag, selection.lastModified)
+                    ? request.getHeader("Range") : null;
+            byte[] content = selection.content;
+            ResponseBody body = selection.body;
+
+            boolean keepAlive = allowKeepAlive && isValid && request.isKeepAlive();
+            String connection = "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n";
+            HeaderBlock headers = new HeaderBlock(headerType, baseHeader + fileHeader + connection);
 
             if (!isValid) {
                 logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Invalid request"));
-                sendErrorResponse(header);
-                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request+ " 400 " +  origin));
-                return;
+                sendErrorResponse("400 Bad Request", headers);
+                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 400 " +  origin));
+                return false;
+            }
+
+            if (selection.notModified) {
+                sendNotModifiedResponse(headers);
+                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 304 " +  origin));
+                return keepAlive;
+            }
+
+            if (rangeHeader != null && (body != null || content.length > 0)) {
+                ResponseBody whole = body != null ? body : new BufferBody(ByteBuffer.wrap(content));
+                List<ByteRange> ranges = ByteRange.parse(rangeHeader, whole.remaining());
+                if (ranges != null) {
+                    int status = sendRangeResponse(whole, ranges, contentType, fileHeader + connection);
+                    logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " " + status + " " +  origin));
+                    return keepAlive;
+                }
             }
 
-            if (content.length == 0) {
-                sendNotFoundResponse(header);
-                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request+ " 404 " +  origin));
+            if (body != null) {
+                sendBodyResponse("200 OK", body, headers);
+                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 200 " +  origin));
+            } else if (content.length == 0) {
+                sendNotFoundResponse(headers);
+                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 404 " +  origin));
             } else {
-                sendOkResponse(content, header);
-                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request+ " 200 " +  origin));
+                if (selection.preparedEntry != null) {
+                    selection.preparedEntry.setPreparedResponse(PreparedResponse.of("HTTP/1.1 200 OK\r\n" + HeaderBuilder.buildFixed(contentType)
+                            + fileHeader + "Content-Length: " + content.length + "\r\n"));
+                }
+                sendOkResponse(content, headers);
+                logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 200 " +  origin));
             }
+            return keepAlive;
         } catch (Exception e) {
             logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Selects what a valid request is answered with, in staged mode: the gzip sidecar if the client
+     * accepts it, otherwise the file itself (see {@link #selectFile}). A file that does not exist
+     * leaves the selection empty.
+     *
+     * @param request     the parsed HTTP request
+     * @param route       the requested route
+     * @param contentType the media type of the file
+     * @return the selected body, validators and headers
+     * @throws IOException if the file of the mapped or transfer tier cannot be opened
+     */
+    private Selection selectBody(HttpRequest request, String route, String contentType) throws IOException {
+        Selection selection = new Selection();
+        String sidecarRoute = FileService.precompressedRoute(config, route);
+        if (sidecarRoute != null) {
+            selection.fileHeader = "Vary: Accept-Encoding\r\n";
+            //Ranges are served from the identity content only
+            if (request.getHeader("Range") == null && ContentEncoding.Gzip.isAcceptedBy(request.getHeader("Accept-Encoding"))) {
+                selection.fileHeader += "Content-Encoding: gzip\r\n";
+                if (selectFile(request, route, sidecarRoute, false, true, selection)) return selection;
+                selection.fileHeader = "Vary: Accept-Encoding\r\n";
+            }
+        }
+        boolean compressible = sidecarRoute == null && config.getCompressionMinSize() >= 0 && MimeTypes.isCompressible(contentType);
+        selectFile(request, route, route, compressible, sidecarRoute != null, selection);
+        return selection;
+    }
+
+    /**
+     * Selects the tier of a file. A cached file is served from the cache without touching the disk,
+     * its size and validators coming from the entry; only a file missing from the cache is looked up
+     * on disk, to be sent from the mapped or transfer tier if it is large, or read into the cache.
+     *
+     * @param request      the parsed HTTP request
+     * @param route        the requested route
+     * @param fileRoute    the route of the file to send (the request's, or its sidecar's)
+     * @param compressible whether the file may be compressed
+     * @param sidecar      whether the requested file has a gzip sidecar
+     * @param selection    receives the body, validators and headers
+     * @return {@code false} if the file does not exist
+     * @throws IOException if the file of the mapped or transfer tier cannot be opened
+     */
+    private boolean selectFile(HttpRequest request, String route, String fileRoute, boolean compressible,
+                               boolean sidecar, Selection selection) throws IOException {
+        if (!FileService.isFileCached(config, fileRoute)) {
+            BasicFileAttributes attributes = FileService.attributesOf(config, fileRoute);
+            if (attributes == null) return false;
+            if (attributes.size() >= config.getMmapThreshold()) {
+                selectStreamedBody(request, fileRoute, attributes, compressible, selection);
+                return true;
+            }
+        }
+        selectCachedBody(request, route, fileRoute, compressible, sidecar, selection);
+        return true;
+    }
+
+    /**
+     * Selects the body of a file of the mapped or transfer tier, which is not read onto the heap.
+     * A compressible file is compressed while it is streamed, which needs chunked framing (HTTP/1.1).
+     *
+     * @param request      the parsed HTTP request
+     * @param fileRoute    the route of the file to send (the request's, or its sidecar's)
+     * @param attributes   the attributes of the file
+     * @param compressible whether the file may be compressed on the fly
+     * @param selection    receives the body, validators and headers
+     * @throws IOException if the file cannot be opened
+     */
+    private void selectStreamedBody(HttpRequest request, String fileRoute, BasicFileAttributes attributes,
+                                    boolean compressible, Selection selection) throws IOException {
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String eTag = CacheEntry.fileETag(attributes.size(), lastModified);
+        ContentEncoding encoding = null;
+        if (compressible) {
+            selection.fileHeader = "Vary: Accept-Encoding\r\n";
+            boolean chunkedAllowed = request.getMajorVersion() == 1 && request.getMinorVersion() >= 1;
+            if (chunkedAllowed && request.getHeader("Range") == null) {
+                encoding = ContentEncoding.negotiate(request.getHeader("Accept-Encoding"));
+            }
+        }
+        if (encoding != null) {
+            eTag = CacheEntry.variantETag(eTag, encoding.getToken());
+            selection.fileHeader += "Content-Encoding: " + encoding.getToken() + "\r\n";
+        }
+        if (!checkNotModified(request, eTag, lastModified, selection)) {
+            selection.body = encoding != null ? ChunkedBody.open(Path.of(FileService.resolvePath(config, fileRoute)), encoding)
+                    : openBody(fileRoute, attributes.size());
+        }
+    }
+
+    /**
+     * Selects the body of a file of the heap tier, read through the cache, swapping in a compressed
+     * variant when the client accepts one and it is smaller. An off-heap entry becomes the body, which
+     * takes over its reference; a heap entry's content is sent, from its prepared response if it has one.
+     *
+     * @param request      the parsed HTTP request
+     * @param route        the requested route
+     * @param fileRoute    the route of the file to send (the request's, or its sidecar's)
+     * @param compressible whether the file may be compressed once and cached
+     * @param sidecar      whether the file has a gzip sidecar
+     * @param selection    receives the content, validators and headers
+     */
+    private void selectCachedBody(HttpRequest request, String route, String fileRoute, boolean compressible,
+                                  boolean sidecar, Selection selection) {
+        CacheEntry entry = FileService.readEntry(config, fileRoute);
+        if (entry == null || entry.size() == 0) return;
+        if (compressible && entry.size() >= config.getCompressionMinSize()) {
+            entry = negotiateVariant(request, route, entry, selection);
+        }
+        boolean notModified = checkNotModified(request, entry.getETag(), entry.getLastModified(), selection);
+        if (entry.isOffHeap()) {
+            //Sent from native memory: the body takes over the entry's reference
+            if (notModified) {
+                entry.release();
+            } else {
+                selection.body = new CachedRegion(entry);
+            }
+            return;
+        }
+        selection.content = entry.getContent();
+        if (!notModified && !headOnly && !sidecar && request.getHeader("Range") == null
+                && config.isPreparedResponseCacheEnabled()) {
+            selection.prepared = entry.getPreparedResponse();
+            if (selection.prepared == null) {
+                selection.preparedEntry = entry;
+            }
+        }
+    }
+
+    /**
+     * Returns the cached compressed variant of an entry in the coding negotiated with the client,
+     * if it is smaller, releasing the entry it replaces.
+     *
+     * @param request   the parsed HTTP request
+     * @param route     the requested route
+     * @param entry     the identity entry of the file
+     * @param selection receives the {@code Vary} and {@code Content-Encoding} headers
+     * @return the entry to send, released like one returned by {@link FileService#readEntry}
+     */
+    private CacheEntry negotiateVariant(HttpRequest request, String route, CacheEntry entry, Selection selection) {
+        selection.fileHeader = "Vary: Accept-Encoding\r\n";
+        //Ranges are served from the identity content only
+        ContentEncoding encoding = request.getHeader("Range") == null
+                ? ContentEncoding.negotiate(request.getHeader("Accept-Encoding")) : null;
+        if (encoding == null) return entry;
+        CacheEntry variant = FileService.readVariant(config, route, entry, encoding);
+        if (variant.size() >= entry.size()) {
+            variant.release();
+            return entry;
+        }
+        entry.release();
+        selection.fileHeader += "Content-Encoding: " + encoding.getToken() + "\r\n";
+        return variant;
+    }
+
+    /**
+     * Records the validators of the selected representation and evaluates the request's
+     * preconditions against them (see {@link #isNotModified}).
+     *
+     * @param request      the parsed HTTP request
+     * @param eTag         the entity tag of the representation
+     * @param lastModified the modification time of the file in milliseconds, or {@code -1} if unknown
+     * @param selection    receives the validators and the outcome
+     * @return {@code true} if a {@code 304 Not Modified} response is to be sent
+     */
+    private static boolean checkNotModified(HttpRequest request, String eTag, long lastModified, Selection selection) {
+        selection.eTag = eTag;
+        selection.lastModified = lastModified;
+        selection.notModified = isNotModified(request, eTag, lastModified);
+        return selection.notModified;
+    }
+
+    /**
+     * Returns the headers advertising the validators and range support of the selected representation.
+     *
+     * @param selection the selection
+     * @return the header lines, or an empty string if nothing was selected
+     */
+    private static String validatorHeaders(Selection selection) {
+        if (selection.eTag == null) return "";
+        return "Accept-Ranges: bytes\r\n"
+                + "ETag: " + selection.eTag + "\r\n"
+                + (selection.lastModified >= 0 ? "Last-Modified: " + HeaderBuilder.formatDate(selection.lastModified) + "\r\n" : "");
+    }
+
+    /**
+     * Answers a cache hit with the entry's prepared response, skipping header building.
+     *
+     * @param request        the parsed HTTP request
+     * @param prepared       the prepared response of the cached entry
+     * @param content        the content of the cached entry
+     * @param allowKeepAlive whether the caller is willing to serve another request on this connection
+     * @return {@code true} if the connection may be reused for another request
+     * @throws IOException if writing to the client fails
+     */
+    private boolean sendPreparedHit(HttpRequest request, PreparedResponse prepared, byte[] content, boolean allowKeepAlive) throws IOException {
+        boolean keepAlive = allowKeepAlive && request.isKeepAlive();
+        sendPreparedResponse(prepared, content, keepAlive);
+        logMessage(new LoggingTask(LogType.Request,LogLocation.File,request.getRequestLine() + " 200 " +  origin));
+        return keepAlive;
+    }
+
+    /**
+     * Answers a request that could not be parsed and closes the connection.
+     * <p>
+     * Oversized requests get a {@code 431 Request Header Fields Too Large} response, any other
+     * malformed request a {@code 400 Bad Request}.
+     *
+     * @param status the parse outcome that caused the rejection
+     * @return always {@code false}: the connection cannot be reused
+     */
+    public boolean rejectRequest(HttpRequestParser.Status status) {
+        String statusLine = status == HttpRequestParser.Status.TooLarge ? "431 Request Header Fields Too Large" : "400 Bad Request";
+        try {
+            sendErrorResponse(statusLine, new HeaderBlock("text/html", "Connection: close\r\n"));
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, e.getMessage()));
+        }
+        logMessage(new LoggingTask(LogType.Request, LogLocation.File, "Malformed request " + statusLine.substring(0, 3) + " " + origin));
+        return false;
+    }
+
+    /**
+     * Answers a connection or request that was shed because the server is overloaded, with a
+     * {@code 503 Service Unavailable} asking the client to retry after {@value #RETRY_AFTER_SECONDS}
+     * second, and closes the connection.
+     *
+     * @return always {@code false}: the connection cannot be reused
+     */
+    public boolean rejectOverloaded() {
+        try {
+            sendErrorResponse("503 Service Unavailable", new HeaderBlock("text/html",
+                    "Retry-After: " + RETRY_AFTER_SECONDS + "\r\n"
+                    + "Connection: close\r\n"));
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, e.getMessage()));
         }
+        logMessage(new LoggingTask(LogType.Request, LogLocation.File, "Overloaded 503 " + origin));
+        return false;
     }
 
     /**
      * Reads the full HTTP request header from the client connection.
      *
-     * @return the raw HTTP request as a string
+     * @param in the reader positioned at the start of a request
+     * @return the raw HTTP request as a string, empty if the connection was closed before any byte was read
      * @throws IOException if an I/O error occurs
      */
-    private String readHttpRequest() throws IOException {
+    static String readHttpRequest(BufferedReader in) throws IOException {
         StringBuilder builder = new StringBuilder();
         String line;
         while ((line = in.readLine()) != null && !line.isBlank()) {
@@ -119,71 +580,294 @@ public class RequestHandler implements LogProducer {
     }
 
     /**
-     * Parses the request route from the HTTP request line.
+     * Sends a 200 OK response with the specified headers and content.
      *
-     * @param request the full HTTP request string
-     * @return the path requested (e.g., "/index.html"), or {@code null} if the request too short (malformed).
+     * @param content the body of the HTTP response
+     * @param headers the headers to include in the response
+     * @throws IOException if an I/O error occurs while writing the response
+     */
+    private void sendOkResponse(byte[] content, HeaderBlock headers) throws IOException {
+        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Response sent."));
+        out.write(OK);
+        headers.writeTo(out);
+        out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes());
+        if (!headOnly) out.write(content);
+        out.flush();
+    }
+
+    /**
+     * Sends a prepared {@code 200 OK} response with a single gathering write: its fixed part, the shared
+     * {@code Date} header bytes of the current second, the {@code Connection} header ending the headers,
+     * and the cached content itself. No header is formatted or encoded, and the content is not copied.
+     * Without a channel the whole response is kept for {@link #takeDeferredBody()}.
+     *
+     * @param prepared  the serialized head of the response of the cached file
+     * @param content   the content of the cached file
+     * @param keepAlive whether the connection stays open
+     * @throws IOException if an I/O error occurs while writing the response
      */
-    private String parseRoute(String request) {
-        String[] tokens = request.split(" ");
-        if (tokens.length < 2) {
-            return null;
+    private void sendPreparedResponse(PreparedResponse prepared, byte[] content, boolean keepAlive) throws IOException {
+        GatheringBody response = new GatheringBody(prepared.head(), DateClock.headerBuffer(),
+                ByteBuffer.wrap(keepAlive ? KEEP_ALIVE : CLOSE).asReadOnlyBuffer(), ByteBuffer.wrap(content).asReadOnlyBuffer());
+        if (channel == null) {
+            deferredBody = response;
+            return;
+        }
+        out.flush();
+        while (!response.transferTo(channel)) {
+            Thread.onSpinWait();
         }
-        return tokens[1];
     }
 
     /**
-     * Sends a 200 OK response with the specified headers and content.
+     * Sends a bodiless 304 Not Modified response, telling the client its stored copy is still valid.
      *
-     * @param content the body of the HTTP response
-     * @param headers additional headers to include in the response
+     * @param headers the headers of a regular response for the file, including its validators
      * @throws IOException if an I/O error occurs while writing the response
      */
-    private void sendOkResponse(byte[] content, String headers) throws IOException {
-        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Response sent."));
-        out.write("HTTP/1.1 200 OK\r\n".getBytes());
-        out.write(headers.getBytes());
-        out.write("\r\n".getBytes());
-        out.write(content);
-        out.write("\r\n\r\n".getBytes());
+    private void sendNotModifiedResponse(HeaderBlock headers) throws IOException {
+        out.write("HTTP/1.1 304 Not Modified\r\n".getBytes());
+        headers.writeTo(out);
+        out.write(CRLF);
         out.flush();
     }
 
+    /**
+     * Opens the body of a file served from the mapped or the transfer tier.
+     * A file of the mapped tier that cannot be mapped is sent with {@code transferTo} as well, rather
+     * than being read whole onto the heap.
+     *
+     * @param route the requested route
+     * @param size  the size of the file
+     * @return the body, or {@code null} if the file is small enough to be read and cached
+     * @throws IOException if the file cannot be opened
+     */
+    private ResponseBody openBody(String route, long size) throws IOException {
+        String path = FileService.resolvePath(config, route);
+        if (size >= config.getTransferThreshold()) {
+            return FileRegion.open(Path.of(path));
+        }
+        if (size >= config.getMmapThreshold()) {
+            MappedEntry entry = MappedFileCacheSingleton.getInstance().acquire(path);
+            return entry != null ? new MappedRegion(entry) : FileRegion.open(Path.of(path));
+        }
+        return null;
+    }
+
+    /**
+     * Evaluates the {@code If-None-Match} and {@code If-Modified-Since} preconditions of a request.
+     * <p>
+     * {@code If-None-Match} takes precedence: the file is not modified if any listed tag matches its
+     * entity tag (ignoring weakness) or the list is {@code *}. Otherwise, the file is not modified if
+     * it was last modified at or before the {@code If-Modified-Since} date.
+     *
+     * @param request      the parsed HTTP request
+     * @param eTag         the entity tag of the file
+     * @param lastModified the modification time of the file in milliseconds, or {@code -1} if unknown
+     * @return {@code true} if a {@code 304 Not Modified} response is to be sent
+     */
+    private static boolean isNotModified(HttpRequest request, String eTag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(eTag)) return true;
+            }
+            return false;
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince == null || lastModified < 0) return false;
+        long since = HeaderBuilder.parseDate(ifModifiedSince);
+        return since >= 0 && lastModified / 1000 <= since;
+    }
+
+    /**
+     * Checks the {@code If-Range} precondition of a range request.
+     * <p>
+     * Without {@code If-Range} the range applies. An entity tag must be identical to the file's (a
+     * weak tag never matches) and a date must be the file's exact modification time.
+     *
+     * @param request      the parsed HTTP request
+     * @param eTag         the entity tag of the file
+     * @param lastModified the modification time of the file in milliseconds, or {@code -1} if unknown
+     * @return {@code true} if the {@code Range} header is to be honoured
+     */
+    private static boolean isIfRangeSatisfied(HttpRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) return ifRange.equals(eTag);
+        return lastModified >= 0 && HeaderBuilder.parseDate(ifRange) == lastModified / 1000;
+    }
+
+    /**
+     * Sends a {@code 206 Partial Content} response for the requested ranges, or a
+     * {@code 416 Range Not Satisfiable} response if none of them is satisfiable.
+     * <p>
+     * A single range is sent as is with a {@code Content-Range} header; several ranges are sent as a
+     * {@code multipart/byteranges} body. The parts are slices of {@code whole}, so they are served
+     * from the cached content, the mapping or the file channel without reading anything else.
+     *
+     * @param whole      the complete body, owned (and eventually closed) by this method or its caller
+     * @param ranges     the satisfiable ranges, empty if none is
+     * @param contentType the media type of the file
+     * @param fileHeader the file-specific headers ({@code Accept-Ranges} and validators) and the
+     *                   {@code Connection} header line
+     * @return the status code sent
+     * @throws IOException if an I/O error occurs while sending the response
+     */
+    private int sendRangeResponse(ResponseBody whole, List<ByteRange> ranges, String contentType, String fileHeader) throws IOException {
+        long size = whole.remaining();
+        if (ranges.isEmpty()) {
+            whole.close();
+            sendErrorResponse("416 Range Not Satisfiable", new HeaderBlock(contentType, fileHeader + "Content-Range: bytes */" + size + "\r\n"));
+            return 416;
+        }
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            ResponseBody part = new CompositeBody(List.of(whole.slice(range.start(), range.length())), whole);
+            sendBodyResponse("206 Partial Content", part, new HeaderBlock(contentType,
+                    fileHeader + "Content-Range: bytes " + range.start() + "-" + range.end() + "/" + size + "\r\n"));
+            return 206;
+        }
+
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        List<ResponseBody> parts = new ArrayList<>();
+        for (ByteRange range : ranges) {
+            String partHeader = (parts.isEmpty() ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + range.start() + "-" + range.end() + "/" + size + "\r\n"
+                    + "\r\n";
+            parts.add(new BufferBody(ByteBuffer.wrap(partHeader.getBytes())));
+            parts.add(whole.slice(range.start(), range.length()));
+        }
+        parts.add(new BufferBody(ByteBuffer.wrap(("\r\n--" + boundary + "--\r\n").getBytes())));
+        sendBodyResponse("206 Partial Content", new CompositeBody(parts, whole),
+                new HeaderBlock("multipart/byteranges; boundary=" + boundary, fileHeader));
+        return 206;
+    }
+
+    /**
+     * Sends a response whose body is written from a mapping, a file or a buffer slice, without a heap copy.
+     * <p>
+     * The status line and headers go through the output stream, which is flushed before the body is
+     * written to the client channel. Without a channel the body is kept for {@link #takeDeferredBody()}.
+     * A body of unknown length (see {@link ChunkedBody}) is announced with {@code Transfer-Encoding: chunked}
+     * instead of {@code Content-Length}.
+     * For a {@code HEAD} request the body is closed unsent.
+     *
+     * @param status  the status code and reason phrase (e.g. {@code "200 OK"})
+     * @param body    the body to send, owned (and eventually closed) by this method or its caller
+     * @param headers the headers to include in the response
+     * @throws IOException if an I/O error occurs while sending the response
+     */
+    private void sendBodyResponse(String status, ResponseBody body, HeaderBlock headers) throws IOException {
+        try {
+            out.write(("HTTP/1.1 " + status + "\r\n").getBytes());
+            headers.writeTo(out);
+            long length = body.remaining();
+            out.write((length < 0 ? "Transfer-Encoding: chunked\r\n" : "Content-Length: " + length + "\r\n").getBytes());
+            out.write(CRLF);
+            out.flush();
+            if (headOnly) return;
+            if (channel == null) {
+                deferredBody = body;
+                body = null;
+                return;
+            }
+            while (!body.transferTo(channel)) {
+                Thread.onSpinWait();
+            }
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Response sent from channel."));
+        } finally {
+            if (body != null) body.close();
+        }
+    }
+
+    /**
+     * Returns, and hands over ownership of, the body left unsent because the handler has no channel.
+     *
+     * @return the body to send after the written headers, or {@code null} if there is none
+     */
+    ResponseBody takeDeferredBody() {
+        ResponseBody body = deferredBody;
+        deferredBody = null;
+        return body;
+    }
+
     /**
      * Sends a 404 Not Found response, attempting to serve a custom 404 page if available.
      *
-     * @param headers additional HTTP headers as a string
-     * @throws IOException          if an I/O error occurs
-     * @throws InterruptedException if the thread is interrupted while waiting for file read completion
-     */
-    private void sendNotFoundResponse(String headers) throws IOException, InterruptedException {
-        FileService fileService = new FileService(config , "/404.html");
-        fileService.start();
-        fileService.join();
-        byte[] content = fileService.getContent();
-
-        String notFoundResponse = "HTTP/1.1 404 Not Found\r\n"
-                + headers
-                + "\r\n\r\n";
-        out.write(notFoundResponse.getBytes());
-        out.write(content);
-        out.write("\r\n\r\n".getBytes());
+     * @param headers the headers to include in the response
+     * @throws IOException if an I/O error occurs
+     */
+    private void sendNotFoundResponse(HeaderBlock headers) throws IOException {
+        byte[] content = FileService.read(config, "/" + config.getPage404());
+
+        out.write("HTTP/1.1 404 Not Found\r\n".getBytes());
+        headers.writeTo(out);
+        out.write(("Content-Length: " + content.length + "\r\n\r\n").getBytes());
+        if (!headOnly) out.write(content);
         out.flush();
     }
 
     /**
      * Sends a general error response with the specified HTTP status and headers.
      *
-     * @param headers additional headers to include in the response
+     * @param status  the status code and reason phrase (e.g. {@code "400 Bad Request"})
+     * @param headers the headers to include in the response
      * @throws IOException if an I/O error occurs
      */
-    private void sendErrorResponse(String headers) throws IOException {
-        String response = "HTTP/1.1 400 Bad Request\r\n"
-                + headers
-                + "\r\n\r\n";
-        out.write(response.getBytes());
+    private void sendErrorResponse(String status, HeaderBlock headers) throws IOException {
+        out.write(("HTTP/1.1 " + status + "\r\n").getBytes());
+        headers.writeTo(out);
+        out.write("Content-Length: 0\r\n\r\n".getBytes());
         out.flush();
     }
 
+    /**
+     * The headers of a response: the standard headers of {@link HeaderBuilder}, written from their
+     * encoded bytes, followed by the lines specific to the response.
+     *
+     * @param contentType the {@code Content-Type} of the standard headers, or {@code null} if
+     *                    {@code lines} already include them
+     * @param lines       the other header lines, each ending with CRLF
+     */
+    private record HeaderBlock(String contentType, String lines) {
+        /**
+         * Writes the headers, without the empty line ending them.
+         *
+         * @param out the stream of the response
+         * @throws IOException if writing to the stream fails
+         */
+        void writeTo(OutputStream out) throws IOException {
+            if (contentType != null) HeaderBuilder.write(out, contentType);
+            if (!lines.isEmpty()) out.write(lines.getBytes());
+        }
+    }
 
+    /**
+     * What a request is answered with: the content or body of the selected tier, its validators and
+     * the headers describing it, filled in by {@link #selectBody}.
+     */
+    private static final class Selection {
+        /** The content of a file served from the heap; empty if none. */
+        byte[] content = new byte[0];
+        /** The body of a file served from the mapped, transfer or off-heap tier; {@code null} if none. */
+        ResponseBody body;
+        /** The {@code Vary} and {@code Content-Encoding} headers of the representation. */
+        String fileHeader = "";
+        /** The entity tag of the representation; {@code null} if no file was selected. */
+        String eTag;
+        /** The modification time of the file in milliseconds, or {@code -1} if unknown. */
+        long lastModified = -1;
+        /** Whether the request's preconditions call for a {@code 304 Not Modified} response. */
+        boolean notModified;
+        /** The prepared response of a cache hit, sent as is; {@code null} if there is none. */
+        PreparedResponse prepared;
+        /** The cached entry to store the response in once built; {@code null} if not to be prepared. */
+        CacheEntry preparedEntry;
+    }
 }
\ No newline at end of file
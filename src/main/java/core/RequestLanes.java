@@ -0,0 +1,78 @@
+package core;
+
+import config.ServerConfig;
+import utils.FileService;
+import utils.HttpRequest;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Splits request processing into two bulkheaded lanes after the cache lookup.
+ * <p>
+ * A request whose file is already in memory is rendered on the fast lane. Any other request first
+ * goes to the I/O lane, which only loads the file into the cache with {@link FileService#preload},
+ * and is then rendered on the fast lane as a cache hit. Each lane has its own threads and queue
+ * limits, so a burst of cold reads fills the I/O lane (and is shed there) without holding the fast
+ * lane's workers, and cached content keeps its latency while the disk is slow.
+ * <p>
+ * The cache lookup only checks the in-memory index, so requests can be classified on an event loop.
+ */
+public final class RequestLanes {
+    /** Executor rendering the requests whose file is in memory. */
+    private final Executor fastLane;
+    /** Executor loading missing files from disk; {@code null} if every request is rendered on the fast lane. */
+    private final Executor ioLane;
+
+    /**
+     * Creates the lanes.
+     *
+     * @param fastLane the executor rendering requests
+     * @param ioLane   the executor loading missing files, or {@code null} to render every request on the fast lane
+     */
+    public RequestLanes(Executor fastLane, Executor ioLane) {
+        this.fastLane = fastLane;
+        this.ioLane = ioLane;
+    }
+
+    /**
+     * Returns the executor rendering requests, also used for work that never touches the disk.
+     *
+     * @return the fast lane
+     */
+    public Executor fastLane() {
+        return fastLane;
+    }
+
+    /**
+     * Tells whether a request can be rendered without reading from disk, on any thread. This is the
+     * classification {@link #dispatch} makes; it only consults the in-memory index of the cache.
+     *
+     * @param config  the server configuration
+     * @param request the parsed HTTP request
+     * @return {@code true} if the request goes straight to the fast lane
+     */
+    public boolean servesFromMemory(ServerConfig config, HttpRequest request) {
+        return ioLane == null || FileService.isCached(config, request.getPath());
+    }
+
+    /**
+     * Renders a request on the fast lane, loading its file on the I/O lane first if it is not in memory.
+     * If either lane sheds the task under overload, {@code reject} runs instead of {@code render}.
+     *
+     * @param config  the server configuration
+     * @param request the parsed HTTP request
+     * @param render  renders and hands over the response
+     * @param reject  hands over a {@code 503 Service Unavailable} response instead
+     */
+    public void dispatch(ServerConfig config, HttpRequest request, Runnable render, Runnable reject) {
+        RejectableTask task = RejectableTask.of(render, reject);
+        if (servesFromMemory(config, request)) {
+            fastLane.execute(task);
+            return;
+        }
+        ioLane.execute(RejectableTask.of(() -> {
+            FileService.preload(config, request.getPath());
+            fastLane.execute(task);
+        }, reject));
+    }
+}
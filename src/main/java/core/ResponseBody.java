@@ -0,0 +1,50 @@
+package core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A response body sent straight to the client channel rather than through the output stream.
+ * <p>
+ * Bodies are written after the status line and headers, possibly over several calls when the
+ * channel is non-blocking, and must be closed once written or discarded.
+ */
+interface ResponseBody extends Closeable {
+    /**
+     * Returns the number of bytes left to send, or {@code -1} for a body whose length is only known
+     * once it has been sent; such a body frames itself with the {@code chunked} transfer coding.
+     *
+     * @return the remaining length, or {@code -1} if unknown
+     */
+    long remaining();
+
+    /**
+     * Sends as many of the remaining bytes as the target accepts.
+     * <p>
+     * A blocking target takes everything; a non-blocking one may stop early when its buffer is full.
+     *
+     * @param target the channel to write to
+     * @return {@code true} once the whole body has been sent
+     * @throws IOException if writing fails
+     */
+    boolean transferTo(WritableByteChannel target) throws IOException;
+
+    /**
+     * Returns a view of part of this body, e.g. for a byte range.
+     * <p>
+     * The view shares this body's resources: it is only valid while this body is open, and
+     * closing it releases nothing.
+     *
+     * @param offset index of the first byte of the part, relative to the start of the body
+     * @param length length of the part
+     * @return the view of the part
+     */
+    ResponseBody slice(long offset, long length);
+
+    /**
+     * Releases the resources behind the body.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,38 @@
+package core;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Common surface of the executors that run connection and request tasks.
+ * <p>
+ * {@link MainHTTPServerThread} and the NIO event loops only submit work through
+ * {@link #execute(Runnable)}, so the threading model behind it can be chosen in the
+ * configuration without affecting how connections are served.
+ */
+public interface TaskExecutor extends Executor {
+
+    /**
+     * Submits a task for execution.
+     *
+     * @param task the {@link Runnable} task to be executed
+     */
+    @Override
+    void execute(Runnable task);
+
+    /**
+     * Stops accepting new tasks and interrupts the threads running the current ones.
+     */
+    void shutdown();
+
+    /**
+     * Tells whether submitted tasks are waiting for a thread. A connection idling on a thread of
+     * the executor gives the thread up when they are (see {@link BlockingConnection}).
+     *
+     * @return {@code true} if at least one task is waiting; {@code false} by default, for executors
+     *         starting a thread per task
+     */
+    default boolean hasQueuedTasks() {
+        return false;
+    }
+
+}
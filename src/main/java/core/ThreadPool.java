@@ -5,45 +5,126 @@ import logging.LogProducer;
 import logging.LogType;
 import logging.LoggingTask;
 
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * A thread pool that manages a fixed number of worker threads to execute tasks.
+ * A thread pool that manages a set of worker threads to execute tasks.
  * <p>
- * This class initializes a pool of {@link WorkerThread} instances that continuously
+ * This class runs a pool of {@link WorkerThread} instances that continuously
  * fetch and execute {@link Runnable} tasks from a shared {@link BlockingQueue}.
  * Tasks are submitted using the {@link #execute(Runnable)} method.
  * </p>
  * <p>
+ * The pool is elastic between a core and a maximum size. It starts with the core workers and adds
+ * one whenever a task is queued with no worker free to take it, or when the oldest queued task has
+ * waited for more than half the target delay. Free workers are counted as a single demand figure
+ * (queued tasks minus workers waiting for one, or starting), so that a worker woken for a task is
+ * never counted as free for the next one. A worker above the core size that stays idle for the
+ * keep-alive period retires. Sizing decisions are logged and counted in {@link #getMetrics()}.
+ * </p>
+ * <p>
+ * The queue may be bounded, to shed load rather than let it pile up: a {@link RejectableTask}
+ * submitted while the queue is full is {@linkplain RejectableTask#reject() rejected} at once, and
+ * with a target delay set, one that waited too long in the queue is rejected by the worker that
+ * dequeues it instead of being run (see {@link QueueDelayController}). Other tasks wait for room.
+ * </p>
+ * <p>
  * The thread pool can be gracefully shut down using {@link #shutdown()}, after which
  * no new tasks will be accepted and all threads will be interrupted.
  * </p>
  */
-public class ThreadPool implements LogProducer {
-    /** Array of worker threads that execute submitted tasks. */
-    private final WorkerThread[] workers;
+public class ThreadPool implements TaskExecutor, LogProducer {
+    /** The live worker threads executing submitted tasks. */
+    private final Set<WorkerThread> workers = ConcurrentHashMap.newKeySet();
     /** A blocking queue that holds tasks to be processed by worker threads. */
     private final BlockingQueue<Runnable> taskQueue;
+    /** Number of workers kept even when idle. */
+    private final int coreSize;
+    /** Maximum number of workers. */
+    private final int maxSize;
+    /** How long a worker above the core size may stay idle before it retires, in nanoseconds. */
+    private final long keepAliveNanos;
+    /** Queueing delay above which a worker is added, in nanoseconds; 0 to grow on backlog only. */
+    private final long growDelayNanos;
+    /** Sheds tasks that waited too long in the queue; {@code null} if queueing delay is not limited. */
+    private final QueueDelayController delayController;
+    /** Number of workers currently waiting for a task. */
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    /**
+     * Queued tasks minus the workers free to take them (waiting, or started and not yet waiting);
+     * a worker is added while it is positive.
+     */
+    private final AtomicInteger demand = new AtomicInteger();
+    /** Number of tasks rejected because the queue was full or they waited too long. */
+    private final LongAdder rejectedTasks = new LongAdder();
+    /** Number of workers started since the pool was created, guarded by {@code this}. */
+    private long workersStarted;
+    /** Number of workers retired after being idle, guarded by {@code this}. */
+    private long workersRetired;
+    /** Largest number of workers alive at once, guarded by {@code this}. */
+    private int largestPoolSize;
     /** Indicates whether the thread pool has been shut down. */
     private volatile boolean isShutdown = false;
 
     /**
      * Constructs a thread pool with the specified number of worker threads.
      * <p>
-     * A {@link LinkedBlockingQueue} is used for storing tasks, and each worker
-     * thread is started immediately upon creation.
+     * An unbounded {@link LinkedBlockingQueue} is used for storing tasks, and each worker
+     * thread is started immediately upon creation. The pool keeps a fixed size.
      * </p>
      *
      * @param poolSize the number of worker threads in the pool
      */
     public ThreadPool(int poolSize) {
-        this.taskQueue = new LinkedBlockingQueue<>();
-        this.workers = new WorkerThread[poolSize];
+        this(new LinkedBlockingQueue<>(), poolSize, poolSize, Duration.ZERO, Duration.ZERO);
+    }
 
-        for (int i = 0; i < poolSize; i++) {
-            workers[i] = new WorkerThread(taskQueue);
-            workers[i].start();
+    /**
+     * Constructs a thread pool with the specified number of worker threads and a bounded queue.
+     *
+     * @param poolSize      the number of worker threads in the pool
+     * @param queueCapacity the maximum number of queued tasks (at least 1)
+     * @param targetDelay   the queueing delay above which waiting {@link RejectableTask}s may be shed,
+     *                      or {@link Duration#ZERO} to never shed a task once queued
+     */
+    public ThreadPool(int poolSize, int queueCapacity, Duration targetDelay) {
+        this(new ArrayBlockingQueue<>(queueCapacity), poolSize, poolSize, targetDelay, Duration.ZERO);
+    }
+
+    /**
+     * Constructs an elastic thread pool with a bounded queue.
+     *
+     * @param coreSize      the number of worker threads started at once and kept when idle
+     * @param maxSize       the maximum number of worker threads (raised to {@code coreSize} if lower)
+     * @param queueCapacity the maximum number of queued tasks (at least 1)
+     * @param targetDelay   the queueing delay above which waiting {@link RejectableTask}s may be shed,
+     *                      or {@link Duration#ZERO} to never shed a task once queued
+     * @param keepAlive     how long a worker above the core size may stay idle before it retires
+     */
+    public ThreadPool(int coreSize, int maxSize, int queueCapacity, Duration targetDelay, Duration keepAlive) {
+        this(new ArrayBlockingQueue<>(queueCapacity), coreSize, maxSize, targetDelay, keepAlive);
+    }
+
+    private ThreadPool(BlockingQueue<Runnable> taskQueue, int coreSize, int maxSize, Duration targetDelay, Duration keepAlive) {
+        this.taskQueue = taskQueue;
+        this.coreSize = coreSize;
+        this.maxSize = Math.max(coreSize, maxSize);
+        this.keepAliveNanos = keepAlive.toNanos();
+        this.growDelayNanos = targetDelay.toNanos() / 2;
+        this.delayController = targetDelay.isZero() ? null : new QueueDelayController(targetDelay);
+
+        synchronized (this) {
+            for (int i = 0; i < coreSize; i++) {
+                addWorker();
+            }
         }
     }
 
@@ -54,19 +135,172 @@ public class ThreadPool implements LogProducer {
      * and will be picked up by an available worker thread. If the pool is shut down,
      * the task will be ignored.
      * </p>
+     * <p>
+     * If the queue is full, a {@link RejectableTask} is rejected on the calling thread; any other
+     * task blocks the caller until there is room. A task queued while no worker is free to take it,
+     * or while the oldest queued task has waited for more than half the target delay, starts a new
+     * worker, unless the pool is at its maximum size.
+     * </p>
      *
      * @param task the {@link Runnable} task to be executed
      */
+    @Override
     public void execute(Runnable task) {
-        if (!isShutdown) {
+        if (isShutdown) return;
+        Runnable queued = (delayController == null && growDelayNanos == 0) ? task : new QueuedTask(task, System.nanoTime());
+        demand.incrementAndGet();
+        if (task instanceof RejectableTask rejectable) {
+            if (!taskQueue.offer(queued)) {
+                demand.decrementAndGet();
+                reject(rejectable);
+                return;
+            }
+        } else {
             try {
-                taskQueue.put(task);
+                taskQueue.put(queued);
             } catch (InterruptedException e) {
+                demand.decrementAndGet();
                 logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Failed to add task to queue"));
+                return;
+            }
+        }
+        if (workers.size() < maxSize) {
+            if (demand.get() > 0) {
+                grow("backlog", true);
+            } else if (growDelayNanos > 0 && taskQueue.peek() instanceof QueuedTask oldest) {
+                long waited = System.nanoTime() - oldest.enqueuedAt;
+                if (waited > growDelayNanos) {
+                    grow("queue wait " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms", false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the next task of a worker, retiring the worker if it stays idle for the
+     * keep-alive period while the pool is above its core size.
+     *
+     * @param worker the worker asking for a task
+     * @return the next task, or {@code null} if the worker is retired
+     * @throws InterruptedException if the worker is interrupted while waiting
+     */
+    Runnable nextTask(WorkerThread worker) throws InterruptedException {
+        if (!worker.claimStartReservation()) {
+            demand.decrementAndGet(); //Free again after a task; a new worker was counted free when started
+        }
+        idleWorkers.incrementAndGet();
+        try {
+            while (true) {
+                if (coreSize == maxSize || keepAliveNanos <= 0) return taskQueue.take();
+                Runnable task = taskQueue.poll(keepAliveNanos, TimeUnit.NANOSECONDS);
+                if (task != null) return task;
+                if (retire(worker)) {
+                    demand.incrementAndGet();
+                    return null;
+                }
             }
+        } finally {
+            idleWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Forgets a worker that stopped, whether retired, interrupted or shut down.
+     *
+     * @param worker the worker that stopped
+     */
+    void workerExited(WorkerThread worker) {
+        workers.remove(worker);
+    }
+
+    /**
+     * Starts a worker, if the pool is below its maximum size, and logs the sizing decision.
+     *
+     * @param reason  what triggered the growth
+     * @param backlog whether the growth is for queued tasks no worker is free to take, in which case
+     *                it is skipped if a worker started meanwhile already covers them
+     */
+    private synchronized void grow(String reason, boolean backlog) {
+        if (isShutdown || workers.size() >= maxSize) return;
+        if (backlog && demand.get() <= 0) return;
+        addWorker();
+        logMessage(new LoggingTask(LogType.Info, LogLocation.File,
+                "Thread pool grew to " + workers.size() + " workers (" + reason + ", " + taskQueue.size() + " queued)"));
+    }
+
+    /**
+     * Retires an idle worker if the pool is above its core size, and logs the sizing decision.
+     *
+     * @param worker the idle worker
+     * @return {@code true} if the worker must stop
+     */
+    private synchronized boolean retire(WorkerThread worker) {
+        if (workers.size() <= coreSize) return false;
+        workers.remove(worker);
+        workersRetired++;
+        logMessage(new LoggingTask(LogType.Info, LogLocation.File,
+                "Thread pool shrank to " + workers.size() + " workers (idle)"));
+        return true;
+    }
+
+    /**
+     * Creates and starts a worker, counted free for one queued task from now on.
+     * Must be called while holding the pool lock.
+     */
+    private void addWorker() {
+        demand.decrementAndGet();
+        WorkerThread worker = new WorkerThread(taskQueue, this);
+        workers.add(worker);
+        workersStarted++;
+        largestPoolSize = Math.max(largestPoolSize, workers.size());
+        worker.start();
+    }
+
+    /**
+     * Sheds a task, running its rejection handler on the current thread.
+     *
+     * @param task the task to reject
+     */
+    private void reject(RejectableTask task) {
+        rejectedTasks.increment();
+        try {
+            task.reject();
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Task rejection error: " + e.getMessage()));
         }
     }
 
+    /**
+     * Returns the number of tasks rejected since the pool was created, because the queue was full
+     * or because they waited longer than the target delay.
+     *
+     * @return the number of rejected tasks
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * Tells whether tasks are queued, waiting for a worker.
+     *
+     * @return {@code true} if the queue is not empty
+     */
+    @Override
+    public boolean hasQueuedTasks() {
+        return !taskQueue.isEmpty();
+    }
+
+    /**
+     * Returns a snapshot of the pool size, load and sizing decisions.
+     *
+     * @return the current metrics of the pool
+     */
+    public synchronized ThreadPoolMetrics getMetrics() {
+        int poolSize = workers.size();
+        return new ThreadPoolMetrics(poolSize, coreSize, maxSize, Math.max(0, poolSize - idleWorkers.get()),
+                taskQueue.size(), largestPoolSize, workersStarted, workersRetired, rejectedTasks.sum());
+    }
+
     /**
      * Shuts down the thread pool, preventing any new tasks from being submitted.
      * <p>
@@ -74,7 +308,8 @@ public class ThreadPool implements LogProducer {
      * flag is set to {@code true}.
      * </p>
      */
-    public void shutdown() {
+    @Override
+    public synchronized void shutdown() {
         isShutdown = true;
         for (WorkerThread worker : workers) {
             worker.interrupt();
@@ -82,11 +317,40 @@ public class ThreadPool implements LogProducer {
     }
 
     /**
-     * Returns the array of worker threads currently managed by this thread pool.
+     * Returns the worker threads currently managed by this thread pool.
      *
-     * @return an array of {@link WorkerThread} instances
+     * @return an array of the live {@link WorkerThread} instances
      */
     public WorkerThread[] getWorkers() {
-        return workers;
+        return workers.toArray(new WorkerThread[0]);
+    }
+
+    /**
+     * A queued task stamped with its enqueue time, checked against the target delay when a worker picks it up.
+     */
+    private final class QueuedTask implements Runnable {
+        /** The submitted task. */
+        private final Runnable task;
+        /** The time the task was queued, in {@link System#nanoTime()} units. */
+        private final long enqueuedAt;
+
+        QueuedTask(Runnable task, long enqueuedAt) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            if (growDelayNanos > 0 && now - enqueuedAt > growDelayNanos && !taskQueue.isEmpty()) {
+                grow("queue wait " + TimeUnit.NANOSECONDS.toMillis(now - enqueuedAt) + " ms", false);
+            }
+            if (delayController != null && task instanceof RejectableTask rejectable
+                    && delayController.shouldShed(enqueuedAt, now)) {
+                reject(rejectable);
+                return;
+            }
+            task.run();
+        }
     }
-}
\ No newline at end of file
+}
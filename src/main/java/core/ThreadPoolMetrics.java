@@ -0,0 +1,18 @@
+package core;
+
+/**
+ * A snapshot of the size, load and sizing decisions of a {@link ThreadPool}.
+ *
+ * @param poolSize        the number of live worker threads
+ * @param coreSize        the number of workers kept even when idle
+ * @param maxSize         the maximum number of workers
+ * @param activeWorkers   the number of workers running a task
+ * @param queuedTasks     the number of tasks waiting for a worker
+ * @param largestPoolSize the largest number of workers alive at once
+ * @param workersStarted  the number of workers started, including the core ones
+ * @param workersRetired  the number of workers retired after staying idle
+ * @param rejectedTasks   the number of tasks shed because the queue was full or they waited too long
+ */
+public record ThreadPoolMetrics(int poolSize, int coreSize, int maxSize, int activeWorkers, int queuedTasks,
+                                int largestPoolSize, long workersStarted, long workersRetired, long rejectedTasks) {
+}
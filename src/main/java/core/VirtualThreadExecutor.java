@@ -0,0 +1,98 @@
+package core;
+
+import logging.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A {@link TaskExecutor} that runs every submitted task on its own virtual thread.
+ * <p>
+ * Blocking socket reads and writes park the virtual thread instead of pinning a platform worker,
+ * so tens of thousands of concurrent keep-alive connections can be served without sizing a pool.
+ * </p>
+ * <p>
+ * The project targets Java 17, so {@code Executors.newVirtualThreadPerTaskExecutor()} is looked up
+ * reflectively; {@link #isSupported()} reports whether the running JVM provides it.
+ * </p>
+ */
+public class VirtualThreadExecutor implements TaskExecutor, LogProducer {
+    /** Handle to {@code Executors.newVirtualThreadPerTaskExecutor()}, or {@code null} before Java 21. */
+    private static final MethodHandle NEW_VIRTUAL_THREAD_EXECUTOR = findFactory();
+
+    /** The underlying thread-per-task executor. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs an executor backed by virtual threads.
+     *
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public VirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            this.executor = (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke();
+        } catch (Throwable e) {
+            throw new UnsupportedOperationException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Returns whether the running JVM supports virtual threads.
+     *
+     * @return {@code true} on Java 21 or newer
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Starts the task on a new virtual thread. Tasks submitted after {@link #shutdown()} are ignored.
+     * Exceptions thrown by the task are logged, like in a {@link WorkerThread}.
+     *
+     * @param task the {@link Runnable} task to be executed
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr,
+                            "Task execution error: " + e.getMessage()));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Failed to add task to queue"));
+        }
+    }
+
+    /**
+     * Stops accepting tasks and interrupts the running virtual threads.
+     */
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Looks up the virtual thread executor factory.
+     *
+     * @return the factory handle, or {@code null} if the JVM predates virtual threads
+     */
+    private static MethodHandle findFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package core;
+
+import logging.LogLocation;
+import logging.LogProducer;
+import logging.LogType;
+import logging.LoggingTask;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link TaskExecutor} backed by a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Where the workers of a {@link ThreadPool} all take from one shared queue, each worker here has
+ * its own deque, and tasks submitted from outside the pool are spread over several submission
+ * queues. An idle worker steals from the others, so submitting and taking tasks rarely contend on
+ * the same lock when many cores are busy. The pool runs in FIFO mode, so tasks are served in
+ * submission order as far as stealing allows.
+ * </p>
+ * <p>
+ * Load is shed like in a {@link ThreadPool}: once {@code queueCapacity} tasks are waiting besides
+ * the running ones, a {@link RejectableTask} is rejected at once, and with a target delay set, one
+ * that waited too long is rejected when a worker picks it up (see {@link QueueDelayController}).
+ * Since a worker blocked on a socket cannot steal, this mode suits the NIO mode best, where tasks
+ * never wait for a client.
+ * </p>
+ */
+public class WorkStealingExecutor implements TaskExecutor, LogProducer {
+    /** The underlying work-stealing pool. */
+    private final ForkJoinPool pool;
+    /** Maximum number of submitted tasks not yet finished before rejectable tasks are turned away. */
+    private final int capacity;
+    /** Sheds tasks that waited too long; {@code null} if queueing delay is not limited. */
+    private final QueueDelayController delayController;
+    /** Number of submitted tasks not yet finished. */
+    private final AtomicInteger pendingTasks = new AtomicInteger();
+    /** Number of tasks rejected because the pool was full or they waited too long. */
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    /**
+     * Constructs a work-stealing executor.
+     *
+     * @param parallelism   the number of worker threads
+     * @param queueCapacity the maximum number of tasks waiting for a worker (at least 1)
+     * @param targetDelay   the queueing delay above which waiting {@link RejectableTask}s may be shed,
+     *                      or {@link Duration#ZERO} to never shed a task once queued
+     */
+    public WorkStealingExecutor(int parallelism, int queueCapacity, Duration targetDelay) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("work-stealing-" + threadCount.getAndIncrement());
+            return thread;
+        }, null, true);
+        this.capacity = parallelism + queueCapacity;
+        this.delayController = targetDelay.isZero() ? null : new QueueDelayController(targetDelay);
+    }
+
+    /**
+     * Submits a task to the pool. Tasks submitted after {@link #shutdown()} are ignored.
+     * <p>
+     * If the pool is full, a {@link RejectableTask} is rejected on the calling thread; any other
+     * task is always accepted. Exceptions thrown by the task are logged, like in a {@link WorkerThread}.
+     * </p>
+     *
+     * @param task the {@link Runnable} task to be executed
+     */
+    @Override
+    public void execute(Runnable task) {
+        RejectableTask rejectable = task instanceof RejectableTask r ? r : null;
+        if (pendingTasks.incrementAndGet() > capacity && rejectable != null) {
+            pendingTasks.decrementAndGet();
+            reject(rejectable);
+            return;
+        }
+        long enqueuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                try {
+                    if (rejectable != null && delayController != null
+                            && delayController.shouldShed(enqueuedAt, System.nanoTime())) {
+                        reject(rejectable);
+                    } else {
+                        task.run();
+                    }
+                } catch (Exception e) {
+                    logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr,
+                            "Task execution error: " + e.getMessage()));
+                } finally {
+                    pendingTasks.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingTasks.decrementAndGet();
+            if (!pool.isShutdown()) {
+                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Failed to add task to queue"));
+            }
+        }
+    }
+
+    /**
+     * Sheds a task, running its rejection handler on the current thread.
+     *
+     * @param task the task to reject
+     */
+    private void reject(RejectableTask task) {
+        rejectedTasks.increment();
+        try {
+            task.reject();
+        } catch (Exception e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Task rejection error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Returns the number of tasks rejected since the executor was created, because the pool was full
+     * or because they waited longer than the target delay.
+     *
+     * @return the number of rejected tasks
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * Returns the number of tasks stolen by one worker from another's deque, as counted by the pool.
+     *
+     * @return the number of stolen tasks
+     */
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    /**
+     * Tells whether submitted tasks are waiting for a worker, as reported by the pool.
+     *
+     * @return {@code true} if the pool has submissions not yet taken by a worker
+     */
+    @Override
+    public boolean hasQueuedTasks() {
+        return pool.hasQueuedSubmissions();
+    }
+
+    /**
+     * Stops accepting tasks and interrupts the running workers.
+     */
+    @Override
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -19,8 +19,12 @@ import java.util.concurrent.BlockingQueue;
 public class WorkerThread extends Thread implements LogProducer {
     /** The queue containing tasks to be executed by this thread. */
     private final BlockingQueue<Runnable> taskQueue;
+    /** The pool this thread belongs to, which may retire it when idle; {@code null} if standalone. */
+    private final ThreadPool pool;
     /** Flag indicating whether this thread has been shut down. */
     private volatile boolean isShutdown = false;
+    /** Whether the pool counted this thread free when starting it, until its first wait for a task. */
+    private boolean startReservation = true;
 
     /**
      * Constructs a new {@code WorkerThread} that pulls tasks from the specified task queue.
@@ -28,29 +32,57 @@ public class WorkerThread extends Thread implements LogProducer {
      * @param taskQueue the blocking queue from which tasks will be retrieved and executed
      */
     public WorkerThread(BlockingQueue<Runnable> taskQueue) {
+        this(taskQueue, null);
+    }
+
+    /**
+     * Constructs a new {@code WorkerThread} owned by a pool, which hands it tasks and retires it when idle.
+     *
+     * @param taskQueue the blocking queue from which tasks will be retrieved and executed
+     * @param pool      the pool owning this thread
+     */
+    WorkerThread(BlockingQueue<Runnable> taskQueue, ThreadPool pool) {
         this.taskQueue = taskQueue;
+        this.pool = pool;
+    }
+
+    /**
+     * Tells, once, that the thread is waiting for its first task, for which its pool reserved it when
+     * starting it. Only called by this thread.
+     *
+     * @return {@code true} on the first call, {@code false} afterwards
+     */
+    boolean claimStartReservation() {
+        boolean first = startReservation;
+        startReservation = false;
+        return first;
     }
 
     /**
      * Continuously retrieves and executes tasks from the queue until the thread is shut down.
      * <p>
-     * If interrupted, the thread exits gracefully. Any exceptions thrown during task execution
+     * If interrupted, or retired by its pool after staying idle, the thread exits gracefully. Any exceptions thrown during task execution
      * are caught and logged using the logging system.
      * </p>
      */
     @Override
     public void run() {
-        while (!isShutdown) {
-            try {
-                Runnable task = taskQueue.take();
-                task.run();
-            } catch (InterruptedException e) {
-                isShutdown = true;
-                break;
-            } catch (Exception e) {
-                logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr,
-                        "Task execution error: " + e.getMessage()));
+        try {
+            while (!isShutdown) {
+                try {
+                    Runnable task = (pool == null) ? taskQueue.take() : pool.nextTask(this);
+                    if (task == null) break; //Retired
+                    task.run();
+                } catch (InterruptedException e) {
+                    isShutdown = true;
+                    break;
+                } catch (Exception e) {
+                    logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr,
+                            "Task execution error: " + e.getMessage()));
+                }
             }
+        } finally {
+            if (pool != null) pool.workerExited(this);
         }
     }
 }
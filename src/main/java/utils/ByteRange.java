@@ -0,0 +1,77 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A satisfiable byte range of a representation, as requested with a {@code Range} header.
+ *
+ * @param start index of the first byte
+ * @param end   index of the last byte (inclusive)
+ */
+public record ByteRange(long start, long end) {
+    /** Maximum number of ranges honoured in one request; longer lists are ignored. */
+    private static final int MAX_RANGES = 16;
+
+    /**
+     * Returns the number of bytes covered by the range.
+     *
+     * @return the range length
+     */
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Parses a {@code Range} header against a representation of the given size.
+     * <p>
+     * Supported forms are {@code bytes=a-b}, {@code bytes=a-} and {@code bytes=-n} (the last
+     * {@code n} bytes), separated by commas. Ranges reaching past the end are truncated and
+     * unsatisfiable ones are dropped. The header is ignored (the whole representation is served)
+     * if its unit is not {@code bytes}, if it is malformed, if it lists more than
+     * {@value #MAX_RANGES} ranges, or if its ranges add up to more than the representation itself.
+     *
+     * @param header the value of the {@code Range} header, or {@code null}
+     * @param size   the size of the representation, in bytes
+     * @return the satisfiable ranges in request order, an empty list if none is satisfiable
+     *         ({@code 416}), or {@code null} if the header is to be ignored
+     */
+    public static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+
+        String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<ByteRange> ranges = new ArrayList<>();
+        long total = 0;
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) return null;
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) return null;
+                    if (suffix == 0 || size == 0) continue;
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) return null;
+                    if (start >= size) continue;
+                    end = Math.min(end, size - 1);
+                }
+                ranges.add(new ByteRange(start, end));
+                total += end - start + 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return total > size ? null : ranges;
+    }
+}
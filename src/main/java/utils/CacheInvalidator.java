@@ -0,0 +1,215 @@
+package utils;
+
+import Cache.CacheEntry;
+import Cache.CacheManager;
+import Cache.MappedFileCacheSingleton;
+import config.ServerConfig;
+import logging.*;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Removes cached files from the {@link CacheManager} (and the {@link Cache.MappedFileCache}) as soon
+ * as they change on disk, so that the cache expiration time no longer bounds how long stale content
+ * is served and can be made long, or disabled.
+ * <p>
+ * As a {@link FileChangeListener} of a {@link DocumentRootWatcher}, it invalidates the entry of each
+ * changed or deleted file, along with its compressed variants, in constant time. Only a changed
+ * directory (created, moved or deleted) invalidates everything below it, which visits the whole cache;
+ * the directories below the document root are tracked so that a deleted directory can be told from a
+ * deleted file. When the watcher reports lost changes, every cached file is checked against the disk.
+ * <p>
+ * Some file systems never deliver watch events (network shares, some container mounts), and the
+ * watcher may not be available at all. Started as a thread, this class therefore also checks every
+ * cached file against the disk at the poll interval: an entry is stale if its file is gone, or if its
+ * modification time or size differs from those recorded when it was read.
+ */
+public class CacheInvalidator extends Thread implements FileChangeListener, LogProducer {
+    /** The server configuration, mapping files to cache keys. */
+    private final ServerConfig config;
+    /** The cache to keep up to date. */
+    private final CacheManager cacheManager;
+    /** The document root, normalized. */
+    private final Path root;
+    /** How often cached files are checked against the disk; zero to never check. */
+    private final Duration pollInterval;
+    /** The directories below the document root, normalized, as last seen. */
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs an invalidator for the cache of the given document root.
+     *
+     * @param config       the server configuration containing the document root
+     * @param cacheManager the cache to keep up to date
+     * @param pollInterval how often {@link #run()} checks cached files against the disk, or
+     *                     {@link Duration#ZERO} to rely on the watcher alone
+     */
+    public CacheInvalidator(ServerConfig config, CacheManager cacheManager, Duration pollInterval) {
+        this.config = config;
+        this.cacheManager = cacheManager;
+        this.root = Path.of(config.getDocumentRoot()).toAbsolutePath().normalize();
+        this.pollInterval = pollInterval;
+        addDirectories(root);
+    }
+
+    /**
+     * Invalidates the cache entries of a changed or deleted file, or of every file below a changed directory.
+     *
+     * @param path the absolute path of the file or directory that changed
+     */
+    @Override
+    public void fileChanged(Path path) {
+        Path changed = path.toAbsolutePath().normalize();
+        if (!changed.startsWith(root)) return;
+        if (Files.isRegularFile(changed)) {
+            invalidateFile(changed);
+        } else if (Files.isDirectory(changed)) {
+            addDirectories(changed);
+            invalidateBelow(changed);
+        } else {
+            invalidateFile(changed);
+            if (directories.remove(changed)) {
+                directories.removeIf(directory -> directory.startsWith(changed));
+                invalidateBelow(changed);
+            }
+        }
+    }
+
+    /**
+     * Checks every cached file against the disk after changes may have been missed.
+     */
+    @Override
+    public void changesLost() {
+        revalidate();
+    }
+
+    /**
+     * Invalidates every cached entry whose file was deleted or modified since it was read.
+     */
+    public void revalidate() {
+        cacheManager.invalidateIf(this::isStale);
+    }
+
+    /**
+     * Checks the cached files against the disk at the poll interval, until the thread is interrupted.
+     * Returns at once if polling is disabled.
+     */
+    @Override
+    public void run() {
+        if (pollInterval.isZero()) return;
+        logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Cache poller started: every " + pollInterval.toSeconds() + " s"));
+        while (true) {
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            revalidate();
+        }
+    }
+
+    /**
+     * Invalidates the entries of a file and of its compressed variants, by key.
+     *
+     * @param file the normalized path of the file
+     */
+    private void invalidateFile(Path file) {
+        String key = FileService.resolvePath(config, "/" + root.relativize(file).toString().replace('\\', '/'));
+        cacheManager.invalidate(key);
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            cacheManager.invalidate(FileService.variantKey(encoding, key));
+        }
+        MappedFileCacheSingleton.getInstance().invalidate(key);
+    }
+
+    /**
+     * Invalidates every entry of a file below a directory. Keys may not match the paths reported
+     * for the directory exactly, so the whole cache is visited.
+     *
+     * @param directory the normalized path of the directory
+     */
+    private void invalidateBelow(Path directory) {
+        cacheManager.invalidateIf((key, entry) -> fileOf(key).startsWith(directory));
+    }
+
+    /**
+     * Records a directory and the directories below it.
+     *
+     * @param start the normalized path of the directory
+     */
+    private void addDirectories(Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    directories.add(dir.toAbsolutePath().normalize());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error listing directory: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Tells whether a cache entry no longer reflects its file.
+     *
+     * @param key   the cache key
+     * @param entry the cached entry
+     * @return {@code true} if the file is gone or was modified since it was read
+     */
+    private boolean isStale(String key, CacheEntry entry) {
+        if (entry.getLastModified() < 0) return false; //Not read from a file
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(fileOf(key), BasicFileAttributes.class);
+            if (attributes.lastModifiedTime().toMillis() != entry.getLastModified()) return true;
+            return !isVariant(key) && attributes.size() != entry.size();
+        } catch (IOException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Returns the normalized path of the file behind a cache key, stripping the prefix of a variant.
+     *
+     * @param key the cache key
+     * @return the path of the file
+     */
+    private static Path fileOf(String key) {
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            String prefix = encoding.getToken() + ":";
+            if (key.startsWith(prefix)) {
+                key = key.substring(prefix.length());
+                break;
+            }
+        }
+        return Path.of(key).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Tells whether a cache key is that of a compressed variant.
+     *
+     * @param key the cache key
+     * @return {@code true} for a variant key
+     */
+    private static boolean isVariant(String key) {
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            if (key.startsWith(encoding.getToken() + ":")) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,136 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Represents the content codings the server can apply to a response body, negotiated through the
+ * {@code Accept-Encoding} request header.
+ * <p>
+ * The identity coding (no compression) is not listed: it is represented by {@code null}.
+ */
+public enum ContentEncoding {
+    /** The gzip file format (RFC 1952); preferred when the client accepts both codings equally. */
+    Gzip("gzip"),
+    /** The zlib format (RFC 1950), which HTTP calls {@code deflate}. */
+    Deflate("deflate");
+
+    /** The coding token, as sent in {@code Content-Encoding}. */
+    private final String token;
+
+    ContentEncoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Returns the coding token, as sent in {@code Content-Encoding}.
+     *
+     * @return the token (e.g. {@code gzip})
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Compresses content with this coding.
+     *
+     * @param content the content to compress
+     * @return the compressed content
+     */
+    public byte[] encode(byte[] content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (OutputStream encoder = encoder(bytes)) {
+            encoder.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //Cannot happen with an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Wraps a stream so that everything written to it is compressed with this coding. The encoding is
+     * completed, and the trailer written, when the returned stream is closed.
+     *
+     * @param sink the stream receiving the compressed bytes
+     * @return the compressing stream
+     * @throws IOException if the coding header cannot be written to {@code sink}
+     */
+    public OutputStream encoder(OutputStream sink) throws IOException {
+        return this == Gzip ? new GZIPOutputStream(sink) : new DeflaterOutputStream(sink);
+    }
+
+    /**
+     * Tells whether an {@code Accept-Encoding} header accepts this coding, with a non-zero quality.
+     *
+     * @param acceptEncoding the value of the {@code Accept-Encoding} header, or {@code null}
+     * @return {@code true} if content may be sent with this coding
+     */
+    public boolean isAcceptedBy(String acceptEncoding) {
+        return acceptEncoding != null && qualities(acceptEncoding)[ordinal()] > 0;
+    }
+
+    /**
+     * Picks the coding to apply for an {@code Accept-Encoding} header.
+     * <p>
+     * The coding with the highest quality value wins, gzip on a tie. A coding listed with
+     * {@code q=0} is refused, and {@code *} stands for any coding not listed explicitly.
+     *
+     * @param acceptEncoding the value of the {@code Accept-Encoding} header, or {@code null}
+     * @return the coding to apply, or {@code null} to send the content as is
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) return null;
+
+        double[] quality = qualities(acceptEncoding);
+        ContentEncoding best = null;
+        double bestQuality = 0;
+        for (ContentEncoding encoding : values()) {
+            if (quality[encoding.ordinal()] > bestQuality) {
+                best = encoding;
+                bestQuality = quality[encoding.ordinal()];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Parses the quality value given to each coding by an {@code Accept-Encoding} header.
+     *
+     * @param acceptEncoding the value of the {@code Accept-Encoding} header
+     * @return the quality of each coding, by ordinal; {@code 0} if it is not accepted
+     */
+    private static double[] qualities(String acceptEncoding) {
+        double[] quality = {-1, -1};
+        double wildcard = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("*")) {
+                wildcard = q;
+            } else {
+                for (ContentEncoding encoding : values()) {
+                    if (coding.equalsIgnoreCase(encoding.token)) quality[encoding.ordinal()] = q;
+                }
+            }
+        }
+        for (int i = 0; i < quality.length; i++) {
+            if (quality[i] < 0) quality[i] = wildcard;
+        }
+        return quality;
+    }
+}
@@ -0,0 +1,97 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+/**
+ * Provides the {@code Date} response header, formatted at most once per second and shared by all requests.
+ * <p>
+ * Formatting a date for every response costs more than the rest of the headers together. Since the
+ * header only has a one-second resolution, the formatted line and its bytes are kept and only rebuilt
+ * by the first request of each new second; every other request reuses them as they are.
+ * <p>
+ * The static methods read the clock shared by the server, which follows the system time. A clock
+ * following another time source can be created for tests.
+ */
+public final class DateClock {
+    /** The clock shared by the server, following the system time. */
+    private static final DateClock SYSTEM = new DateClock(System::currentTimeMillis);
+
+    /** The time source, in milliseconds since the epoch. */
+    private final LongSupplier millis;
+    /** The header of the current second. */
+    private volatile Tick tick = new Tick(Long.MIN_VALUE, "", new byte[0]);
+
+    /**
+     * The {@code Date} header of one second.
+     *
+     * @param second the second, since the epoch
+     * @param header the header line, ending with CRLF
+     * @param bytes  the bytes of the header line
+     */
+    private record Tick(long second, String header, byte[] bytes) {
+    }
+
+    /**
+     * Creates a clock following the given time source.
+     *
+     * @param millis the time source, in milliseconds since the epoch
+     */
+    public DateClock(LongSupplier millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * Returns the {@code Date} header line for the current time.
+     *
+     * @return the header line, ending with CRLF
+     */
+    public static String header() {
+        return SYSTEM.currentHeader();
+    }
+
+    /**
+     * Returns the bytes of the {@code Date} header line for the current time, without copying them.
+     *
+     * @return a new read-only buffer over the shared header bytes
+     */
+    public static ByteBuffer headerBuffer() {
+        return ByteBuffer.wrap(SYSTEM.current().bytes()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the shared bytes of the {@code Date} header line for the current time, which must not be modified.
+     *
+     * @return the bytes of the header line
+     */
+    static byte[] headerBytes() {
+        return SYSTEM.current().bytes();
+    }
+
+    /**
+     * Returns the {@code Date} header line for the time of this clock. Within a second, the same
+     * instance is returned.
+     *
+     * @return the header line, ending with CRLF
+     */
+    public String currentHeader() {
+        return current().header();
+    }
+
+    /**
+     * Returns the header of the current second, formatting it if the second has changed since the last call.
+     *
+     * @return the header of the current second
+     */
+    private Tick current() {
+        long second = Math.floorDiv(millis.getAsLong(), 1000);
+        Tick current = tick;
+        if (current.second() != second) {
+            String header = "Date: " + HeaderBuilder.formatDate(second * 1000) + "\r\n";
+            current = new Tick(second, header, header.getBytes(StandardCharsets.US_ASCII));
+            tick = current;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,142 @@
+package utils;
+
+import logging.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * A thread that watches the document root, and every directory below it, for file changes.
+ * <p>
+ * Changes are reported by the operating system through a {@link WatchService} and forwarded to the
+ * registered {@link FileChangeListener}s, so that components indexing or caching files learn about
+ * edits without checking the disk on each request. Directories created while the server runs are
+ * watched as well, and the files they already contain are reported.
+ * <p>
+ * If the file system does not support watching, an error is logged and the thread ends immediately.
+ */
+public class DocumentRootWatcher extends Thread implements LogProducer {
+    /** The watched document root. */
+    private final Path root;
+    /** The watch service, or {@code null} if the file system cannot be watched. */
+    private final WatchService watchService;
+    /** The watched directories, by watch key. */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    /** The listeners notified of changes. */
+    private final List<FileChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a watcher and registers the document root and its subdirectories right away, so that
+     * changes made between construction and {@link #start()} are not lost.
+     *
+     * @param root the document root to watch
+     */
+    public DocumentRootWatcher(Path root) {
+        this.root = root;
+        WatchService service = null;
+        try {
+            service = root.getFileSystem().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "File watcher unavailable: " + e.getMessage()));
+        }
+        this.watchService = service;
+        if (service != null) {
+            registerAll(root, false);
+        }
+    }
+
+    /**
+     * Adds a listener notified of every change below the document root.
+     *
+     * @param listener the listener
+     */
+    public void addListener(FileChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns whether changes are being reported; {@code false} if the file system cannot be watched.
+     *
+     * @return {@code true} if the document root is watched
+     */
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Waits for change events and forwards them to the listeners until the thread is interrupted.
+     */
+    @Override
+    public void run() {
+        if (watchService == null) return;
+        try (watchService) {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = directories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW || directory == null) {
+                        logMessage(new LoggingTask(LogType.Warning, LogLocation.ConsoleOut, "File watcher overflow: rebuilding " + root));
+                        listeners.forEach(FileChangeListener::changesLost);
+                        continue;
+                    }
+                    Path path = directory.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        registerAll(path, true);
+                    }
+                    notifyChanged(path);
+                }
+                if (!key.reset()) {
+                    directories.remove(key); //Directory deleted
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException | IOException e) {
+            //Watcher shut down
+        }
+    }
+
+    /**
+     * Registers a directory and all its subdirectories with the watch service.
+     *
+     * @param start  the directory to register
+     * @param notify whether the files found are reported as changed (for a directory created after startup)
+     */
+    private void registerAll(Path start, boolean notify) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (notify) notifyChanged(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error watching directory: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Reports a changed path to every listener.
+     *
+     * @param path the path that changed
+     */
+    private void notifyChanged(Path path) {
+        for (FileChangeListener listener : listeners) {
+            listener.fileChanged(path);
+        }
+    }
+}
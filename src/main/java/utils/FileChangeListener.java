@@ -0,0 +1,22 @@
+package utils;
+
+import java.nio.file.Path;
+
+/**
+ * Receives the changes to files of the document root reported by a {@link DocumentRootWatcher}.
+ */
+public interface FileChangeListener {
+    /**
+     * Called when a file or directory was created, modified or deleted.
+     *
+     * @param path the absolute path of the file or directory that changed
+     */
+    void fileChanged(Path path);
+
+    /**
+     * Called when changes may have been missed (the watcher's event queue overflowed), so that any
+     * state derived from the document root can be rebuilt. Does nothing by default.
+     */
+    default void changesLost() {
+    }
+}
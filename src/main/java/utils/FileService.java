@@ -1,5 +1,6 @@
 package utils;
 
+import Cache.CacheEntry;
 import Cache.CacheManager;
 import Cache.CacheManagerSingleton;
 import config.ServerConfig;
@@ -8,6 +9,7 @@ import logging.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 
 /**
  * A thread-based file reader that handles file access with concurrency and caching.
@@ -17,10 +19,17 @@ import java.nio.file.Paths;
  * <p>
  * It also interacts with {@link CacheManager} to serve cached content if available,
  * reducing disk I/O and improving response time.
+ * <p>
+ * Besides running as its own thread, the service can be used without creating a thread through
+ * {@link #read(ServerConfig, String)}, on the calling thread. The server keeps disk reads off its
+ * request threads by loading missing files with {@link #preload(ServerConfig, String)} on its own
+ * I/O executor first, so that requests are then read from the cache.
  */
 public class FileService extends Thread implements LogProducer {
     /** A global file monitor used to coordinate exclusive file access. */
     private static final FileMonitor fileMonitor = new FileMonitor();
+    /** Index of the precompressed sidecars in the document root; {@code null} if none are served. */
+    private static volatile PrecompressedIndex precompressedIndex;
     /** The fully resolved file system path to the target file. */
     private final String path;
     /** The content of the file, once read. */
@@ -36,14 +45,225 @@ public class FileService extends Thread implements LogProducer {
      * @param path   the requested route or file path (relative)
      */
     public FileService(ServerConfig config, String path) {
-        if (path.endsWith("/")) {
-            path += config.getDefaultPageFile() + "." + config.getDefaultPageExtension();
-            this.path = config.getDocumentRoot() + path;
-        } else {
-            this.path = config.getDocumentRoot() + path;
+        this.path = resolvePath(config, path);
+    }
+
+    /**
+     * Resolves a requested route to the full path of the file in the document root.
+     * <p>
+     * If the route ends with a slash, the default page name and extension are appended.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return the fully resolved file system path
+     */
+    public static String resolvePath(ServerConfig config, String route) {
+        return config.getDocumentRoot() + resolveRoute(config, route);
+    }
+
+    /**
+     * Appends the default page name and extension to a route ending with a slash.
+     *
+     * @param config the server configuration containing default file info
+     * @param route  the requested route or file path (relative)
+     * @return the route of the file to serve
+     */
+    private static String resolveRoute(ServerConfig config, String route) {
+        if (route.endsWith("/")) {
+            route += config.getDefaultPageFile() + "." + config.getDefaultPageExtension();
+        }
+        return route;
+    }
+
+    /**
+     * Sets the index of precompressed sidecars consulted by {@link #precompressedRoute(ServerConfig, String)}.
+     *
+     * @param index the sidecar index, or {@code null} to ignore sidecars
+     */
+    public static void setPrecompressedIndex(PrecompressedIndex index) {
+        precompressedIndex = index;
+    }
+
+    /**
+     * Returns the route of the gzip sidecar ({@code foo.js.gz} for {@code foo.js}) of a requested route,
+     * if the document root has one. Only the in-memory index is consulted: nothing is read from disk.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return the route of the sidecar, or {@code null} if the file has none
+     */
+    public static String precompressedRoute(ServerConfig config, String route) {
+        PrecompressedIndex index = precompressedIndex;
+        if (index == null) return null;
+        String sidecarRoute = resolveRoute(config, route) + PrecompressedIndex.SUFFIX;
+        return index.contains(Paths.get(config.getDocumentRoot() + sidecarRoute)) ? sidecarRoute : null;
+    }
+
+    /**
+     * Returns the attributes (size, modification time) of the file behind a requested route,
+     * used to pick the tier serving it and to answer conditional and range requests.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return the file attributes, or {@code null} if the route is not a readable regular file
+     */
+    public static BasicFileAttributes attributesOf(ServerConfig config, String route) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(resolvePath(config, route)), BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (Exception e) {
+            return null; //Missing or unreadable: handled by the regular read path
         }
     }
 
+    /**
+     * Reads the content of a requested route without starting a thread.
+     * <p>
+     * A cache hit is answered directly from memory. On a miss, the file is read from disk on the
+     * calling thread, with locking and cache fill as in {@link #run()}.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return the file content, or an empty array if the file could not be read
+     */
+    public static byte[] read(ServerConfig config, String route) {
+        CacheEntry entry = readEntry(config, route);
+        if (entry == null) return new byte[0];
+        try {
+            return entry.getContent();
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * Reads the cache entry of a requested route, with the validators ({@code ETag} and modification
+     * time) computed when it was filled, without starting a thread.
+     * <p>
+     * An entry served from off-heap storage is {@linkplain CacheEntry#retain() retained} for the
+     * caller, who must {@linkplain CacheEntry#release() release} it once its content has been sent.
+     * Releasing an entry held on the heap does nothing.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return the cache entry, or {@code null} if the file could not be read
+     * @see #read(ServerConfig, String)
+     */
+    public static CacheEntry readEntry(ServerConfig config, String route) {
+        String path = resolvePath(config, route);
+
+        CacheEntry cachedEntry = CacheManagerSingleton.getInstance().readEntryFromCache(path);
+        if (cachedEntry != null && cachedEntry.retain()) {
+            logMessageStatic(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Served from cache: " + path));
+            return cachedEntry;
+        }
+        return readFromDisk(path);
+    }
+
+    /**
+     * Tells whether the file behind a requested route, and its gzip sidecar if it has one, are in
+     * the cache. Only memory is consulted, without locking, so the answer can be given on an event loop.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return {@code true} if serving the route needs no disk read
+     */
+    public static boolean isCached(ServerConfig config, String route) {
+        String sidecarRoute = precompressedRoute(config, route);
+        return isFileCached(config, route) && (sidecarRoute == null || isFileCached(config, sidecarRoute));
+    }
+
+    /**
+     * Tells whether the file behind a route is in the cache, regardless of any sidecar. Only memory
+     * is consulted: a cached file is kept fresh by the cache invalidator, so it needs no disk check.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     * @return {@code true} if the file can be read from the cache
+     */
+    public static boolean isFileCached(ServerConfig config, String route) {
+        return CacheManagerSingleton.getInstance().contains(resolvePath(config, route));
+    }
+
+    /**
+     * Loads the file behind a requested route into the cache on the calling thread, so that the
+     * request is then served from memory. The gzip sidecar of the file is loaded as well, and the
+     * configured 404 page if the file does not exist. Files at or above the mapping threshold are not read:
+     * they are mapped or streamed when served.
+     *
+     * @param config the server configuration containing document root and default file info
+     * @param route  the requested route or file path (relative)
+     */
+    public static void preload(ServerConfig config, String route) {
+        String sidecarRoute = precompressedRoute(config, route);
+        if (!preloadFile(config, route)) {
+            preloadFile(config, "/" + config.getPage404());
+        }
+        if (sidecarRoute != null) {
+            preloadFile(config, sidecarRoute);
+        }
+    }
+
+    /**
+     * Reads a file into the cache unless it is cached already or too large for the heap tier.
+     *
+     * @param config the server configuration containing document root and mapping threshold
+     * @param route  the route of the file (relative)
+     * @return {@code false} if the file does not exist
+     */
+    private static boolean preloadFile(ServerConfig config, String route) {
+        String path = resolvePath(config, route);
+        if (CacheManagerSingleton.getInstance().contains(path)) return true;
+        BasicFileAttributes attributes = attributesOf(config, route);
+        if (attributes == null) return false;
+        if (attributes.size() < config.getMmapThreshold()) {
+            CacheEntry entry = readFromDisk(path);
+            if (entry != null) entry.release();
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the content of a cached file encoded with a content coding, compressing it on first use.
+     * <p>
+     * The variant is cached next to the file, under the file path prefixed with the coding, so that
+     * repeat requests do not compress again. Its entity tag is the file's tag suffixed with the coding;
+     * a cached variant whose tag does not match the current file entry is stale and is replaced.
+     *
+     * @param config   the server configuration containing document root and default file info
+     * @param route    the requested route or file path (relative)
+     * @param identity the cache entry of the file, as returned by {@link #readEntry(ServerConfig, String)}
+     * @param encoding the content coding to apply
+     * @return the cache entry of the encoded variant, to be released like one returned by
+     *         {@link #readEntry(ServerConfig, String)}
+     */
+    public static CacheEntry readVariant(ServerConfig config, String route, CacheEntry identity, ContentEncoding encoding) {
+        String key = variantKey(encoding, resolvePath(config, route));
+        String eTag = CacheEntry.variantETag(identity.getETag(), encoding.getToken());
+        CacheManager cacheManager = CacheManagerSingleton.getInstance();
+
+        CacheEntry cachedVariant = cacheManager.readEntryFromCache(key);
+        if (cachedVariant != null && cachedVariant.getETag().equals(eTag) && cachedVariant.retain()) {
+            return cachedVariant;
+        }
+
+        CacheEntry variant = new CacheEntry(encoding.encode(identity.getContent()), identity.getLastModified(), eTag);
+        cacheManager.writeToCache(key, variant);
+        logMessageStatic(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Compressed and cached: " + key));
+        return variant;
+    }
+
+    /**
+     * Returns the key under which an encoded variant of a file is cached: the file path prefixed with the coding.
+     *
+     * @param encoding the content coding
+     * @param path     the fully resolved file system path
+     * @return the cache key of the variant
+     */
+    static String variantKey(ContentEncoding encoding, String path) {
+        return encoding.getToken() + ":" + path;
+    }
 
     /**
      * Executes the file read operation in a thread-safe, cache-aware manner.
@@ -61,38 +281,62 @@ public class FileService extends Thread implements LogProducer {
      */
     @Override
     public void run() {
-        CacheManager cacheManager = CacheManagerSingleton.getInstance();
-
-        byte[] cachedContent = cacheManager.readFromCache(path);
+        byte[] cachedContent = CacheManagerSingleton.getInstance().readFromCache(path);
         if (cachedContent != null) {
             content = cachedContent;
             logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Served from cache: " + path));
             return;
         }
+        CacheEntry entry = readFromDisk(path);
+        content = (entry == null) ? new byte[0] : entry.getContent();
+        if (entry != null) entry.release();
+    }
+
+    /**
+     * Reads a file from disk under its {@link FileMonitor} lock and stores it in the cache.
+     * <p>
+     * The cache is checked a second time once the lock is held, since another thread may have
+     * filled it while this one was waiting.
+     *
+     * @param path the fully resolved file system path
+     * @return the cache entry holding the file content, retained for the caller, or {@code null} if
+     *         the file could not be read
+     */
+    private static CacheEntry readFromDisk(String path) {
+        CacheManager cacheManager = CacheManagerSingleton.getInstance();
 
         fileMonitor.lockFile(path);
         try {
             // 2nd check: maybe another thread wrote to cache while we were waiting for the lock
-            cachedContent = cacheManager.readFromCache(path);
-            if (cachedContent != null) {
-                content = cachedContent;
-                logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Served from cache (after lock): " + path));
-                return;
+            CacheEntry cachedEntry = cacheManager.peekEntry(path);
+            if (cachedEntry != null && cachedEntry.retain()) {
+                logMessageStatic(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Served from cache (after lock): " + path));
+                return cachedEntry;
             }
 
-            content = Files.readAllBytes(Paths.get(path));
-            cacheManager.writeToCache(path, content);
-            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Read from disk and cached: " + path));
-
+            long lastModified = Files.getLastModifiedTime(Paths.get(path)).toMillis();
+            byte[] content = Files.readAllBytes(Paths.get(path));
+            CacheEntry entry = cacheManager.writeToCache(path, content, lastModified);
+            logMessageStatic(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Read from disk and cached: " + path));
+            return entry;
         } catch (IOException e) {
-            content = new byte[0];
-            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error reading file: " + e.getMessage()));
+            logMessageStatic(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error reading file: " + e.getMessage()));
+            return null;
         } finally {
-            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Done Reading File: " + path));
+            logMessageStatic(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Done Reading File: " + path));
             fileMonitor.unlockFile(path);
         }
     }
 
+    /**
+     * Submits a logging task from a static context.
+     *
+     * @param task the {@link LoggingTask} to be enqueued for asynchronous logging
+     */
+    private static void logMessageStatic(LoggingTask task) {
+        buffer.add(task);
+    }
+
     /**
      * Returns the content read from the file.
      *
@@ -2,8 +2,17 @@ package utils;
 
 import logging.LogProducer;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * A thread that builds standard HTTP response headers.
@@ -11,8 +20,20 @@ import java.util.Date;
  * The {@code HeaderBuilder} prepares static headers such as {@code Content-Type}, {@code Server},
  * and the current {@code Date}, following basic HTTP formatting.
  * The result is stored internally and can be retrieved using {@link #getHeader()}.
+ * The same headers can be built on the calling thread through {@link #build()}.
+ * <p>
+ * The {@code Content-Type} and {@code Server} lines of every known media type are encoded once;
+ * {@link #write(OutputStream, String)} sends them, followed by the bytes of the {@code Date} line
+ * kept by the {@link DateClock}, without formatting or encoding anything per response.
  */
 public class HeaderBuilder extends Thread implements LogProducer {
+    /** Format of HTTP dates ({@code IMF-fixdate}), as used by {@code Last-Modified}. */
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+    /** The {@code Server} header line. */
+    private static final String SERVER = "Server: pa-web-server\r\n";
+    /** The bytes of the {@code Content-Type} and {@code Server} lines, by media type of {@link MimeTypes}. */
+    private static final Map<String, byte[]> FIXED_HEADERS = encodeFixedHeaders();
+
     /** A builder used to construct the HTTP response headers. */
     private final StringBuilder headerBuilder = new StringBuilder();
 
@@ -28,11 +49,99 @@ public class HeaderBuilder extends Thread implements LogProducer {
      */
     @Override
     public void run() {
-        headerBuilder.append("Content-Type: text/html\r\n");
-        headerBuilder.append("Server: pa-web-server\r\n");
-        headerBuilder.append("Date: ");
-        headerBuilder.append(new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z").format(new Date()));
-        headerBuilder.append("\r\n");
+        headerBuilder.append(build());
+    }
+
+    /**
+     * Builds the standard HTTP headers on the calling thread.
+     *
+     * @return the formatted HTTP header block
+     * @see #run()
+     */
+    public static String build() {
+        return build("text/html");
+    }
+
+    /**
+     * Builds the standard HTTP headers on the calling thread, with the given content type.
+     *
+     * @param contentType the value of the {@code Content-Type} header
+     * @return the formatted HTTP header block
+     */
+    public static String build(String contentType) {
+        return buildFixed(contentType) + buildDate();
+    }
+
+    /**
+     * Builds the standard headers that do not change over time ({@code Content-Type} and {@code Server}),
+     * for responses serialized once and reused.
+     *
+     * @param contentType the value of the {@code Content-Type} header
+     * @return the formatted header lines
+     */
+    public static String buildFixed(String contentType) {
+        return "Content-Type: " + contentType + "\r\n" + SERVER;
+    }
+
+    /**
+     * Writes the standard HTTP headers with the given content type, as {@link #build(String)} would
+     * build them. For a media type of {@link MimeTypes} the bytes are written as they were encoded
+     * once; any other content type is formatted.
+     *
+     * @param out         the stream of the response
+     * @param contentType the value of the {@code Content-Type} header
+     * @throws IOException if writing to the stream fails
+     */
+    public static void write(OutputStream out, String contentType) throws IOException {
+        byte[] fixed = FIXED_HEADERS.get(contentType);
+        out.write(fixed != null ? fixed : buildFixed(contentType).getBytes(StandardCharsets.US_ASCII));
+        out.write(DateClock.headerBytes());
+    }
+
+    /**
+     * Returns the {@code Date} header for the current time, as formatted by the {@link DateClock}.
+     *
+     * @return the formatted header line
+     */
+    public static String buildDate() {
+        return DateClock.header();
+    }
+
+    /**
+     * Encodes the {@code Content-Type} and {@code Server} lines of every media type of {@link MimeTypes}.
+     *
+     * @return the bytes of the header lines, by media type
+     */
+    private static Map<String, byte[]> encodeFixedHeaders() {
+        Map<String, byte[]> headers = new HashMap<>();
+        for (String type : MimeTypes.all()) {
+            headers.put(type, buildFixed(type).getBytes(StandardCharsets.US_ASCII));
+        }
+        return Map.copyOf(headers);
+    }
+
+    /**
+     * Formats a point in time as an HTTP date, e.g. {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+     *
+     * @param millis the time, in milliseconds since the epoch
+     * @return the formatted date
+     */
+    public static String formatDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Parses an HTTP date, as sent in {@code If-Modified-Since} or {@code If-Range}.
+     *
+     * @param value the header value
+     * @return the time in seconds since the epoch, or {@code -1} if the value is not a valid date
+     */
+    public static long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
     }
 
     /**
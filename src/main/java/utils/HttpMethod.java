@@ -0,0 +1,52 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents the HTTP request methods recognized by the request parser.
+ * <p>
+ * Methods are matched directly against the bytes of the request line, so recognizing a method
+ * never allocates a {@code String}. Tokens that are not a standard method map to {@link #Other}.
+ */
+public enum HttpMethod {
+    Get("GET"),
+    Head("HEAD"),
+    Post("POST"),
+    Put("PUT"),
+    Delete("DELETE"),
+    Connect("CONNECT"),
+    Options("OPTIONS"),
+    Trace("TRACE"),
+    Patch("PATCH"),
+    /** Any method token not listed above. */
+    Other("");
+
+    /** Values searched by {@link #of(byte[], int, int)}, cached to avoid cloning {@link #values()}. */
+    private static final HttpMethod[] KNOWN = values();
+
+    /** The method token as sent on the wire. */
+    private final byte[] token;
+
+    HttpMethod(String token) {
+        this.token = token.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Looks up the method whose token equals the given bytes (case-sensitive, as required by HTTP).
+     *
+     * @param data   the bytes holding the token
+     * @param offset the index of the first byte of the token
+     * @param length the length of the token
+     * @return the matching method, or {@link #Other} if the token is not a standard method
+     */
+    public static HttpMethod of(byte[] data, int offset, int length) {
+        for (HttpMethod method : KNOWN) {
+            byte[] token = method.token;
+            if (token.length != length || method == Other) continue;
+            int i = 0;
+            while (i < length && data[offset + i] == token[i]) i++;
+            if (i == length) return method;
+        }
+        return Other;
+    }
+}
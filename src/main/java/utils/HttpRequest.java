@@ -0,0 +1,225 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A parsed HTTP request header block, as produced by {@link HttpRequestParser}.
+ * <p>
+ * The request keeps the raw bytes of its header block together with the offsets of the method,
+ * target, version and of every header name and value. Nothing is decoded while parsing: header
+ * lookups compare bytes in place, and a {@code String} is only created when a caller asks for one
+ * (for example {@link #getPath()} or {@link #getHeader(String)}).
+ * <p>
+ * The header block is copied once out of the connection's read buffer, so a request stays valid
+ * after that buffer has been compacted or reused for the next request.
+ */
+public class HttpRequest {
+    /** Number of offsets stored per header: name start, name end, value start, value end. */
+    private static final int HEADER_SLOTS = 4;
+
+    /** The raw bytes of the header block. */
+    byte[] data = new byte[0];
+    /** Number of valid bytes in {@link #data}. */
+    int length;
+    /** Index just past the request line, excluding its line terminator. */
+    int requestLineEnd;
+    /** The request method. */
+    HttpMethod method;
+    /** Index of the first byte of the request target. */
+    int pathStart;
+    /** Index just past the last byte of the request target. */
+    int pathEnd;
+    /** Major HTTP version number. */
+    int majorVersion;
+    /** Minor HTTP version number. */
+    int minorVersion;
+    /** Offsets of the header names and values, {@link #HEADER_SLOTS} per header. */
+    int[] headers = new int[16 * HEADER_SLOTS];
+    /** Number of headers parsed. */
+    int headerCount;
+    /** The request target, decoded on first use. */
+    private String path;
+
+    /**
+     * Copies a complete header block out of the read buffer and clears the previous parse results.
+     *
+     * @param buffer the buffer holding the header block
+     * @param offset the absolute index of the first byte of the block
+     * @param length the length of the block
+     */
+    void load(ByteBuffer buffer, int offset, int length) {
+        if (data.length < length) {
+            data = new byte[length];
+        }
+        buffer.get(offset, data, 0, length);
+        this.length = length;
+        this.headerCount = 0;
+        this.path = null;
+    }
+
+    /**
+     * Records the offsets of a header field.
+     *
+     * @param nameStart  index of the first byte of the name
+     * @param nameEnd    index just past the name
+     * @param valueStart index of the first byte of the value
+     * @param valueEnd   index just past the value
+     */
+    void addHeader(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int slot = headerCount * HEADER_SLOTS;
+        if (slot + HEADER_SLOTS > headers.length) {
+            int[] grown = new int[headers.length * 2];
+            System.arraycopy(headers, 0, grown, 0, headers.length);
+            headers = grown;
+        }
+        headers[slot] = nameStart;
+        headers[slot + 1] = nameEnd;
+        headers[slot + 2] = valueStart;
+        headers[slot + 3] = valueEnd;
+        headerCount++;
+    }
+
+    /**
+     * Returns the request method.
+     *
+     * @return the method, {@link HttpMethod#Other} for non-standard methods
+     */
+    public HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the request target (e.g. {@code "/index.html"}).
+     *
+     * @return the request target as sent by the client
+     */
+    public String getPath() {
+        if (path == null) {
+            path = new String(data, pathStart, pathEnd - pathStart, StandardCharsets.ISO_8859_1);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the major HTTP version number (the {@code 1} of {@code HTTP/1.1}).
+     *
+     * @return the major version
+     */
+    public int getMajorVersion() {
+        return majorVersion;
+    }
+
+    /**
+     * Returns the minor HTTP version number (the second {@code 1} of {@code HTTP/1.1}).
+     *
+     * @return the minor version
+     */
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    /**
+     * Returns the number of header fields in the request.
+     *
+     * @return the header count
+     */
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    /**
+     * Returns the value of the first header with the given name.
+     *
+     * @param name the header name, matched case-insensitively
+     * @return the header value without surrounding whitespace, or {@code null} if absent
+     */
+    public String getHeader(String name) {
+        for (int i = 0; i < headerCount; i++) {
+            int slot = i * HEADER_SLOTS;
+            if (regionEqualsIgnoreCase(headers[slot], headers[slot + 1], name)) {
+                return new String(data, headers[slot + 2], headers[slot + 3] - headers[slot + 2], StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a header with the given name has the given value, without creating any string.
+     *
+     * @param name  the header name, matched case-insensitively
+     * @param value the expected value, matched case-insensitively
+     * @return {@code true} if any header with that name carries that value
+     */
+    public boolean hasHeaderValue(String name, String value) {
+        for (int i = 0; i < headerCount; i++) {
+            int slot = i * HEADER_SLOTS;
+            if (regionEqualsIgnoreCase(headers[slot], headers[slot + 1], name)
+                    && regionEqualsIgnoreCase(headers[slot + 2], headers[slot + 3], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines whether the client asked for the connection to be kept open.
+     * <p>
+     * HTTP/1.1 connections are persistent unless {@code Connection: close} is sent;
+     * HTTP/1.0 connections are only persistent with {@code Connection: keep-alive}.
+     *
+     * @return {@code true} if the client expects the connection to stay open
+     */
+    public boolean isKeepAlive() {
+        if (hasHeaderValue("Connection", "close")) return false;
+        if (hasHeaderValue("Connection", "keep-alive")) return true;
+        return majorVersion > 1 || (majorVersion == 1 && minorVersion >= 1);
+    }
+
+    /**
+     * Returns the request line (e.g. {@code "GET /index.html HTTP/1.1"}).
+     *
+     * @return the request line without its line terminator
+     */
+    public String getRequestLine() {
+        return new String(data, 0, requestLineEnd, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the raw header block, including its terminating empty line.
+     *
+     * @return the header block as text
+     */
+    @Override
+    public String toString() {
+        return new String(data, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Compares a region of the header block with an ASCII string, ignoring case.
+     *
+     * @param start    index of the first byte of the region
+     * @param end      index just past the region
+     * @param expected the string to compare with
+     * @return {@code true} if the region equals {@code expected}
+     */
+    private boolean regionEqualsIgnoreCase(int start, int end, String expected) {
+        if (end - start != expected.length()) return false;
+        for (int i = start; i < end; i++) {
+            int a = data[i] & 0xFF;
+            int b = expected.charAt(i - start);
+            if (a != b && toLowerAscii(a) != toLowerAscii(b)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lower-cases an ASCII letter, leaving any other character unchanged.
+     *
+     * @param c the character
+     * @return the lower-case character
+     */
+    private static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
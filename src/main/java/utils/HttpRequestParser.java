@@ -0,0 +1,209 @@
+package utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A byte-level HTTP/1.x request header parser working directly on a connection's read buffer.
+ * <p>
+ * {@link #parse(ByteBuffer, HttpRequest)} scans the readable bytes of the buffer for a complete
+ * header block. While the block is still incomplete nothing is consumed, so the caller simply reads
+ * more bytes into the same buffer and parses again. Once complete, the block is copied into the
+ * {@link HttpRequest} and the buffer position is moved past it, leaving any pipelined bytes that
+ * follow in place.
+ * <p>
+ * The request line and the whole header block are bounded; a client exceeding either limit gets
+ * {@link Status#TooLarge} as soon as the limit is crossed, without more bytes being buffered.
+ * The parser holds no per-request state and can be shared between threads.
+ */
+public class HttpRequestParser {
+    /** Maximum number of header fields accepted in a request. */
+    private static final int MAX_HEADERS = 100;
+
+    /** Outcome of a {@link #parse(ByteBuffer, HttpRequest)} call. */
+    public enum Status {
+        /** The header block is not complete yet; more bytes are needed. */
+        Incomplete,
+        /** A request was parsed and consumed from the buffer. */
+        Complete,
+        /** The request is malformed. */
+        Invalid,
+        /** The request line, header block or header count exceeds its limit. */
+        TooLarge
+    }
+
+    /** Maximum size, in bytes, of the request line. */
+    private final int maxRequestLineSize;
+    /** Maximum size, in bytes, of the whole header block. */
+    private final int maxHeaderSize;
+
+    /**
+     * Constructs a parser with the given limits.
+     *
+     * @param maxRequestLineSize maximum size, in bytes, of the request line
+     * @param maxHeaderSize      maximum size, in bytes, of the whole header block
+     */
+    public HttpRequestParser(int maxRequestLineSize, int maxHeaderSize) {
+        this.maxRequestLineSize = maxRequestLineSize;
+        this.maxHeaderSize = maxHeaderSize;
+    }
+
+    /**
+     * Returns the maximum size of a header block, which is also the smallest read buffer able to hold any accepted request.
+     *
+     * @return the maximum header block size, in bytes
+     */
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /**
+     * Parses the next request from the readable bytes of {@code buffer} (between its position and limit).
+     * <p>
+     * Empty lines preceding a request line are skipped. On {@link Status#Complete} the buffer position
+     * is advanced past the header block; on {@link Status#Incomplete} it is left at the start of the
+     * request. After {@link Status#Invalid} or {@link Status#TooLarge} the connection cannot be resynchronized
+     * and should be closed once the error has been answered.
+     *
+     * @param buffer  the buffer holding the received bytes, in read mode
+     * @param request the request to fill in
+     * @return the outcome of the parse
+     */
+    public Status parse(ByteBuffer buffer, HttpRequest request) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        while (start < limit && (buffer.get(start) == '\r' || buffer.get(start) == '\n')) {
+            start++;
+        }
+        buffer.position(start);
+
+        int lineEnd = indexOfLineFeed(buffer, start, Math.min(limit, start + maxRequestLineSize));
+        if (lineEnd < 0) {
+            return limit - start >= maxRequestLineSize ? Status.TooLarge : Status.Incomplete;
+        }
+
+        int scanLimit = Math.min(limit, start + maxHeaderSize);
+        int end = -1;
+        int lineStart = lineEnd + 1;
+        while (lineStart < scanLimit) {
+            int lf = indexOfLineFeed(buffer, lineStart, scanLimit);
+            if (lf < 0) break;
+            if (lf == lineStart || (lf == lineStart + 1 && buffer.get(lineStart) == '\r')) {
+                end = lf + 1;
+                break;
+            }
+            lineStart = lf + 1;
+        }
+        if (end < 0) {
+            return limit - start >= maxHeaderSize ? Status.TooLarge : Status.Incomplete;
+        }
+
+        request.load(buffer, start, end - start);
+        buffer.position(end);
+        return parseHeaderBlock(request);
+    }
+
+    /**
+     * Parses the request line and header fields of a complete header block held by the request.
+     *
+     * @param request the request holding the raw header block
+     * @return {@link Status#Complete}, or the reason the block was rejected
+     */
+    private Status parseHeaderBlock(HttpRequest request) {
+        byte[] data = request.data;
+        int lineEnd = indexOf(data, (byte) '\n', 0, request.length);
+        int next = lineEnd + 1;
+        if (lineEnd > 0 && data[lineEnd - 1] == '\r') lineEnd--;
+        request.requestLineEnd = lineEnd;
+
+        int methodEnd = indexOf(data, (byte) ' ', 0, lineEnd);
+        if (methodEnd <= 0) return Status.Invalid;
+        request.method = HttpMethod.of(data, 0, methodEnd);
+
+        int pathStart = methodEnd + 1;
+        int pathEnd = indexOf(data, (byte) ' ', pathStart, lineEnd);
+        if (pathEnd <= pathStart) return Status.Invalid;
+        request.pathStart = pathStart;
+        request.pathEnd = pathEnd;
+
+        if (!parseVersion(request, pathEnd + 1, lineEnd)) return Status.Invalid;
+
+        while (true) {
+            int headerEnd = indexOf(data, (byte) '\n', next, request.length);
+            int lineStart = next;
+            next = headerEnd + 1;
+            if (headerEnd > lineStart && data[headerEnd - 1] == '\r') headerEnd--;
+            if (headerEnd == lineStart) return Status.Complete; //Empty line: end of the header block
+
+            if (request.headerCount == MAX_HEADERS) return Status.TooLarge;
+            int colon = indexOf(data, (byte) ':', lineStart, headerEnd);
+            if (colon <= lineStart || isWhitespace(data[colon - 1]) || isWhitespace(data[lineStart])) {
+                return Status.Invalid;
+            }
+            int valueStart = colon + 1;
+            int valueEnd = headerEnd;
+            while (valueStart < valueEnd && isWhitespace(data[valueStart])) valueStart++;
+            while (valueEnd > valueStart && isWhitespace(data[valueEnd - 1])) valueEnd--;
+            request.addHeader(lineStart, colon, valueStart, valueEnd);
+        }
+    }
+
+    /**
+     * Parses an {@code HTTP/x.y} version token.
+     *
+     * @param request the request to store the version in
+     * @param start   index of the first byte of the token
+     * @param end     index just past the token
+     * @return {@code true} if the token is a valid version
+     */
+    private static boolean parseVersion(HttpRequest request, int start, int end) {
+        byte[] data = request.data;
+        if (end - start != 8
+                || data[start] != 'H' || data[start + 1] != 'T' || data[start + 2] != 'T' || data[start + 3] != 'P'
+                || data[start + 4] != '/' || data[start + 6] != '.'
+                || !isDigit(data[start + 5]) || !isDigit(data[start + 7])) {
+            return false;
+        }
+        request.majorVersion = data[start + 5] - '0';
+        request.minorVersion = data[start + 7] - '0';
+        return true;
+    }
+
+    /**
+     * Finds the first line feed in a range of the buffer.
+     *
+     * @param buffer the buffer to scan
+     * @param from   the first absolute index to check
+     * @param to     the index to stop at (exclusive)
+     * @return the index of the line feed, or {@code -1} if none
+     */
+    private static int indexOfLineFeed(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first occurrence of a byte in a range of an array.
+     *
+     * @param data  the array to scan
+     * @param value the byte to find
+     * @param from  the first index to check
+     * @param to    the index to stop at (exclusive)
+     * @return the index of the byte, or {@code -1} if none
+     */
+    private static int indexOf(byte[] data, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
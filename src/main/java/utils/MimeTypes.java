@@ -0,0 +1,92 @@
+package utils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maps file names to the media type sent in {@code Content-Type}, by extension.
+ * <p>
+ * It also tells which media types are text-like and worth compressing; already compressed formats
+ * (images, fonts, archives, media) are sent as is.
+ */
+public final class MimeTypes {
+    /** Media type of files whose extension is unknown. */
+    public static final String DEFAULT = "application/octet-stream";
+
+    /** Media types by lower-case file extension. */
+    private static final Map<String, String> TYPES = Map.ofEntries(
+            Map.entry("html", "text/html"),
+            Map.entry("htm", "text/html"),
+            Map.entry("css", "text/css"),
+            Map.entry("js", "text/javascript"),
+            Map.entry("mjs", "text/javascript"),
+            Map.entry("txt", "text/plain"),
+            Map.entry("csv", "text/csv"),
+            Map.entry("md", "text/markdown"),
+            Map.entry("json", "application/json"),
+            Map.entry("xml", "application/xml"),
+            Map.entry("wasm", "application/wasm"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("zip", "application/zip"),
+            Map.entry("gz", "application/gzip"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("avif", "image/avif"),
+            Map.entry("ico", "image/x-icon"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2"),
+            Map.entry("ttf", "font/ttf"),
+            Map.entry("mp3", "audio/mpeg"),
+            Map.entry("mp4", "video/mp4"),
+            Map.entry("webm", "video/webm")
+    );
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private MimeTypes() {
+    }
+
+    /**
+     * Returns the media type of a file, from its extension.
+     *
+     * @param path the file path or name
+     * @return the media type, or {@value #DEFAULT} if the extension is unknown
+     */
+    public static String of(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) return DEFAULT;
+        return TYPES.getOrDefault(path.substring(dot + 1).toLowerCase(), DEFAULT);
+    }
+
+    /**
+     * Returns every media type this table can return, for precomputing per-type headers.
+     *
+     * @return the distinct media types, including {@value #DEFAULT}
+     */
+    public static Collection<String> all() {
+        Set<String> types = new TreeSet<>(TYPES.values());
+        types.add(DEFAULT);
+        return types;
+    }
+
+    /**
+     * Tells whether content of a media type shrinks enough under gzip or deflate to be worth compressing.
+     *
+     * @param mediaType the media type
+     * @return {@code true} for text-like types
+     */
+    public static boolean isCompressible(String mediaType) {
+        return mediaType.startsWith("text/")
+                || mediaType.equals("application/json")
+                || mediaType.equals("application/xml")
+                || mediaType.equals("application/wasm")
+                || mediaType.equals("image/svg+xml");
+    }
+}
@@ -0,0 +1,106 @@
+package utils;
+
+import logging.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Index of the precompressed sidecar files of the document root, such as {@code app.js.gz} next to {@code app.js}.
+ * <p>
+ * Sidecars produced by a build pipeline are usually compressed at the maximum ratio, which would be
+ * too slow to do per request. Serving them to clients that accept gzip costs no CPU at all. The
+ * index is filled by a {@link #scan()} at startup and kept up to date as a {@link FileChangeListener}
+ * of a {@link DocumentRootWatcher}, so a request never has to check the disk for a sidecar.
+ */
+public class PrecompressedIndex implements FileChangeListener, LogProducer {
+    /** File name suffix of gzip sidecars. */
+    public static final String SUFFIX = ".gz";
+
+    /** The indexed document root. */
+    private final Path root;
+    /** The normalized absolute paths of the sidecars found. */
+    private final Set<Path> sidecars = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructs an empty index of the given document root.
+     *
+     * @param root the document root
+     */
+    public PrecompressedIndex(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Walks the document root and indexes every sidecar found, dropping those that no longer exist.
+     */
+    public void scan() {
+        sidecars.removeIf(sidecar -> !Files.isRegularFile(sidecar));
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(PrecompressedIndex::isSidecar)
+                    .filter(Files::isRegularFile)
+                    .forEach(sidecar -> sidecars.add(normalize(sidecar)));
+            logMessage(new LoggingTask(LogType.Info, LogLocation.ConsoleOut, "Precompressed files indexed: " + sidecars.size()));
+        } catch (IOException | RuntimeException e) {
+            logMessage(new LoggingTask(LogType.Error, LogLocation.ConsoleErr, "Error indexing precompressed files: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Tells whether a sidecar is indexed.
+     *
+     * @param sidecar the path of the sidecar
+     * @return {@code true} if the sidecar exists in the document root
+     */
+    public boolean contains(Path sidecar) {
+        return sidecars.contains(normalize(sidecar));
+    }
+
+    /**
+     * Adds or removes a changed sidecar. When a directory is deleted, the sidecars it held are removed.
+     *
+     * @param path the absolute path of the file or directory that changed
+     */
+    @Override
+    public void fileChanged(Path path) {
+        Path changed = normalize(path);
+        if (isSidecar(changed) && Files.isRegularFile(changed)) {
+            sidecars.add(changed);
+        } else if (!Files.exists(changed)) {
+            sidecars.removeIf(sidecar -> sidecar.startsWith(changed));
+        }
+    }
+
+    /**
+     * Rebuilds the index after changes may have been missed.
+     */
+    @Override
+    public void changesLost() {
+        scan();
+    }
+
+    /**
+     * Tells whether a file name has the sidecar suffix.
+     *
+     * @param path the path of the file
+     * @return {@code true} for a {@code .gz} file
+     */
+    private static boolean isSidecar(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Normalizes a path so that the same file is always indexed and looked up under the same key.
+     *
+     * @param path the path
+     * @return the absolute, normalized path
+     */
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
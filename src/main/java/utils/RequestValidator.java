@@ -5,11 +5,13 @@ import logging.LogProducer;
 /**
  * A thread that validates the structure of an incoming HTTP request.
  * <p>
- * The {@code RequestValidator} checks whether the request is a well-formed HTTP GET request.
+ * The {@code RequestValidator} checks whether the request is a well-formed HTTP GET or HEAD request.
  * The result of the validation can be retrieved using {@link #getIsValidRequest()}.
  * <p>
  * This class is designed to be used in parallel with other request-processing components
- * as part of a parbegin-parend concurrency pattern.
+ * as part of a parbegin-parend concurrency pattern. When no thread is needed, the same check
+ * is available inline through {@link #isValid(String)}, or {@link #isValid(HttpRequest)} for a
+ * request that has already been parsed.
  */
 public class RequestValidator extends Thread implements LogProducer {
     /** The raw HTTP request string. */
@@ -29,12 +31,42 @@ public class RequestValidator extends Thread implements LogProducer {
     /**
      * Validates the request format when the thread is executed.
      * <p>
-     * The request is considered valid if it starts with {@code GET}
+     * The request is considered valid if it starts with {@code GET} or {@code HEAD}
      * and contains at least two tokens (method and route).
      */
     @Override
     public void run() {
-        isValidRequest = request.startsWith("GET") && request.split(" ").length >= 2;
+        isValidRequest = isValid(request);
+    }
+
+    /**
+     * Validates the request format on the calling thread.
+     * <p>
+     * The request is considered valid if it starts with {@code GET} or {@code HEAD}
+     * and contains at least two tokens (method and route).
+     *
+     * @param request the raw HTTP request string to validate
+     * @return {@code true} if the request is valid; {@code false} otherwise
+     */
+    public static boolean isValid(String request) {
+        if (!request.startsWith("GET") && !request.startsWith("HEAD")) return false;
+        for (int i = request.indexOf(' ') + 1; i > 0 && i < request.length(); i++) {
+            if (request.charAt(i) != ' ') return true; //A second token follows the method
+        }
+        return false;
+    }
+
+    /**
+     * Validates an already parsed request on the calling thread.
+     * <p>
+     * A parsed request always has a method, a route and a version, so it is valid if its method is
+     * {@code GET} or {@code HEAD}.
+     *
+     * @param request the parsed HTTP request
+     * @return {@code true} if the request is valid; {@code false} otherwise
+     */
+    public static boolean isValid(HttpRequest request) {
+        return request.getMethod() == HttpMethod.Get || request.getMethod() == HttpMethod.Head;
     }
 
     /**
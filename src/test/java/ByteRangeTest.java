@@ -0,0 +1,40 @@
+import org.junit.jupiter.api.Test;
+import utils.ByteRange;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeTest {
+
+    @Test
+    void testParseSingleRanges() {
+        assertEquals(List.of(new ByteRange(0, 99)), ByteRange.parse("bytes=0-99", 1000));
+        assertEquals(List.of(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", 1000));
+        assertEquals(List.of(new ByteRange(990, 999)), ByteRange.parse("bytes=990-2000", 1000), "Range must be truncated to the size");
+        assertEquals(100, ByteRange.parse("bytes=0-99", 1000).get(0).length());
+    }
+
+    @Test
+    void testParseMultipleRanges() {
+        assertEquals(List.of(new ByteRange(0, 9), new ByteRange(20, 29)), ByteRange.parse("bytes=0-9, 20-29", 1000));
+        assertEquals(List.of(new ByteRange(0, 9)), ByteRange.parse("bytes=0-9,2000-3000", 1000), "Unsatisfiable ranges must be dropped");
+    }
+
+    @Test
+    void testUnsatisfiableRanges() {
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+    }
+
+    @Test
+    void testIgnoredHeaders() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-9", 1000));
+        assertNull(ByteRange.parse("bytes=9-0", 1000));
+        assertNull(ByteRange.parse("bytes=abc", 1000));
+        assertNull(ByteRange.parse("bytes=0-999,0-999", 1000), "Overlapping ranges larger than the file must be ignored");
+        assertNull(ByteRange.parse("bytes=" + "0-0,".repeat(17), 1000));
+    }
+}
@@ -0,0 +1,110 @@
+import Cache.CacheEntry;
+import Cache.CacheManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares the scaling of cache hits between the lock-free {@link CacheManager} read path and the
+ * reader-writer protocol it replaced (a fair lock around a reader count, and a fair semaphore taken
+ * by the first reader), with an increasing number of reader threads.
+ * <p>
+ * Skipped by default; run with {@code mvn test -Dtest=CacheBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CacheBenchmarkTest {
+    private static final int KEYS = 64;
+    private static final long DURATION_MILLIS = 1000;
+
+    @Test
+    public void compareLockFreeWithReaderWriterProtocol() throws InterruptedException {
+        CacheManager lockFree = new CacheManager();
+        ReaderWriterCache readerWriter = new ReaderWriterCache();
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "/bench/file" + i + ".html";
+            CacheEntry entry = new CacheEntry(("content " + i).getBytes());
+            lockFree.writeToCache(keys[i], entry);
+            readerWriter.put(keys[i], entry);
+        }
+
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double lockFreeOps = measure(threads, keys, lockFree::readEntryFromCache);
+            double readerWriterOps = measure(threads, keys, readerWriter::get);
+            System.out.printf("%2d readers: lock-free %.0f hits/s, reader-writer %.0f hits/s (x%.1f)%n",
+                    threads, lockFreeOps, readerWriterOps, lockFreeOps / readerWriterOps);
+        }
+    }
+
+    /**
+     * Reads entries from several threads for a fixed time.
+     *
+     * @return the number of reads per second over all threads
+     */
+    private double measure(int threads, String[] keys, Function<String, CacheEntry> read) throws InterruptedException {
+        LongAdder reads = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + DURATION_MILLIS * 1_000_000;
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            new Thread(() -> {
+                long count = 0;
+                int i = offset;
+                while (System.nanoTime() < end) {
+                    for (int batch = 0; batch < 256; batch++) {
+                        assertNotNull(read.apply(keys[i++ & (KEYS - 1)]));
+                    }
+                    count += 256;
+                }
+                reads.add(count);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        return reads.sum() * 1000.0 / DURATION_MILLIS;
+    }
+
+    /** The read path of the former {@code CacheManager}, kept here as the baseline. */
+    private static final class ReaderWriterCache {
+        private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+        private final Semaphore writeLock = new Semaphore(1, true);
+        private final Lock readLock = new ReentrantLock(true);
+        private int readerCount = 0;
+
+        void put(String path, CacheEntry entry) {
+            cache.put(path, entry);
+        }
+
+        CacheEntry get(String path) {
+            try {
+                readLock.lock();
+                readerCount++;
+                if (readerCount == 1) {
+                    writeLock.acquire();
+                }
+                readLock.unlock();
+                return cache.get(path);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                readLock.lock();
+                readerCount--;
+                if (readerCount == 0) {
+                    writeLock.release();
+                }
+                readLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import Cache.CacheManager;
+import config.ServerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.CacheInvalidator;
+import utils.DocumentRootWatcher;
+import utils.FileService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidatorTest {
+
+    private ServerConfig config;
+    private CacheManager cacheManager;
+    private Path file;
+    private String key;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new ServerConfig("src/test/java/resources/server.config");
+        cacheManager = new CacheManager();
+        file = Path.of(config.getDocumentRoot(), "invalidated.html");
+        Files.writeString(file, "<p>first</p>");
+        key = FileService.resolvePath(config, "/invalidated.html");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void shouldInvalidateChangedFileAndItsVariants() {
+        cacheManager.writeToCache(key, "<p>first</p>".getBytes(), 1L);
+        cacheManager.writeToCache("gzip:" + key, new byte[]{1}, 1L);
+        cacheManager.writeToCache(FileService.resolvePath(config, "/index.html"), "index".getBytes(), 1L);
+
+        new CacheInvalidator(config, cacheManager, Duration.ZERO).fileChanged(file);
+
+        assertFalse(cacheManager.contains(key));
+        assertFalse(cacheManager.contains("gzip:" + key));
+        assertTrue(cacheManager.contains(FileService.resolvePath(config, "/index.html")), "Other files must stay cached");
+    }
+
+    @Test
+    void shouldInvalidateDeletedFile() throws Exception {
+        cacheManager.writeToCache(key, "<p>first</p>".getBytes(), 1L);
+        Files.delete(file);
+
+        new CacheInvalidator(config, cacheManager, Duration.ZERO).fileChanged(file);
+
+        assertFalse(cacheManager.contains(key));
+    }
+
+    @Test
+    void shouldInvalidateDeletedFileByKeyWithoutScanningTheCache() throws Exception {
+        CacheManager spied = spy(new CacheManager());
+        spied.writeToCache(key, "<p>first</p>".getBytes(), 1L);
+        spied.writeToCache("gzip:" + key, new byte[]{1}, 1L);
+        CacheInvalidator invalidator = new CacheInvalidator(config, spied, Duration.ZERO);
+        Files.delete(file);
+
+        invalidator.fileChanged(file);
+
+        assertFalse(spied.contains(key));
+        assertFalse(spied.contains("gzip:" + key));
+        verify(spied, never()).invalidateIf(any());
+    }
+
+    @Test
+    void shouldInvalidateEverythingBelowDeletedDirectory() throws Exception {
+        Path directory = Path.of(config.getDocumentRoot(), "invalidated_dir");
+        Path nested = directory.resolve("nested.html");
+        Files.createDirectories(directory);
+        Files.writeString(nested, "<p>nested</p>");
+        String nestedKey = FileService.resolvePath(config, "/invalidated_dir/nested.html");
+        try {
+            cacheManager.writeToCache(nestedKey, "<p>nested</p>".getBytes(), 1L);
+            cacheManager.writeToCache(key, "<p>first</p>".getBytes(), 1L);
+            CacheInvalidator invalidator = new CacheInvalidator(config, cacheManager, Duration.ZERO);
+            Files.delete(nested);
+            Files.delete(directory);
+
+            invalidator.fileChanged(directory);
+
+            assertFalse(cacheManager.contains(nestedKey));
+            assertTrue(cacheManager.contains(key), "Files outside the directory must stay cached");
+        } finally {
+            Files.deleteIfExists(nested);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void shouldRevalidateAgainstTheDisk() throws Exception {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        cacheManager.writeToCache(key, "<p>first</p>".getBytes(), lastModified);
+        CacheInvalidator invalidator = new CacheInvalidator(config, cacheManager, Duration.ZERO);
+
+        invalidator.revalidate();
+        assertTrue(cacheManager.contains(key), "Unchanged file must stay cached");
+
+        Files.writeString(file, "<p>second, longer</p>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified + 1000));
+        invalidator.revalidate();
+        assertFalse(cacheManager.contains(key), "Modified file must be invalidated");
+    }
+
+    @Test
+    void shouldInvalidateFileModifiedUnderTheWatcher() throws Exception {
+        cacheManager.writeToCache(key, "<p>first</p>".getBytes(), Files.getLastModifiedTime(file).toMillis());
+        DocumentRootWatcher watcher = new DocumentRootWatcher(Path.of(config.getDocumentRoot()));
+        watcher.addListener(new CacheInvalidator(config, cacheManager, Duration.ZERO));
+        watcher.start();
+        try {
+            Files.writeString(file, "<p>second</p>");
+            assertTrue(TestUtils.await(() -> !cacheManager.contains(key)), "Modified file must be invalidated");
+        } finally {
+            watcher.interrupt();
+            watcher.join(5000);
+        }
+    }
+}
@@ -1,9 +1,9 @@
 import Cache.CacheEntry;
 import Cache.CacheManager;
 import Cache.CacheManagerSingleton;
+import Cache.CacheStats;
 import org.junit.jupiter.api.*;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,6 +40,167 @@ class CacheTest {
         assertArrayEquals(content, cachedContent);
     }
 
+    @Test
+    void testEntryCarriesValidators() {
+        String path = "/test/validators.txt";
+        byte[] content = "Tagged Content".getBytes();
+
+        CacheEntry entry = cacheManager.writeToCache(path, content, 1234L);
+
+        assertSame(entry, cacheManager.readEntryFromCache(path));
+        assertEquals(1234L, entry.getLastModified());
+        assertEquals(CacheEntry.computeETag(content), entry.getETag());
+        assertNotEquals(CacheEntry.computeETag("Other Content".getBytes()), entry.getETag());
+    }
+
+    @Test
+    void testWriteReplacesEntry() {
+        String path = "/test/replaced.txt";
+        CacheEntry first = cacheManager.writeToCache(path, "First".getBytes(), 1L);
+        CacheEntry second = cacheManager.writeToCache(path, "Second".getBytes(), 2L);
+
+        assertNotSame(first, second);
+        assertSame(second, cacheManager.readEntryFromCache(path));
+        assertTrue(cacheManager.contains(path));
+    }
+
+    @Test
+    void testCacheStaysWithinByteBudget() {
+        CacheManager budgeted = new CacheManager();
+        budgeted.setMaximumBytes(10_000);
+        for (int i = 0; i < 50; i++) {
+            budgeted.readEntryFromCache("/budget/" + i);
+            budgeted.writeToCache("/budget/" + i, new byte[1000]);
+        }
+
+        CacheStats stats = budgeted.getStats();
+        assertTrue(stats.weightedSize() <= 10_000);
+        assertEquals(10_000, stats.maximumBytes());
+        assertTrue(stats.evictionCount() >= 40);
+        assertEquals(stats.evictionCount() * 1000, stats.evictedBytes());
+    }
+
+    @Test
+    void testOneHitWondersDoNotFlushHotEntries() {
+        CacheManager budgeted = new CacheManager();
+        budgeted.setMaximumBytes(10_000);
+        for (int i = 0; i < 5; i++) {
+            budgeted.readEntryFromCache("/hot/" + i);
+            budgeted.writeToCache("/hot/" + i, new byte[1000]);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5; i++) {
+                assertNotNull(budgeted.readEntryFromCache("/hot/" + i));
+            }
+        }
+
+        //A crawler requesting many files once each
+        for (int i = 0; i < 200; i++) {
+            assertNull(budgeted.readEntryFromCache("/scan/" + i));
+            budgeted.writeToCache("/scan/" + i, new byte[1000]);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(budgeted.readEntryFromCache("/hot/" + i), "Hot entry " + i + " was evicted by the scan");
+        }
+        assertTrue(budgeted.getStats().weightedSize() <= 10_000);
+    }
+
+    @Test
+    void testHitsBufferedOnOtherThreadsReachThePolicy() throws InterruptedException {
+        CacheManager budgeted = new CacheManager();
+        budgeted.setMaximumBytes(10_000);
+        for (int i = 0; i < 5; i++) {
+            budgeted.readEntryFromCache("/hot/" + i);
+            budgeted.writeToCache("/hot/" + i, new byte[1000]);
+        }
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        for (int reader = 0; reader < 4; reader++) {
+            readers.submit(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (int i = 0; i < 5; i++) {
+                        budgeted.readEntryFromCache("/hot/" + i);
+                    }
+                }
+            });
+        }
+        readers.shutdown();
+        assertTrue(readers.awaitTermination(3, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 200; i++) {
+            budgeted.readEntryFromCache("/scan/" + i);
+            budgeted.writeToCache("/scan/" + i, new byte[1000]);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(budgeted.readEntryFromCache("/hot/" + i), "Hot entry " + i + " was evicted by the scan");
+        }
+    }
+
+    @Test
+    void testEntryLargerThanBudgetIsNotCached() {
+        CacheManager budgeted = new CacheManager();
+        budgeted.setMaximumBytes(100);
+
+        CacheEntry entry = budgeted.writeToCache("/large", new byte[1000], 1L);
+
+        assertNotNull(entry);
+        assertNull(budgeted.readEntryFromCache("/large"));
+        assertEquals(0, budgeted.getStats().weightedSize());
+    }
+
+    @Test
+    void testStatsReportHitRatio() {
+        CacheManager counted = new CacheManager();
+        counted.writeToCache("/stats", "content".getBytes());
+
+        counted.readEntryFromCache("/stats");
+        counted.readEntryFromCache("/stats");
+        counted.readEntryFromCache("/stats");
+        counted.readEntryFromCache("/missing");
+
+        CacheStats stats = counted.getStats();
+        assertEquals(3, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(0.75, stats.hitRatio(), 1e-9);
+    }
+
+    @Test
+    void testOffHeapEntryRoundTrip() {
+        CacheManager offHeap = new CacheManager();
+        offHeap.setOffHeap(true);
+        byte[] content = "Off-heap Content".getBytes();
+
+        offHeap.writeToCache("/offheap", content, 1234L);
+        CacheEntry entry = offHeap.readEntryFromCache("/offheap");
+
+        assertTrue(entry.isOffHeap());
+        assertTrue(entry.contentBuffer().isDirect());
+        assertEquals(content.length, entry.size());
+        assertArrayEquals(content, entry.getContent());
+        assertArrayEquals(content, offHeap.readFromCache("/offheap"));
+        assertEquals(CacheEntry.computeETag(content), entry.getETag());
+        assertEquals(1234L, entry.getLastModified());
+    }
+
+    @Test
+    void testOffHeapMemoryReclaimedOnlyAfterLastRelease() {
+        CacheManager offHeap = new CacheManager();
+        offHeap.setOffHeap(true);
+        int size = 2 * 1024 * 1024; //Larger than a slab: a dedicated buffer
+
+        offHeap.writeToCache("/large", new byte[size], 1L);
+        CacheEntry sending = offHeap.readEntryFromCache("/large");
+        assertTrue(sending.retain());
+        offHeap.writeToCache("/large", new byte[size], 2L);
+
+        assertEquals(2L * size, offHeap.getStats().offHeapBytes());
+        assertEquals(size, sending.contentBuffer().remaining());
+        sending.release();
+        assertEquals(size, offHeap.getStats().offHeapBytes());
+        assertFalse(sending.retain());
+    }
+
     @Test
     void testCacheExpiration() throws InterruptedException {
         String path = "/test/expire.txt";
@@ -53,6 +214,52 @@ class CacheTest {
         assertNull(cacheManager.readFromCache(path));
     }
 
+    @Test
+    void testExpiredEntryIsMissedBeforeItIsRemoved() throws InterruptedException {
+        CacheManager expiring = new CacheManager();
+        expiring.setExpirationTime(Duration.ofMillis(200));
+        expiring.writeToCache("/lazy", "Expiring Content".getBytes());
+
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertNotNull(expiring.readEntryFromCache("/lazy")); //A hit postpones expiry
+        TimeUnit.MILLISECONDS.sleep(150);
+        assertTrue(expiring.contains("/lazy"));
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertFalse(expiring.contains("/lazy"));
+        assertNull(expiring.readEntryFromCache("/lazy"));
+    }
+
+    @Test
+    void testExpiredEntryIsRemovedByTimerWheel() throws InterruptedException {
+        CacheManager expiring = new CacheManager();
+        expiring.setExpirationTime(Duration.ofSeconds(1));
+        expiring.start();
+        try {
+            expiring.writeToCache("/wheel", "Expiring Content".getBytes());
+            assertTrue(expiring.getStats().weightedSize() > 0);
+
+            TimeUnit.MILLISECONDS.sleep(3500); //Expired after 1 s, removed within about a second more
+
+            assertEquals(0, expiring.getStats().weightedSize());
+        } finally {
+            expiring.interrupt();
+        }
+    }
+
+    @Test
+    void testZeroExpirationKeepsEntries() throws InterruptedException {
+        CacheManager unexpiring = new CacheManager();
+        unexpiring.setExpirationTime(Duration.ZERO);
+        unexpiring.writeToCache("/kept", "Kept Content".getBytes());
+
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        assertNotNull(unexpiring.readEntryFromCache("/kept"));
+        unexpiring.invalidate("/kept");
+        assertNull(unexpiring.readEntryFromCache("/kept"));
+    }
+
     @Test
     void testConcurrentCacheAccess() throws InterruptedException {
         String path = "/test/concurrent.txt";
@@ -78,12 +285,12 @@ class CacheTest {
     @Test
     void testCacheEntryUpdatesLastUseTime() throws InterruptedException {
         CacheEntry entry = new CacheEntry("content".getBytes());
-        LocalDateTime originalTime = entry.getLastUseTime();
+        long originalTime = entry.getLastUseNanos();
 
         TimeUnit.MILLISECONDS.sleep(100);
         entry.getContent();
 
-        assertTrue(entry.getLastUseTime().isAfter(originalTime));
+        assertTrue(entry.getLastUseNanos() - originalTime >= TimeUnit.MILLISECONDS.toNanos(100));
     }
 
     @AfterAll
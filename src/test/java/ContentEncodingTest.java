@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Test;
+import utils.ContentEncoding;
+import utils.MimeTypes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentEncodingTest {
+
+    @Test
+    void shouldPreferGzipWhenBothAreAccepted() {
+        assertEquals(ContentEncoding.Gzip, ContentEncoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentEncoding.Gzip, ContentEncoding.negotiate("deflate, GZIP"));
+    }
+
+    @Test
+    void shouldHonourQualityValues() {
+        assertEquals(ContentEncoding.Deflate, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.Deflate, ContentEncoding.negotiate("gzip;q=0, *"));
+        assertNull(ContentEncoding.negotiate("gzip;q=0, deflate;q=0"));
+        assertNull(ContentEncoding.negotiate("*;q=0"));
+    }
+
+    @Test
+    void shouldTellWhetherACodingIsAccepted() {
+        assertTrue(ContentEncoding.Gzip.isAcceptedBy("deflate, gzip;q=0.1"));
+        assertTrue(ContentEncoding.Gzip.isAcceptedBy("*"));
+        assertFalse(ContentEncoding.Gzip.isAcceptedBy("gzip;q=0, *"));
+        assertFalse(ContentEncoding.Gzip.isAcceptedBy(null));
+    }
+
+    @Test
+    void shouldSendIdentityWhenNothingIsAccepted() {
+        assertNull(ContentEncoding.negotiate(null));
+        assertNull(ContentEncoding.negotiate("br, identity"));
+    }
+
+    @Test
+    void shouldRoundTripEncodedContent() throws IOException {
+        byte[] content = "<p>compress me</p>".repeat(50).getBytes();
+
+        byte[] gzip = ContentEncoding.Gzip.encode(content);
+        byte[] deflate = ContentEncoding.Deflate.encode(content);
+
+        assertTrue(gzip.length < content.length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(deflate))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void shouldMapExtensionsToMediaTypes() {
+        assertEquals("text/html", MimeTypes.of("/www/index.HTML"));
+        assertEquals("text/css", MimeTypes.of("style.css"));
+        assertEquals("image/png", MimeTypes.of("/img/logo.png"));
+        assertEquals(MimeTypes.DEFAULT, MimeTypes.of("/dir.d/README"));
+        assertTrue(MimeTypes.isCompressible("text/javascript"));
+        assertFalse(MimeTypes.isCompressible("image/png"));
+    }
+}
@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+import utils.DateClock;
+import utils.HeaderBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DateClockTest {
+
+    @Test
+    void shouldFormatAnImfFixdateHeader() {
+        assertTrue(DateClock.header().matches("Date: [A-Z][a-z]{2}, \\d{2} [A-Z][a-z]{2} \\d{4} \\d{2}:\\d{2}:\\d{2} GMT\r\n"),
+                "Date must be an IMF-fixdate in GMT: " + DateClock.header());
+    }
+
+    @Test
+    void shouldShareTheHeaderWithinASecond() {
+        AtomicLong now = new AtomicLong(784111777000L);
+        DateClock clock = new DateClock(now::get);
+
+        String first = clock.currentHeader();
+        now.set(784111777999L);
+        assertSame(first, clock.currentHeader(), "The same second must reuse the formatted header");
+        assertEquals("Date: Sun, 06 Nov 1994 08:49:37 GMT\r\n", first);
+
+        now.set(784111778000L);
+        assertEquals("Date: Sun, 06 Nov 1994 08:49:38 GMT\r\n", clock.currentHeader());
+    }
+
+    @Test
+    void shouldExposeTheHeaderBytesReadOnly() {
+        ByteBuffer bytes = DateClock.headerBuffer();
+        assertTrue(bytes.isReadOnly());
+        assertTrue(StandardCharsets.US_ASCII.decode(bytes).toString().startsWith("Date: "));
+    }
+
+    @Test
+    void shouldWriteTheEncodedHeaders() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HeaderBuilder.write(out, "text/css");
+        String written = out.toString(StandardCharsets.US_ASCII);
+
+        assertTrue(written.startsWith(HeaderBuilder.buildFixed("text/css")));
+        assertTrue(written.substring(HeaderBuilder.buildFixed("text/css").length()).matches("Date: .* GMT\r\n"), written);
+    }
+
+    @Test
+    void shouldFormatAndParseHttpDates() {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HeaderBuilder.formatDate(784111777000L));
+        assertEquals(784111777L, HeaderBuilder.parseDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals(-1, HeaderBuilder.parseDate("yesterday"));
+    }
+}
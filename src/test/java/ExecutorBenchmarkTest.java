@@ -0,0 +1,72 @@
+import core.TaskExecutor;
+import core.ThreadPool;
+import core.WorkStealingExecutor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the shared-queue {@link ThreadPool} with the {@link WorkStealingExecutor} under a high
+ * submission rate: several producer threads submit short tasks as fast as they can.
+ * <p>
+ * Skipped by default; run with {@code mvn test -Dtest=ExecutorBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ExecutorBenchmarkTest {
+    private static final int WORKERS = Runtime.getRuntime().availableProcessors();
+    private static final int PRODUCERS = 4;
+    private static final int TASKS_PER_PRODUCER = 500_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void compareSharedQueueWithWorkStealing() throws InterruptedException {
+        Supplier<TaskExecutor> sharedQueue = () -> new ThreadPool(WORKERS, 1 << 16, Duration.ZERO);
+        Supplier<TaskExecutor> workStealing = () -> new WorkStealingExecutor(WORKERS, 1 << 16, Duration.ZERO);
+
+        run(sharedQueue); //Warm-up
+        run(workStealing);
+        long sharedQueueNanos = Long.MAX_VALUE;
+        long workStealingNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            sharedQueueNanos = Math.min(sharedQueueNanos, run(sharedQueue));
+            workStealingNanos = Math.min(workStealingNanos, run(workStealing));
+        }
+        System.out.printf("%d workers, %d producers: shared queue %.0f tasks/s, work stealing %.0f tasks/s%n",
+                WORKERS, PRODUCERS, throughput(sharedQueueNanos), throughput(workStealingNanos));
+    }
+
+    /**
+     * Submits every task from the producer threads and waits until all have run.
+     *
+     * @return the elapsed time, in nanoseconds
+     */
+    private long run(Supplier<TaskExecutor> factory) throws InterruptedException {
+        TaskExecutor executor = factory.get();
+        CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS_PER_PRODUCER);
+        Runnable task = done::countDown;
+        Thread[] producers = new Thread[PRODUCERS];
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < TASKS_PER_PRODUCER; i++) {
+                    executor.execute(task);
+                }
+            });
+            producers[p].start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        return elapsed;
+    }
+
+    private static double throughput(long nanos) {
+        return PRODUCERS * (double) TASKS_PER_PRODUCER / (nanos / 1e9);
+    }
+}
@@ -1,3 +1,4 @@
+import Cache.CacheManagerSingleton;
 import config.ServerConfig;
 import logging.SharedBuffer;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,4 +68,53 @@ class FileServiceTest {
         assertEquals(0, result.length);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void testStaticRead_MatchesThreadRead() throws IOException {
+        byte[] expectedContent = Files.readAllBytes(Paths.get(config.getDocumentRoot() + File.separator + config.getDefaultPageFile()+ "." + config.getDefaultPageExtension()));
+
+        assertArrayEquals(expectedContent, FileService.read(config, "/"));
+        assertEquals(0, FileService.read(config, "non_existent_file.txt").length);
+    }
+
+    @Test
+    void testPreloadMakesRouteCached() throws IOException {
+        String route = "/preload_" + System.nanoTime() + ".html";
+        Path file = Paths.get(config.getDocumentRoot() + route);
+        Files.writeString(file, "<h1>preloaded</h1>");
+        try {
+            assertFalse(FileService.isCached(config, route));
+
+            FileService.preload(config, route);
+
+            assertTrue(FileService.isCached(config, route));
+            assertArrayEquals(Files.readAllBytes(file), FileService.read(config, route));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testPreloadOfMissingFileLoadsConfiguredNotFoundPage() throws IOException {
+        String page404 = "/" + config.getPage404();
+        Path file = Paths.get(config.getDocumentRoot() + page404);
+        Files.writeString(file, "<h1>not found</h1>");
+        try {
+            FileService.preload(config, "/missing_" + System.nanoTime() + ".html");
+
+            assertTrue(FileService.isCached(config, page404));
+        } finally {
+            Files.deleteIfExists(file);
+            CacheManagerSingleton.getInstance().invalidate(FileService.resolvePath(config, page404));
+        }
+    }
+
+    @Test
+    void testPreloadOfMissingFileLoadsNothing() {
+        String route = "/missing_" + System.nanoTime() + ".html";
+
+        FileService.preload(config, route);
+
+        assertFalse(FileService.isCached(config, route));
+    }
+}
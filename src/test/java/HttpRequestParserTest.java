@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.HttpMethod;
+import utils.HttpRequest;
+import utils.HttpRequestParser;
+import utils.HttpRequestParser.Status;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpRequestParserTest {
+    private HttpRequestParser parser;
+    private HttpRequest request;
+
+    @BeforeEach
+    void setUp() {
+        parser = new HttpRequestParser(64, 256);
+        request = new HttpRequest();
+    }
+
+    private static ByteBuffer bufferOf(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    void testParseCompleteRequest() {
+        ByteBuffer buffer = bufferOf("GET /index.html HTTP/1.1\r\nHost: localhost\r\nAccept:  text/html \r\n\r\n");
+
+        assertEquals(Status.Complete, parser.parse(buffer, request));
+        assertFalse(buffer.hasRemaining());
+        assertEquals(HttpMethod.Get, request.getMethod());
+        assertEquals("/index.html", request.getPath());
+        assertEquals(1, request.getMajorVersion());
+        assertEquals(1, request.getMinorVersion());
+        assertEquals(2, request.getHeaderCount());
+        assertEquals("localhost", request.getHeader("host"));
+        assertEquals("text/html", request.getHeader("ACCEPT"));
+        assertNull(request.getHeader("Connection"));
+        assertEquals("GET /index.html HTTP/1.1", request.getRequestLine());
+    }
+
+    @Test
+    void testIncompleteRequestIsNotConsumed() {
+        ByteBuffer buffer = bufferOf("GET /index.html HTTP/1.1\r\nHost: loc");
+
+        assertEquals(Status.Incomplete, parser.parse(buffer, request));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void testPipelinedRequestsAreParsedInOrder() {
+        ByteBuffer buffer = bufferOf("GET /a.html HTTP/1.1\r\n\r\nHEAD /b.html HTTP/1.0\r\n\r\nGET /c");
+
+        assertEquals(Status.Complete, parser.parse(buffer, request));
+        assertEquals("/a.html", request.getPath());
+        assertEquals(Status.Complete, parser.parse(buffer, request));
+        assertEquals(HttpMethod.Head, request.getMethod());
+        assertEquals("/b.html", request.getPath());
+        assertEquals(0, request.getMinorVersion());
+        assertEquals(Status.Incomplete, parser.parse(buffer, request));
+        assertEquals(6, buffer.remaining());
+    }
+
+    @Test
+    void testKeepAlive() {
+        parser.parse(bufferOf("GET / HTTP/1.1\r\n\r\n"), request);
+        assertTrue(request.isKeepAlive());
+        parser.parse(bufferOf("GET / HTTP/1.1\r\nConnection: Close\r\n\r\n"), request);
+        assertFalse(request.isKeepAlive());
+        parser.parse(bufferOf("GET / HTTP/1.0\r\n\r\n"), request);
+        assertFalse(request.isKeepAlive());
+        parser.parse(bufferOf("GET / HTTP/1.0\r\nConnection: keep-alive\r\n\r\n"), request);
+        assertTrue(request.isKeepAlive());
+    }
+
+    @Test
+    void testUnknownMethodIsParsed() {
+        assertEquals(Status.Complete, parser.parse(bufferOf("BREW /pot HTTP/1.1\r\n\r\n"), request));
+        assertEquals(HttpMethod.Other, request.getMethod());
+    }
+
+    @Test
+    void testMalformedRequestsAreInvalid() {
+        assertEquals(Status.Invalid, parser.parse(bufferOf("GET /index.html\r\n\r\n"), request));
+        assertEquals(Status.Invalid, parser.parse(bufferOf("GET  HTTP/1.1\r\n\r\n"), request));
+        assertEquals(Status.Invalid, parser.parse(bufferOf("GET / HTTP/1.1\r\nNoColon\r\n\r\n"), request));
+        assertEquals(Status.Invalid, parser.parse(bufferOf("GET / HTTP/1.1\r\nHost : x\r\n\r\n"), request));
+    }
+
+    @Test
+    void testLimitsAreEnforced() {
+        String longPath = "/" + "a".repeat(100);
+        assertEquals(Status.TooLarge, parser.parse(bufferOf("GET " + longPath), request));
+        assertEquals(Status.TooLarge, parser.parse(bufferOf("GET / HTTP/1.1\r\nX-Filler: " + "b".repeat(300)), request));
+    }
+}
@@ -1,3 +1,4 @@
+import Cache.MappedFileCacheSingleton;
 import config.ServerConfig;
 import core.MainHTTPServerThread;
 import org.junit.jupiter.api.AfterEach;
@@ -7,6 +8,13 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 public class MainHTTPServerThreadTest {
 
@@ -53,4 +61,219 @@ public class MainHTTPServerThreadTest {
             }
         }
     }
+
+    @Test
+    public void testKeepAliveReusesConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            String first = TestUtils.readResponse(in);
+            assertTrue(first.startsWith("HTTP/1.1 200 OK"));
+            assertTrue(first.contains("Connection: keep-alive"));
+
+            out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            String second = TestUtils.readResponse(in);
+            assertTrue(second.startsWith("HTTP/1.1 200 OK"), "Second request must be served on the same connection");
+        }
+    }
+
+    @Test
+    public void testConnectionCloseIsHonoured() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+            InputStream in = socket.getInputStream();
+            String response = TestUtils.readResponse(in);
+            assertTrue(response.contains("Connection: close"));
+            assertEquals(-1, in.read(), "Server must close the connection after Connection: close");
+        }
+    }
+
+    @Test
+    public void testIdleKeepAliveConnectionsDoNotStarveNewClients() throws IOException {
+        List<Socket> idle = new ArrayList<>();
+        try {
+            //More idle keep-alive connections than workers (server.maximum.requests=10)
+            for (int i = 0; i < 12; i++) {
+                Socket socket = new Socket("localhost", testPort);
+                idle.add(socket);
+                socket.setSoTimeout(2000);
+                socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                assertTrue(TestUtils.readResponse(socket.getInputStream()).startsWith("HTTP/1.1 200 OK"), "Client " + i + " must be served");
+            }
+
+            try (Socket socket = new Socket("localhost", testPort)) {
+                socket.setSoTimeout(2000);
+                socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                assertTrue(TestUtils.readResponse(socket.getInputStream()).startsWith("HTTP/1.1 200 OK"),
+                        "A new client must be served while the others idle");
+            }
+        } finally {
+            for (Socket socket : idle) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write((
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            InputStream in = socket.getInputStream();
+
+            assertTrue(TestUtils.readResponse(in).startsWith("HTTP/1.1 200 OK"), "First response must answer the first request");
+            assertTrue(TestUtils.readResponse(in).startsWith("HTTP/1.1 404 Not Found"), "Second response must answer the second request");
+            String last = TestUtils.readResponse(in);
+            assertTrue(last.startsWith("HTTP/1.1 200 OK"), "Third response must answer the third request");
+            assertTrue(last.contains("Connection: close"));
+            assertEquals(-1, in.read(), "Server must close the connection after the last pipelined request");
+        }
+    }
+
+    @Test
+    public void testOversizedRequestIsRejected() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write(("GET /index.html HTTP/1.1\r\n" + "X-Filler: 1\r\n".repeat(101) + "\r\n").getBytes());
+            InputStream in = socket.getInputStream();
+            String response = TestUtils.readResponse(in);
+            assertTrue(response.startsWith("HTTP/1.1 431 Request Header Fields Too Large"));
+            assertEquals(-1, in.read(), "Server must close the connection after rejecting a request");
+        }
+    }
+
+    @Test
+    public void testLargeFileIsTransferred() throws IOException {
+        byte[] large = new byte[300_000];
+        new Random(7).nextBytes(large);
+        Path file = Path.of("src/test/java/resources/large_transfer.bin");
+        Files.write(file, large);
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /large_transfer.bin HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            String single = TestUtils.readResponse(in);
+            assertTrue(single.startsWith("HTTP/1.1 200 OK"));
+            assertArrayEquals(large, single.substring(single.indexOf("\r\n\r\n") + 4).getBytes(StandardCharsets.ISO_8859_1));
+
+            out.write((
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /large_transfer.bin HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            assertTrue(TestUtils.readResponse(in).contains("<title>HOME</title>"), "Pipelined small file must come first");
+            String pipelined = TestUtils.readResponse(in);
+            assertTrue(pipelined.startsWith("HTTP/1.1 200 OK"));
+            assertArrayEquals(large, pipelined.substring(pipelined.indexOf("\r\n\r\n") + 4).getBytes(StandardCharsets.ISO_8859_1));
+            assertEquals(-1, in.read(), "Server must close the connection after the last pipelined request");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedFileIsServed() throws IOException {
+        byte[] medium = new byte[30_000];
+        new Random(11).nextBytes(medium);
+        Path file = Path.of("src/test/java/resources/mapped_tier.bin");
+        Files.write(file, medium);
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write((
+                    "GET /mapped_tier.bin HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /mapped_tier.bin HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 2; i++) {
+                String response = TestUtils.readResponse(in);
+                assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+                assertArrayEquals(medium, response.substring(response.indexOf("\r\n\r\n") + 4).getBytes(StandardCharsets.ISO_8859_1));
+            }
+        } finally {
+            MappedFileCacheSingleton.getInstance().invalidate(new ServerConfig("src/test/java/resources/server.config").getDocumentRoot() + "/mapped_tier.bin");
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLargeTextFileIsStreamedCompressed() throws IOException {
+        String text = "<p>line of streamed text</p>\n".repeat(10_000);
+        Path file = Path.of("src/test/java/resources/large_text.txt");
+        Files.writeString(file, text);
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /large_text.txt HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n\r\n".getBytes());
+            String head = readHead(in);
+            assertTrue(head.startsWith("HTTP/1.1 200 OK"));
+            assertTrue(head.contains("Transfer-Encoding: chunked\r\n"));
+            assertTrue(head.contains("Content-Encoding: gzip\r\n"));
+            assertFalse(head.contains("Content-Length"));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int size; (size = Integer.parseInt(readLine(in), 16)) > 0; ) {
+                body.write(in.readNBytes(size));
+                assertEquals("", readLine(in));
+            }
+            assertEquals("", readLine(in), "Last chunk must end the body");
+            assertTrue(body.size() < text.length() / 10, "Body must be compressed");
+            try (InputStream decoded = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+                assertEquals(text, new String(decoded.readAllBytes(), StandardCharsets.ISO_8859_1));
+            }
+
+            out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            assertTrue(TestUtils.readResponse(in).contains("<title>HOME</title>"), "Connection must be reusable after a chunked body");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testShardedAcceptorsServeConnections() throws Exception {
+        Path shardedConfig = Files.createTempFile("server_sharded", ".config");
+        Files.writeString(shardedConfig, Files.readString(Path.of("src/test/java/resources/server.config"))
+                .replace("server.port=9090", "server.port=9093")
+                .replace("server.io.acceptors=1", "server.io.acceptors=4"));
+        MainHTTPServerThread sharded = new MainHTTPServerThread(new ServerConfig(shardedConfig.toString()));
+        sharded.setDaemon(true);
+        sharded.start();
+        try {
+            Thread.sleep(500);
+            for (int i = 0; i < 8; i++) {
+                try (Socket socket = new Socket("localhost", 9093)) {
+                    socket.setSoTimeout(3000);
+                    socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                    assertTrue(TestUtils.readResponse(socket.getInputStream()).startsWith("HTTP/1.1 200 OK"), "Connection " + i + " must be served");
+                }
+            }
+        } finally {
+            sharded.interrupt();
+            Files.delete(shardedConfig);
+        }
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        StringBuilder head = new StringBuilder();
+        while (!head.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0) break;
+            head.append((char) b);
+        }
+        return head.toString();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b; (b = in.read()) >= 0 && b != '\n'; ) {
+            if (b != '\r') line.append((char) b);
+        }
+        return line.toString();
+    }
 }
@@ -0,0 +1,68 @@
+import Cache.MappedEntry;
+import Cache.MappedFileCache;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileCacheTest {
+
+    private MappedFileCache mappedFileCache;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mappedFileCache = new MappedFileCache();
+        file = Files.createTempFile("mapped", ".txt");
+        Files.writeString(file, "Hello Mapping");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mappedFileCache.invalidate(file.toString());
+        Files.deleteIfExists(file);
+    }
+
+    private static byte[] contentOf(MappedEntry entry) {
+        ByteBuffer view = entry.slice();
+        byte[] content = new byte[view.remaining()];
+        view.get(content);
+        return content;
+    }
+
+    @Test
+    void testMappingIsSharedBetweenRequests() {
+        MappedEntry first = mappedFileCache.acquire(file.toString());
+        MappedEntry second = mappedFileCache.acquire(file.toString());
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertArrayEquals("Hello Mapping".getBytes(), contentOf(first));
+
+        first.release();
+        second.release();
+    }
+
+    @Test
+    void testInvalidatedMappingStaysReadableWhileRetained() {
+        MappedEntry entry = mappedFileCache.acquire(file.toString());
+        mappedFileCache.invalidate(file.toString());
+
+        assertArrayEquals("Hello Mapping".getBytes(), contentOf(entry));
+        MappedEntry remapped = mappedFileCache.acquire(file.toString());
+        assertNotSame(entry, remapped);
+
+        entry.release();
+        remapped.release();
+        assertFalse(entry.retain(), "A released mapping must not be handed out again");
+    }
+
+    @Test
+    void testMissingFileIsNotMapped() {
+        assertNull(mappedFileCache.acquire(file + ".missing"));
+    }
+}
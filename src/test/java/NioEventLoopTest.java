@@ -0,0 +1,155 @@
+import config.ServerConfig;
+import core.MainHTTPServerThread;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioEventLoopTest {
+
+    private static MainHTTPServerThread serverThread;
+    private static int testPort;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        ServerConfig config = new ServerConfig("src/test/java/resources/server_nio.config");
+
+        serverThread = new MainHTTPServerThread(config);
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        testPort = config.getPort();
+
+        Thread.sleep(500);
+    }
+
+    @AfterAll
+    public static void cleanup() {
+        if (serverThread != null) {
+            serverThread.interrupt();
+        }
+    }
+
+    private static String readAll(Socket socket) throws IOException {
+        return new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testServesRequestOverEventLoop() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.getOutputStream().write("GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+            String response = readAll(socket);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Response must start with 200 OK");
+            assertTrue(response.contains("<h1>Welcome to PA Website</h1>"), "Response must contain the page body");
+        }
+    }
+
+    @Test
+    public void testRequestSplitAcrossSeveralWrites() throws Exception {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /index.html HT".getBytes());
+            out.flush();
+            Thread.sleep(200);
+            out.write("TP/1.1\r\nHost: localhost\r\nConnection: close\r\n".getBytes());
+            out.flush();
+            Thread.sleep(200);
+            out.write("\r\n".getBytes());
+            out.flush();
+
+            assertTrue(readAll(socket).startsWith("HTTP/1.1 200 OK"));
+        }
+    }
+
+    @Test
+    public void testIdleConnectionsDoNotBlockWorkers() throws IOException {
+        // More idle clients than pool workers: none of them may hold a worker thread
+        Socket[] idle = new Socket[20];
+        try {
+            for (int i = 0; i < idle.length; i++) {
+                idle[i] = new Socket("localhost", testPort);
+            }
+            try (Socket socket = new Socket("localhost", testPort)) {
+                socket.setSoTimeout(3000);
+                socket.getOutputStream().write("GET / HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes());
+                assertTrue(readAll(socket).startsWith("HTTP/1.1 200 OK"));
+            }
+        } finally {
+            for (Socket socket : idle) {
+                if (socket != null) socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testKeepAliveServesSeveralRequests() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < 3; i++) {
+                out.write("GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+                String response = TestUtils.readResponse(in);
+                assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Response " + i + " must be 200 OK");
+                assertTrue(response.contains("Connection: keep-alive"));
+                assertTrue(response.endsWith("</html>"));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            socket.getOutputStream().write((
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /missing.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            InputStream in = socket.getInputStream();
+
+            assertTrue(TestUtils.readResponse(in).startsWith("HTTP/1.1 200 OK"), "First response must answer the first request");
+            assertTrue(TestUtils.readResponse(in).startsWith("HTTP/1.1 404 Not Found"), "Second response must answer the second request");
+            String last = TestUtils.readResponse(in);
+            assertTrue(last.startsWith("HTTP/1.1 200 OK"), "Third response must answer the third request");
+            assertTrue(last.contains("Connection: close"));
+            assertEquals(-1, in.read(), "Server must close the connection after the last pipelined request");
+        }
+    }
+
+    @Test
+    public void testLargeFileIsTransferred() throws IOException {
+        byte[] large = new byte[300_000];
+        new Random(7).nextBytes(large);
+        Path file = Path.of("src/test/java/resources/large_transfer.bin");
+        Files.write(file, large);
+        try (Socket socket = new Socket("localhost", testPort)) {
+            socket.setSoTimeout(3000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            out.write("GET /large_transfer.bin HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            String single = TestUtils.readResponse(in);
+            assertTrue(single.startsWith("HTTP/1.1 200 OK"));
+            assertArrayEquals(large, single.substring(single.indexOf("\r\n\r\n") + 4).getBytes(StandardCharsets.ISO_8859_1));
+
+            out.write((
+                    "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /large_transfer.bin HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            assertTrue(TestUtils.readResponse(in).contains("<title>HOME</title>"), "Pipelined small file must come first");
+            String pipelined = TestUtils.readResponse(in);
+            assertTrue(pipelined.startsWith("HTTP/1.1 200 OK"));
+            assertArrayEquals(large, pipelined.substring(pipelined.indexOf("\r\n\r\n") + 4).getBytes(StandardCharsets.ISO_8859_1));
+            assertEquals(-1, in.read(), "Server must close the connection after the last pipelined request");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.DocumentRootWatcher;
+import utils.PrecompressedIndex;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrecompressedIndexTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void shouldIndexSidecarsFoundAtStartup() throws Exception {
+        Files.createDirectories(root.resolve("js"));
+        Files.writeString(root.resolve("js/app.js"), "app");
+        Files.write(root.resolve("js/app.js.gz"), new byte[]{1});
+        Files.writeString(root.resolve("style.css"), "style");
+
+        PrecompressedIndex index = new PrecompressedIndex(root);
+        index.scan();
+
+        assertTrue(index.contains(root.resolve("js/app.js.gz")));
+        assertTrue(index.contains(root.resolve("js/../js/app.js.gz")));
+        assertFalse(index.contains(root.resolve("style.css.gz")));
+    }
+
+    @Test
+    void shouldFollowChangesReportedByTheWatcher() throws Exception {
+        PrecompressedIndex index = new PrecompressedIndex(root);
+        DocumentRootWatcher watcher = new DocumentRootWatcher(root);
+        watcher.addListener(index);
+        index.scan();
+        watcher.start();
+        try {
+            Files.write(root.resolve("late.js.gz"), new byte[]{1});
+            Files.createDirectories(root.resolve("assets"));
+            Files.write(root.resolve("assets/new.css.gz"), new byte[]{1});
+            assertTrue(TestUtils.await(() -> index.contains(root.resolve("late.js.gz"))), "New sidecar must be indexed");
+            assertTrue(TestUtils.await(() -> index.contains(root.resolve("assets/new.css.gz"))), "Sidecar in new directory must be indexed");
+
+            Files.delete(root.resolve("late.js.gz"));
+            assertTrue(TestUtils.await(() -> !index.contains(root.resolve("late.js.gz"))), "Deleted sidecar must be removed");
+        } finally {
+            watcher.interrupt();
+            watcher.join(5000);
+        }
+    }
+}
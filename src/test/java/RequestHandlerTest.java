@@ -1,11 +1,24 @@
+import Cache.CacheEntry;
+import Cache.CacheManagerSingleton;
 import config.ServerConfig;
 import core.RequestHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import utils.ContentEncoding;
 import utils.FileService;
+import utils.PrecompressedIndex;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -90,4 +103,239 @@ class RequestHandlerTest {
         assertTrue(response.contains("Server: pa-web-server"), "Message must contain Server");
         assertTrue(response.contains("Date:"), "Message must contain Date:");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldRespond200InParBeginMode() throws Exception {
+        // Arrange
+        Path parBeginConfig = Files.createTempFile("server_parbegin", ".config");
+        String properties = Files.readString(Path.of("src/test/java/resources/server.config"))
+                .replace("server.request.mode=staged", "server.request.mode=parbegin");
+        Files.writeString(parBeginConfig, properties);
+        ServerConfig parBegin = new ServerConfig(parBeginConfig.toString());
+
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\n\r\n"));
+        RequestHandler handler = new RequestHandler(input, clientOutput, parBegin, "127.0.0.1");
+
+        // Act
+        handler.processRequest();
+        Files.delete(parBeginConfig);
+
+        // Assert
+        String response = clientOutput.toString();
+        assertTrue(response.contains("HTTP/1.1 200 OK"), "Message must contain status 200 OK");
+        assertTrue(response.contains("<h1>Welcome to PA Website</h1>"), "Message must contain Welcome to PA Website");
+    }
+
+    @Test
+    void shouldRespond503WithRetryAfterWhenOverloaded() {
+        RequestHandler handler = new RequestHandler(clientOutput, config, "127.0.0.1");
+
+        boolean keepAlive = handler.rejectOverloaded();
+
+        String response = clientOutput.toString();
+        assertEquals(false, keepAlive);
+        assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+        assertTrue(response.contains("Retry-After: 1\r\n"));
+        assertTrue(response.contains("Connection: close\r\n"));
+    }
+
+    @Test
+    void shouldRespond206ForSingleRange() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nRange: bytes=0-14\r\n\r\n"));
+        RequestHandler handler = new RequestHandler(input, clientOutput, config, "127.0.0.1");
+
+        handler.processRequest();
+
+        String response = clientOutput.toString();
+        assertTrue(response.startsWith("HTTP/1.1 206 Partial Content"), "Message must contain status 206 Partial Content");
+        assertTrue(response.contains("Content-Range: bytes 0-14/"), "Message must contain Content-Range");
+        assertTrue(response.contains("Content-Length: 15\r\n"), "Message must contain the range length");
+        assertTrue(response.endsWith("\r\n\r\n<!DOCTYPE html>"), "Body must be the first 15 bytes");
+    }
+
+    @Test
+    void shouldRespondMultipartForSeveralRanges() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nRange: bytes=0-4,-7\r\n\r\n"));
+        RequestHandler handler = new RequestHandler(input, clientOutput, config, "127.0.0.1");
+
+        handler.processRequest();
+
+        String response = clientOutput.toString();
+        assertTrue(response.startsWith("HTTP/1.1 206 Partial Content"), "Message must contain status 206 Partial Content");
+        assertTrue(response.contains("Content-Type: multipart/byteranges; boundary="), "Message must be multipart");
+        assertTrue(response.contains("\r\n\r\n<!DOC\r\n--"), "First part must hold the first 5 bytes");
+        assertTrue(response.contains("</html>"), "Second part must hold the last bytes");
+    }
+
+    @Test
+    void shouldRespond416WhenRangeIsNotSatisfiable() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nRange: bytes=100000-\r\n\r\n"));
+        RequestHandler handler = new RequestHandler(input, clientOutput, config, "127.0.0.1");
+
+        handler.processRequest();
+
+        String response = clientOutput.toString();
+        assertTrue(response.startsWith("HTTP/1.1 416 Range Not Satisfiable"), "Message must contain status 416");
+        assertTrue(response.contains("Content-Range: bytes */"), "Message must contain the file size");
+    }
+
+    @Test
+    void shouldRespond304WhenETagMatches() throws Exception {
+        RequestHandler first = new RequestHandler(new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\n\r\n")), clientOutput, config, "127.0.0.1");
+        first.processRequest();
+        String response = clientOutput.toString();
+        assertTrue(response.contains("ETag: \""), "Message must contain an ETag");
+        assertTrue(response.contains("Last-Modified: "), "Message must contain Last-Modified");
+        String eTag = response.substring(response.indexOf("ETag: ") + 6, response.indexOf("\r\n", response.indexOf("ETag: ")));
+
+        clientOutput.reset();
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nIf-None-Match: W/\"x\", " + eTag + "\r\n\r\n"));
+        new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+
+        response = clientOutput.toString();
+        assertTrue(response.startsWith("HTTP/1.1 304 Not Modified"), "Message must contain status 304 Not Modified");
+        assertTrue(response.contains("ETag: " + eTag), "Message must repeat the ETag");
+        assertTrue(response.endsWith("\r\n\r\n"), "Message must not have a body");
+    }
+
+    @Test
+    void shouldRespond304WhenNotModifiedSince() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nIf-Modified-Since: Fri, 01 Jan 2100 00:00:00 GMT\r\n\r\n"));
+        new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+        assertTrue(clientOutput.toString().startsWith("HTTP/1.1 304 Not Modified"), "Message must contain status 304 Not Modified");
+
+        clientOutput.reset();
+        input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nIf-Modified-Since: Thu, 01 Jan 1970 00:00:00 GMT\r\n\r\n"));
+        new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+        assertTrue(clientOutput.toString().startsWith("HTTP/1.1 200 OK"), "Message must contain status 200 OK");
+    }
+
+    @Test
+    void shouldRespondWithoutBodyToHead() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("HEAD /index.html HTTP/1.1\r\n\r\n"));
+        new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+
+        String response = clientOutput.toString();
+        assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Message must contain status 200 OK");
+        assertTrue(response.contains("Content-Length: " + Files.size(Path.of("src/test/java/resources/index.html")) + "\r\n"), "Message must contain the full length");
+        assertTrue(response.endsWith("\r\n\r\n"), "Message must not have a body");
+    }
+
+    @Test
+    void shouldRespondCompressedWhenGzipIsAccepted() throws Exception {
+        BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nAccept-Encoding: gzip, deflate\r\n\r\n"));
+        new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+
+        byte[] bytes = clientOutput.toByteArray();
+        String response = new String(bytes, StandardCharsets.ISO_8859_1);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Message must contain status 200 OK");
+        assertTrue(response.contains("Content-Encoding: gzip\r\n"), "Message must be gzip-encoded");
+        assertTrue(response.contains("Vary: Accept-Encoding\r\n"), "Message must vary on Accept-Encoding");
+        int bodyStart = response.indexOf("\r\n\r\n") + 4;
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(bytes, bodyStart, bytes.length - bodyStart))) {
+            assertArrayEquals(Files.readAllBytes(Path.of("src/test/java/resources/index.html")), body.readAllBytes());
+        }
+    }
+
+    @Test
+    void shouldServePrecompressedSidecar() throws Exception {
+        Path sidecar = Path.of("src/test/java/resources/index.html.gz");
+        Files.write(sidecar, ContentEncoding.Gzip.encode("<p>precompressed</p>".getBytes()));
+        PrecompressedIndex index = new PrecompressedIndex(Path.of("src/test/java/resources"));
+        index.scan();
+        FileService.setPrecompressedIndex(index);
+        try {
+            BufferedReader input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nAccept-Encoding: gzip\r\n\r\n"));
+            new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+
+            byte[] bytes = clientOutput.toByteArray();
+            String response = new String(bytes, StandardCharsets.ISO_8859_1);
+            assertTrue(response.contains("Content-Encoding: gzip\r\n"), "Message must be gzip-encoded");
+            assertTrue(response.contains("Content-Type: text/html\r\n"), "Message must keep the type of the original");
+            int bodyStart = response.indexOf("\r\n\r\n") + 4;
+            try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(bytes, bodyStart, bytes.length - bodyStart))) {
+                assertArrayEquals("<p>precompressed</p>".getBytes(), body.readAllBytes());
+            }
+
+            clientOutput.reset();
+            input = new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\n\r\n"));
+            new RequestHandler(input, clientOutput, config, "127.0.0.1").processRequest();
+            response = clientOutput.toString();
+            assertTrue(response.contains("This is the index.html file"), "Message must be the original without gzip");
+            assertTrue(response.contains("Vary: Accept-Encoding\r\n"), "Message must vary on Accept-Encoding");
+        } finally {
+            FileService.setPrecompressedIndex(null);
+            Files.deleteIfExists(sidecar);
+        }
+    }
+
+    @Test
+    void shouldServeRepeatHitsFromPreparedResponse() throws Exception {
+        new RequestHandler(new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+        String first = clientOutput.toString();
+        CacheEntry entry = CacheManagerSingleton.getInstance().readEntryFromCache(FileService.resolvePath(config, "/index.html"));
+        assertNotNull(entry.getPreparedResponse(), "Response must be prepared after the first hit");
+        ByteBuffer head = entry.getPreparedResponse().head();
+        byte[] headBytes = new byte[head.remaining()];
+        head.get(headBytes);
+        assertFalse(new String(headBytes, StandardCharsets.ISO_8859_1).contains("<h1>"), "Only the head must be prepared, not a copy of the content");
+
+        clientOutput.reset();
+        new RequestHandler(new BufferedReader(new StringReader("GET /index.html HTTP/1.1\r\nConnection: close\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+        String second = clientOutput.toString();
+
+        assertTrue(second.startsWith("HTTP/1.1 200 OK\r\n"), "Message must contain status 200 OK");
+        assertTrue(second.contains("Connection: close\r\n"), "Message must carry this request's Connection header");
+        assertTrue(second.contains("\r\nDate: "), "Message must carry a Date header");
+        assertEquals(withoutPerRequestHeaders(first), withoutPerRequestHeaders(second), "Prepared response must match the built one");
+    }
+
+    @Test
+    void shouldServeOffHeapCachedContent() throws Exception {
+        Path file = Path.of("src/test/java/resources/offheap.html");
+        Files.writeString(file, "<p>served from native memory</p>");
+        CacheManagerSingleton.getInstance().setOffHeap(true);
+        try {
+            new RequestHandler(new BufferedReader(new StringReader("GET /offheap.html HTTP/1.1\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+            assertTrue(CacheManagerSingleton.getInstance().readEntryFromCache(FileService.resolvePath(config, "/offheap.html")).isOffHeap(),
+                    "Content must be cached off-heap");
+
+            clientOutput.reset();
+            new RequestHandler(new BufferedReader(new StringReader("GET /offheap.html HTTP/1.1\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+            String response = clientOutput.toString();
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), "Message must contain status 200 OK");
+            assertTrue(response.endsWith("\r\n\r\n<p>served from native memory</p>"), "Body must be the cached content");
+
+            clientOutput.reset();
+            new RequestHandler(new BufferedReader(new StringReader("GET /offheap.html HTTP/1.1\r\nRange: bytes=3-8\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+            assertTrue(clientOutput.toString().endsWith("\r\n\r\nserved"), "Range must be sliced from the cached content");
+        } finally {
+            CacheManagerSingleton.getInstance().setOffHeap(false);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void shouldServeCachedFileWithoutCheckingTheDisk() throws Exception {
+        String route = "/stat_free_" + System.nanoTime() + ".html";
+        Path file = Path.of("src/test/java/resources" + route);
+        Files.writeString(file, "<p>cached</p>");
+        try {
+            FileService.preload(config, route);
+            //Gone from disk behind the invalidator's back: a hit must not notice
+            Files.delete(file);
+
+            new RequestHandler(new BufferedReader(new StringReader("GET " + route + " HTTP/1.1\r\n\r\n")), clientOutput, config, "127.0.0.1").processRequest();
+            String response = clientOutput.toString();
+            assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"), "Cached file must be served from memory");
+            assertTrue(response.endsWith("\r\n\r\n<p>cached</p>"), "Body must be the cached content");
+        } finally {
+            Files.deleteIfExists(file);
+            CacheManagerSingleton.getInstance().invalidate(FileService.resolvePath(config, route));
+        }
+    }
+
+    private static String withoutPerRequestHeaders(String response) {
+        return response.replaceAll("(Date|Connection): [^\r]*\r\n", "");
+    }
+}
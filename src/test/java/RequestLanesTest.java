@@ -0,0 +1,133 @@
+import config.ServerConfig;
+import core.RequestLanes;
+import core.ThreadPool;
+import logging.SharedBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import utils.FileService;
+import utils.HttpRequest;
+import utils.HttpRequestParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLanesTest {
+    private ServerConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new ServerConfig("src/test/java/resources/server.config");
+        SharedBuffer.buffer.clear();
+    }
+
+    @Test
+    void testCachedRequestIsRenderedOnFastLaneOnly() throws IOException {
+        String route = "/lanes_hit_" + System.nanoTime() + ".html";
+        Path file = Paths.get(config.getDocumentRoot() + route);
+        Files.writeString(file, "<h1>hit</h1>");
+        try {
+            FileService.preload(config, route);
+            AtomicInteger fastRuns = new AtomicInteger();
+            AtomicInteger ioRuns = new AtomicInteger();
+            AtomicBoolean rendered = new AtomicBoolean();
+            RequestLanes lanes = new RequestLanes(counting(fastRuns), counting(ioRuns));
+
+            assertTrue(lanes.servesFromMemory(config, request(route)));
+            lanes.dispatch(config, request(route), () -> rendered.set(true), () -> fail("Request was shed"));
+
+            assertTrue(rendered.get());
+            assertEquals(1, fastRuns.get());
+            assertEquals(0, ioRuns.get());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testMissIsLoadedOnIoLaneBeforeRendering() throws IOException {
+        String route = "/lanes_miss_" + System.nanoTime() + ".html";
+        Path file = Paths.get(config.getDocumentRoot() + route);
+        Files.writeString(file, "<h1>miss</h1>");
+        try {
+            AtomicInteger fastRuns = new AtomicInteger();
+            AtomicInteger ioRuns = new AtomicInteger();
+            AtomicBoolean cachedWhenRendered = new AtomicBoolean();
+            RequestLanes lanes = new RequestLanes(counting(fastRuns), counting(ioRuns));
+
+            assertFalse(lanes.servesFromMemory(config, request(route)));
+            lanes.dispatch(config, request(route), () -> cachedWhenRendered.set(FileService.isCached(config, route)),
+                    () -> fail("Request was shed"));
+
+            assertTrue(cachedWhenRendered.get());
+            assertEquals(1, ioRuns.get());
+            assertEquals(1, fastRuns.get());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void testMissIsShedWhenIoLaneIsOverloaded() throws Exception {
+        String route = "/lanes_shed_" + System.nanoTime() + ".html";
+        ThreadPool ioLane = new ThreadPool(1, 1, Duration.ZERO);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        try {
+            //Occupy the only I/O worker and fill the queue
+            ioLane.execute(() -> {
+                busy.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(busy.await(5, TimeUnit.SECONDS));
+            ioLane.execute(() -> { });
+
+            AtomicInteger fastRuns = new AtomicInteger();
+            AtomicBoolean rendered = new AtomicBoolean();
+            AtomicBoolean rejected = new AtomicBoolean();
+            RequestLanes lanes = new RequestLanes(counting(fastRuns), ioLane);
+            lanes.dispatch(config, request(route), () -> rendered.set(true), () -> rejected.set(true));
+
+            assertTrue(rejected.get());
+            assertFalse(rendered.get());
+            assertEquals(0, fastRuns.get());
+            assertEquals(1, ioLane.getRejectedTasks());
+        } finally {
+            release.countDown();
+            ioLane.shutdown();
+        }
+    }
+
+    private static Executor counting(AtomicInteger runs) {
+        return task -> {
+            runs.incrementAndGet();
+            task.run();
+        };
+    }
+
+    private static HttpRequest request(String route) {
+        HttpRequest request = new HttpRequest();
+        String raw = "GET " + route + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+        new HttpRequestParser(8192, 8192).parse(ByteBuffer.wrap(raw.getBytes(StandardCharsets.US_ASCII)), request);
+        return request;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
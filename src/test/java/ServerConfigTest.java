@@ -1,3 +1,7 @@
+import config.CacheStorage;
+import config.ExecutorMode;
+import config.IoMode;
+import config.RequestMode;
 import config.ServerConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -59,4 +63,56 @@ class ServerConfigTest {
         assertEquals(Duration.ofSeconds(10),config.getCacheExpirationTime());
         assertEquals(Duration.ofSeconds(30),emptyConfig.getCacheExpirationTime());
     }
+
+    @Test
+    void testGetCachePollInterval() {
+        assertEquals(Duration.ofSeconds(5), config.getCachePollInterval());
+        assertEquals(Duration.ofSeconds(5), emptyConfig.getCachePollInterval());
+    }
+
+    @Test
+    void testGetKeepAliveSettings() {
+        assertEquals(Duration.ofSeconds(5), config.getKeepAliveTimeout());
+        assertEquals(100, config.getKeepAliveMaxRequests());
+        assertEquals(Duration.ofSeconds(5), emptyConfig.getKeepAliveTimeout());
+        assertEquals(100, emptyConfig.getKeepAliveMaxRequests());
+    }
+
+    @Test
+    void testGetModes() {
+        assertEquals(IoMode.Blocking, config.getIoMode());
+        assertEquals(IoMode.Blocking, emptyConfig.getIoMode());
+        assertEquals(ExecutorMode.Platform, config.getExecutorMode());
+        assertEquals(ExecutorMode.Platform, emptyConfig.getExecutorMode());
+        assertEquals(RequestMode.Staged, config.getRequestMode());
+        assertEquals(RequestMode.Staged, emptyConfig.getRequestMode());
+        assertEquals(4, config.getIoThreads());
+        assertEquals(4, emptyConfig.getIoThreads());
+        assertEquals(4, config.getPipelineThreads());
+        assertEquals(4, emptyConfig.getPipelineThreads());
+        assertEquals(CacheStorage.Heap, config.getCacheStorage());
+        assertEquals(CacheStorage.Heap, emptyConfig.getCacheStorage());
+    }
+
+    @Test
+    void testGetTransferThreshold() {
+        assertEquals(65536, config.getTransferThreshold());
+        assertEquals(1048576, emptyConfig.getTransferThreshold());
+    }
+
+    @Test
+    void testGetQueueSettings() {
+        assertEquals(1024, config.getQueueCapacity());
+        assertEquals(Duration.ofMillis(100), config.getQueueTargetDelay());
+        assertEquals(1024, emptyConfig.getQueueCapacity());
+        assertEquals(Duration.ofMillis(100), emptyConfig.getQueueTargetDelay());
+    }
+
+    @Test
+    void testGetPoolSettings() {
+        assertEquals(2, config.getPoolCoreThreads());
+        assertEquals(Duration.ofSeconds(60), config.getPoolKeepAlive());
+        assertEquals(2, emptyConfig.getPoolCoreThreads());
+        assertEquals(Duration.ofSeconds(60), emptyConfig.getPoolKeepAlive());
+    }
 }
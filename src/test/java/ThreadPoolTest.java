@@ -1,4 +1,8 @@
+import core.RejectableTask;
 import core.ThreadPool;
+import core.ThreadPoolMetrics;
+import core.VirtualThreadExecutor;
+import core.WorkStealingExecutor;
 import core.WorkerThread;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -6,11 +10,14 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mockito;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class ThreadPoolTest {
 
@@ -112,4 +119,223 @@ public class ThreadPoolTest {
                     "Worker should be interrupted or terminated after shutdown");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFullQueueRejectsTask() throws InterruptedException {
+        ThreadPool pool = new ThreadPool(1, 1, Duration.ZERO);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        AtomicInteger ran = new AtomicInteger(0);
+        AtomicInteger rejected = new AtomicInteger(0);
+        pool.execute(RejectableTask.of(ran::incrementAndGet, rejected::incrementAndGet)); //Fills the queue
+        pool.execute(RejectableTask.of(ran::incrementAndGet, rejected::incrementAndGet)); //Rejected at once
+
+        assertEquals(1, rejected.get());
+        assertEquals(1, pool.getRejectedTasks());
+        release.countDown();
+        Thread.sleep(100);
+        assertEquals(1, ran.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testStandingQueueShedsDelayedTasks() throws InterruptedException {
+        ThreadPool pool = new ThreadPool(1, 100, Duration.ofMillis(10));
+        AtomicInteger ran = new AtomicInteger(0);
+        AtomicInteger rejected = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(40);
+        for (int i = 0; i < 40; i++) {
+            pool.execute(RejectableTask.of(() -> {
+                try {
+                    Thread.sleep(20); //Slower than the target delay: the queue never drains
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ran.incrementAndGet();
+                done.countDown();
+            }, () -> {
+                rejected.incrementAndGet();
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(rejected.get() > 0, "Tasks waiting in a standing queue should be shed");
+        assertTrue(ran.get() > 0, "Tasks arriving before the queue was standing should run");
+        assertEquals(rejected.get(), pool.getRejectedTasks());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testPlainTasksAreNeverShed() throws InterruptedException {
+        ThreadPool pool = new ThreadPool(1, 100, Duration.ofMillis(1));
+        AtomicInteger counter = new AtomicInteger(0);
+        CountDownLatch done = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            pool.execute(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                counter.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(20, counter.get());
+        assertEquals(0, pool.getRejectedTasks());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testElasticPoolGrowsUnderBacklogAndRetiresIdleWorkers() throws InterruptedException {
+        ThreadPool pool = new ThreadPool(1, 4, 100, Duration.ZERO, Duration.ofMillis(200));
+        assertEquals(1, pool.getWorkers().length);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(4);
+        for (int i = 0; i < 6; i++) {
+            pool.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(running.await(1, TimeUnit.SECONDS), "The pool should grow to run four tasks at once");
+        ThreadPoolMetrics busy = pool.getMetrics();
+        assertEquals(4, busy.poolSize());
+        assertEquals(4, busy.activeWorkers());
+        assertEquals(2, busy.queuedTasks());
+
+        release.countDown();
+        //Idle for longer than the keep-alive
+        assertTrue(TestUtils.await(() -> pool.getMetrics().poolSize() == 1), "Extra workers should retire when idle");
+        ThreadPoolMetrics idle = pool.getMetrics();
+        assertEquals(1, idle.poolSize());
+        assertEquals(4, idle.largestPoolSize());
+        assertEquals(4, idle.workersStarted());
+        assertEquals(3, idle.workersRetired());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWokenWorkerIsNotCountedFreeForTheNextTask() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            ThreadPool pool = new ThreadPool(1, 2, 100, Duration.ZERO, Duration.ofSeconds(60));
+            Thread.sleep(5); //Let the core worker wait for a task
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch running = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                pool.execute(() -> {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(running.await(1, TimeUnit.SECONDS), "Both tasks should run at once, round " + round);
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFixedPoolDoesNotGrow() throws InterruptedException {
+        ThreadPool pool = new ThreadPool(2);
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            pool.execute(() -> {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(2, pool.getMetrics().largestPoolSize());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testWorkStealingExecutorRunsAllTasks() throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(4, 1024, Duration.ZERO);
+        int taskCount = 1000;
+        CountDownLatch done = new CountDownLatch(taskCount);
+        AtomicInteger counter = new AtomicInteger(0);
+        for (int i = 0; i < taskCount; i++) {
+            executor.execute(() -> {
+                counter.incrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(taskCount, counter.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testWorkStealingExecutorRejectsWhenFull() throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(1, 1, Duration.ZERO);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger(0);
+        Runnable blocking = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(RejectableTask.of(blocking, rejected::incrementAndGet)); //Running
+        executor.execute(RejectableTask.of(blocking, rejected::incrementAndGet)); //Queued
+        executor.execute(RejectableTask.of(blocking, rejected::incrementAndGet)); //Rejected at once
+
+        assertEquals(1, rejected.get());
+        assertEquals(1, executor.getRejectedTasks());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadExecutorRunsTasksOnVirtualThreads() throws InterruptedException {
+        assumeTrue(VirtualThreadExecutor.isSupported(), "Virtual threads require Java 21");
+        VirtualThreadExecutor executor = new VirtualThreadExecutor();
+        int taskCount = 1000;
+        CountDownLatch done = new CountDownLatch(taskCount);
+        AtomicInteger platformThreads = new AtomicInteger(0);
+        for (int i = 0; i < taskCount; i++) {
+            executor.execute(() -> {
+                if (!Thread.currentThread().toString().startsWith("VirtualThread")) {
+                    platformThreads.incrementAndGet();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, platformThreads.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadExecutorUnsupportedBeforeJava21() {
+        assumeTrue(Runtime.version().feature() < 21);
+        assertFalse(VirtualThreadExecutor.isSupported());
+        assertThrows(UnsupportedOperationException.class, VirtualThreadExecutor::new);
+    }
+}